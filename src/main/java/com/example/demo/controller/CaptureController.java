@@ -1,20 +1,28 @@
 package com.example.demo.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.demo.domain.CaptureJob;
+import com.example.demo.service.CaptureJobService;
+import com.example.demo.service.CaptureStreamService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controlador CaptureController
  * * Se encarga de la orquestación y ejecución de scripts externos para la captura de tráfico.
  * Actúa como puente entre las peticiones HTTP de la interfaz y el sistema operativo,
  * gestionando la validación de parámetros y el flujo de salida del proceso.
+ * * Las capturas se ejecutan en segundo plano ({@link CaptureJobService}): la petición
+ * responde 202 con el identificador de la captura, cuyo estado se consulta después o
+ * se sigue en vivo por Server-Sent Events ({@link CaptureStreamService}).
  */
 @RestController
 @RequestMapping("/api/capture")
@@ -22,9 +30,16 @@ public class CaptureController {
 
     // --- CONFIGURACIÓN Y DEPENDENCIAS ---
 
-    /** Ruta absoluta del script de captura definida en application.properties */
-    @Value("${script.path}")
-    private String SCRIPT_PATH;
+    /** Ejecución en segundo plano del script de captura (script.path) */
+    private final CaptureJobService captures;
+
+    /** Progreso en vivo de las capturas */
+    private final CaptureStreamService streams;
+
+    public CaptureController(CaptureJobService captures, CaptureStreamService streams) {
+        this.captures = captures;
+        this.streams = streams;
+    }
 
     /**
      * DTO (Data Transfer Object) para las solicitudes de captura.
@@ -45,12 +60,12 @@ public class CaptureController {
     // --- ENDPOINTS DE CAPTURA ---
 
     /**
-     * Inicia un proceso de captura de tráfico mediante la ejecución de un script local.
-     * * El método valida la existencia del script, parsea la duración solicitada
-     * y captura la salida estándar (stdout/stderr) para retornarla al cliente.
+     * Encola una captura de tráfico y responde de inmediato.
+     * * El método valida la duración solicitada; el script se ejecuta después en el pool
+     * de capturas, sin retener la petición.
      *
      * @param request Objeto que contiene la duración opcional de la captura.
-     * @return ResponseEntity con el resultado de la ejecución o mensajes de error detallados.
+     * @return 202 con la captura y su ubicación (Location), o mensajes de error detallados.
      */
     @PostMapping
     public ResponseEntity<?> startCapture(@RequestBody(required = false) CaptureRequest request) {
@@ -71,59 +86,78 @@ public class CaptureController {
                     .badRequest()
                     .body(Map.of("error", "La duración debe ser un número entero válido"));
         }
+        if (duration <= 0) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(Map.of("error", "La duración debe ser mayor que cero"));
+        }
 
-        // --- VERIFICACIÓN DE ENTORNO ---
+        // --- ENCOLADO ---
 
-        Path script = Path.of(SCRIPT_PATH);
-        if (!Files.exists(script)) {
+        try {
+            CaptureJob job = captures.submit(duration);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/capture/" + job.getId()))
+                    .body(job);
+
+        } catch (IllegalStateException e) {
+            // Script inexistente
             return ResponseEntity
                     .status(500)
-                    .body(Map.of("error", "Script no encontrado en la ruta: " + SCRIPT_PATH));
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body(Map.of("error", "La cola de capturas está llena"));
         }
+    }
 
-        // --- LÓGICA DE EJECUCIÓN DE PROCESO ---
+    /**
+     * Lista las capturas, de la más reciente a la más antigua.
+     * @param state Filtra por fase: QUEUED, RUNNING, SUCCEEDED, FAILED o CANCELLED.
+     */
+    @GetMapping
+    public List<CaptureJob> listCaptures(@RequestParam(required = false) String state) {
+        return captures.list(state);
+    }
 
+    /**
+     * Estado de una captura: fase, tiempos, código de salida y las últimas líneas de
+     * salida del script.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<CaptureJob> capture(@PathVariable String id) {
+        return ResponseEntity.of(captures.get(id));
+    }
+
+    /**
+     * Sigue una captura en vivo (text/event-stream): eventos "output" con las líneas del
+     * script, "progress" con líneas, bytes capturados y segundos transcurridos, "dropped"
+     * si el cliente se retrasa más que el buffer y "end" con el estado final.
+     *
+     * @param lastEventId Reanuda tras la última línea recibida (cabecera estándar de SSE).
+     * @return El stream, 404 si la captura no existe o 503 si hay demasiados suscriptores.
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> captureEvents(@PathVariable String id,
+                                           @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
         try {
-            ProcessBuilder pb = new ProcessBuilder(
-                    SCRIPT_PATH,
-                    String.valueOf(duration)
-            );
-
-            // Redirige el error a la salida estándar para capturarlo en un solo flujo
-            pb.redirectErrorStream(true);
-
-            Process p = pb.start();
-
-            // Lectura de la consola del script
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
-
-            // Espera la finalización del proceso externo
-            int exitCode = p.waitFor();
-
-            if (exitCode != 0) {
-                return ResponseEntity
-                        .status(500)
-                        .body(Map.of("error", "Fallo en ejecución", "exitCode", exitCode, "output", output.toString()));
-            }
-
-            return ResponseEntity.ok(
-                    Map.of(
-                            "message", "Captura finalizada exitosamente por " + duration + " segundos",
-                            "output", output.toString()
-                    )
-            );
-
-        } catch (Exception e) {
-            // Manejo de excepciones de Interrupción o I/O
-            return ResponseEntity
-                    .status(500)
-                    .body(Map.of("error", "Error inesperado en el servidor: " + e.getMessage()));
+            Optional<SseEmitter> emitter = streams.subscribe(id, lastEventId);
+            return emitter.<ResponseEntity<?>>map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Cancela una captura en cola o en ejecución.
+     * @return Estado de la captura tras la cancelación (404 si no existe).
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<CaptureJob> cancelCapture(@PathVariable String id) {
+        return ResponseEntity.of(captures.cancel(id));
+    }
+}
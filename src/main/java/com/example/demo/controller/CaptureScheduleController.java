@@ -0,0 +1,83 @@
+package com.example.demo.controller;
+
+import com.example.demo.domain.CaptureSchedule;
+import com.example.demo.service.CaptureSchedulerService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Controlador CaptureScheduleController
+ * * Administra las capturas recurrentes ({@link CaptureSchedulerService}): expresiones
+ * cron o intervalos fijos que lanzan capturas por el mismo camino que POST /api/capture,
+ * sin solaparse con una captura en curso.
+ */
+@RestController
+@RequestMapping("/api/capture/schedules")
+public class CaptureScheduleController {
+
+    private final CaptureSchedulerService schedules;
+
+    public CaptureScheduleController(CaptureSchedulerService schedules) {
+        this.schedules = schedules;
+    }
+
+    /** Programaciones con su próximo disparo y sus métricas de ejecución. */
+    @GetMapping
+    public List<CaptureSchedule> listSchedules() {
+        return schedules.list();
+    }
+
+    /** Programación y sus métricas (404 si no existe). */
+    @GetMapping("/{id}")
+    public ResponseEntity<CaptureSchedule> schedule(@PathVariable String id) {
+        return ResponseEntity.of(schedules.get(id));
+    }
+
+    /**
+     * Crea una programación.
+     * * Cuerpo: 'cron' o 'intervalSeconds', 'duration', y opcionalmente 'overlap'
+     * (SKIP por defecto o QUEUE), 'jitterSeconds' y 'enabled'.
+     *
+     * @return 201 con la programación, o 400 si la definición no es válida.
+     */
+    @PostMapping
+    public ResponseEntity<?> createSchedule(@RequestBody CaptureSchedule definition) {
+        try {
+            CaptureSchedule created = schedules.create(definition);
+            return ResponseEntity.created(URI.create("/api/capture/schedules/" + created.getId())).body(created);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /** Reemplaza la definición de una programación; sus métricas se conservan. */
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateSchedule(@PathVariable String id, @RequestBody CaptureSchedule definition) {
+        try {
+            Optional<CaptureSchedule> updated = schedules.update(id, definition);
+            return updated.<ResponseEntity<?>>map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /** Elimina una programación (las capturas ya lanzadas siguen su curso). */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteSchedule(@PathVariable String id) {
+        try {
+            return schedules.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
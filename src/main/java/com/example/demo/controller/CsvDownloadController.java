@@ -1,23 +1,51 @@
 package com.example.demo.controller;
 
-import org.springframework.core.io.buffer.DataBufferUtils;
+import com.example.demo.service.DownloadSidecarCache;
+import com.example.demo.service.LeveledGzipOutputStream;
+import com.example.demo.service.TrafficCompactionService;
+import com.example.demo.service.TrafficCsvScanner;
+import com.example.demo.service.TrafficExportService;
+import com.example.demo.service.TrafficLayout;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpRange;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Controlador CsvDownloadController
  * * Gestiona la descarga segura de reportes de tráfico en formato CSV.
- * Implementa transferencia de datos por streaming para optimizar el uso de memoria
- * del servidor al manejar archivos potencialmente pesados.
+ * Los archivos se envían sin pasar por la memoria de la JVM (sendfile del conector o
+ * {@link FileChannel#transferTo}), con Content-Length, y admiten peticiones Range
+ * (uno o varios rangos, validados con If-Range) para reanudar descargas interrumpidas.
+ * * Si el cliente acepta gzip (y no pide rangos) el reporte viaja comprimido: se envía
+ * la versión comprimida del archivo o su sidecar de {@link DownloadSidecarCache} y, si
+ * no existe, se comprime al vuelo guardando el sidecar para la siguiente descarga.
+ * * Con una proyección ('columns') o condiciones ('where') se envían solo las columnas y
+ * filas pedidas, filtradas en el servidor por {@link TrafficCsvScanner}.
  */
 @CrossOrigin(origins = "*")
 @RestController
@@ -26,86 +54,564 @@ public class CsvDownloadController {
 
     // --- CONFIGURACIÓN DE DIRECTORIOS ---
 
-    /** Directorio raíz donde se almacenan los reportes de tráfico (inyectado por config) */
-    @Value("${traffic.dir}")
-    private String TRAFFIC_DIR;
+    /** Ubicación de los reportes dentro de traffic.dir (plano o particionado por día) */
+    private final TrafficLayout layout;
+
+    /** Lectura transparente de los reportes comprimidos */
+    private final TrafficCompactionService compaction;
+
+    /** Versiones gzip de los reportes ya descargados */
+    private final DownloadSidecarCache sidecars;
+
+    /** Exportación de varios reportes en un ZIP */
+    private final TrafficExportService exports;
+
+    /** Proyección y filtrado de filas en el servidor */
+    private final TrafficCsvScanner scanner;
+
+    /** Tamaño mínimo para comprimir una descarga (por debajo no compensa) */
+    @Value("${traffic.download.gzip-min-bytes:1024}")
+    private long gzipMinBytes = 1024;
+
+    /** Nivel de compresión al comprimir al vuelo (el sidecar se reutiliza después) */
+    @Value("${traffic.download.gzip-level:6}")
+    private int gzipLevel = 6;
+
+    /** Tipo de contenido de los reportes */
+    private static final String CSV_TYPE = "text/csv";
+
+    /** Atributos con los que Tomcat envía un archivo con sendfile(2) al terminar la petición */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    public CsvDownloadController(TrafficLayout layout, TrafficCompactionService compaction,
+                                 DownloadSidecarCache sidecars, TrafficExportService exports,
+                                 TrafficCsvScanner scanner) {
+        this.layout = layout;
+        this.compaction = compaction;
+        this.sidecars = sidecars;
+        this.exports = exports;
+        this.scanner = scanner;
+    }
 
     /**
      * DTO para la solicitud de descarga.
-     * Contiene el nombre del archivo específico generado previamente.
+     * Contiene el nombre del archivo específico generado previamente y, opcionalmente,
+     * las columnas a conservar y las condiciones sobre las filas.
      */
     public static class CsvRequest {
         private String CSVFILE;
         private String range;
+        private List<String> columns;
+        private List<String> where;
 
         public String getCSVFILE() { return CSVFILE; }
         public void setCSVFILE(String CSVFILE) { this.CSVFILE = CSVFILE; }
 
         public String getRange() { return range; }
         public void setRange(String range) { this.range = range; }
+
+        public List<String> getColumns() { return columns; }
+        public void setColumns(List<String> columns) { this.columns = columns; }
+
+        public List<String> getWhere() { return where; }
+        public void setWhere(List<String> where) { this.where = where; }
+    }
+
+    /**
+     * DTO para la exportación de varios reportes: una lista de nombres o un rango de
+     * fechas (según la fecha del nombre del archivo).
+     */
+    public static class ExportRequest {
+        private List<String> files;
+        private LocalDate from;
+        private LocalDate to;
+
+        public List<String> getFiles() { return files; }
+        public void setFiles(List<String> files) { this.files = files; }
+
+        public LocalDate getFrom() { return from; }
+        public void setFrom(LocalDate from) { this.from = from; }
+
+        public LocalDate getTo() { return to; }
+        public void setTo(LocalDate to) { this.to = to; }
     }
 
     // --- ENDPOINTS DE DESCARGA ---
 
     /**
      * Procesa la descarga de un archivo CSV específico.
-     * * Incluye validaciones de seguridad para prevenir ataques de navegación de directorios
-     * y utiliza un buffer de salida para una transferencia eficiente.
+     * * Incluye validaciones de seguridad para prevenir ataques de navegación de directorios.
      *
      * @param request Objeto que contiene el nombre del archivo solicitado.
-     * @return ResponseEntity con el flujo de datos (StreamingResponseBody).
      */
     @PostMapping("/download")
-    public ResponseEntity<StreamingResponseBody> downloadCsv(
-            @RequestBody(required = false) CsvRequest request
-    ) {
+    public void downloadCsv(@RequestBody(required = false) CsvRequest request,
+                            HttpServletRequest httpRequest,
+                            HttpServletResponse httpResponse) throws IOException {
+        if (request == null || request.getCSVFILE() == null || request.getCSVFILE().isBlank()) {
+            httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        serve(request.getCSVFILE(), request.getColumns(), request.getWhere(), httpRequest, httpResponse);
+    }
 
-        // --- VALIDACIÓN DE ENTRADA Y SEGURIDAD ---
+    /**
+     * Variante GET de la descarga, para navegadores y gestores de descargas que
+     * reanudan con Range sobre la misma URL.
+     *
+     * @param filename Nombre del archivo CSV.
+     * @param columns Columnas a conservar (opcional).
+     * @param where Condiciones "columna:operador:valor" sobre las filas (opcional, repetible).
+     */
+    @GetMapping("/download/{filename:.+}")
+    public void downloadCsvByName(@PathVariable String filename,
+                                  @RequestParam(required = false) List<String> columns,
+                                  @RequestParam(required = false) List<String> where,
+                                  HttpServletRequest httpRequest,
+                                  HttpServletResponse httpResponse) throws IOException {
+        serve(filename, columns, where, httpRequest, httpResponse);
+    }
 
-        if (request == null || request.getCSVFILE() == null || request.getCSVFILE().isBlank()) {
-            return ResponseEntity.badRequest().build();
+    /**
+     * Exporta en un ZIP los reportes CSV fechados dentro de un rango.
+     *
+     * @param from Fecha inicial (inclusive).
+     * @param to Fecha final (inclusive).
+     */
+    @GetMapping("/export")
+    public void exportRange(@RequestParam LocalDate from, @RequestParam LocalDate to,
+                            HttpServletResponse httpResponse) throws IOException {
+        try {
+            streamZip(exports.byRange(from, to), "traffic_" + from + "_" + to + ".zip", httpResponse);
+        } catch (IllegalArgumentException e) {
+            httpResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
         }
+    }
 
-        String filename = request.getCSVFILE();
+    /**
+     * Exporta en un ZIP una lista de reportes ('files') o los de un rango ('from', 'to').
+     * * Los nombres se validan igual que en la descarga individual; si alguno no existe
+     * se responde 404 antes de empezar a enviar el archivo.
+     */
+    @PostMapping("/export")
+    public void exportFiles(@RequestBody(required = false) ExportRequest request,
+                            HttpServletResponse httpResponse) throws IOException {
+        try {
+            if (request != null && request.getFiles() != null && !request.getFiles().isEmpty()) {
+                streamZip(exports.byNames(request.getFiles()), "traffic_export.zip", httpResponse);
+            } else if (request != null && request.getFrom() != null && request.getTo() != null) {
+                exportRange(request.getFrom(), request.getTo(), httpResponse);
+            } else {
+                httpResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Se requiere 'files' o 'from' y 'to'");
+            }
+        } catch (IllegalArgumentException e) {
+            httpResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (NoSuchFileException e) {
+            httpResponse.sendError(HttpServletResponse.SC_NOT_FOUND, "No existe: " + e.getFile());
+        }
+    }
+
+    /** Escribe el ZIP sobre la respuesta (sin Content-Length: se envía por fragmentos). */
+    private void streamZip(List<TrafficExportService.ExportFile> files, String zipName,
+                           HttpServletResponse response) throws IOException {
+        if (!exports.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Demasiadas exportaciones en curso");
+            return;
+        }
+        try {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(zipName).build().toString());
+            exports.write(files, response.getOutputStream());
+        } finally {
+            exports.release();
+        }
+    }
+
+    // --- TRANSFERENCIA ---
+
+    /**
+     * Envía el archivo completo o los rangos solicitados.
+     * * Respuestas: 200 completo, 206 con un rango (Content-Range) o con varios
+     * (multipart/byteranges), 304 si el cliente ya tiene la versión vigente y 416 si los
+     * rangos quedan fuera del archivo. Un Range con If-Range que no coincide con la
+     * versión actual recibe el archivo completo. La representación gzip tiene su propio
+     * ETag y se anuncia con Vary: Accept-Encoding.
+     */
+    private void serve(String filename, List<String> columns, List<String> where,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        // --- VALIDACIÓN DE ENTRADA Y SEGURIDAD ---
 
         /** * Seguridad: Sanitización básica contra Path Traversal.
          * Evita que un usuario malintencionado acceda a archivos fuera de TRAFFIC_DIR usando "../".
          */
         if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
-            return ResponseEntity.badRequest().build();
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
         }
 
-        Path filePath = Paths.get(TRAFFIC_DIR).resolve(filename);
+        Path filePath = layout.resolve(filename);
 
-        if (!Files.exists(filePath)) {
-            return ResponseEntity.notFound().build();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attrs.isRegularFile()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        // --- LÓGICA DE STREAMING (TRANSFERENCIA) ---
+        TrafficCsvScanner.Query query;
+        try {
+            query = TrafficCsvScanner.Query.of(columns, where);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (!query.isEmpty()) {
+            serveFiltered(filename, filePath, attrs, query, request, response);
+            return;
+        }
 
-        /**
-         * Definición del cuerpo de respuesta por streaming.
-         * Se utiliza un buffer de 64KB para maximizar el throughput de red.
-         */
-        StreamingResponseBody stream = outputStream -> {
-            byte[] buffer = new byte[64 * 1024];
-
-            try (InputStream in = Files.newInputStream(filePath)) {
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                    // Asegura que los fragmentos de datos se envíen de inmediato
-                    outputStream.flush();
+        // --- NEGOCIACIÓN DE CODIFICACIÓN ---
+
+        boolean compressedFile = TrafficLayout.isCompressed(filePath);
+        boolean gzip = request.getHeader(HttpHeaders.RANGE) == null && acceptsGzip(request)
+                && (compressedFile || attrs.size() >= gzipMinBytes);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        // --- VALIDACIÓN CONDICIONAL (ETag / Last-Modified) ---
+
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String version = Long.toHexString(attrs.size()) + "-" + Long.toHexString(lastModified);
+        String etag = "\"" + version + (gzip ? "-gz" : "") + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return; // 304 o 412, con ETag y Last-Modified ya asignados
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString());
+        boolean head = "HEAD".equals(request.getMethod());
+
+        if (gzip) {
+            serveGzip(filename, filePath, attrs.size(), compressedFile, version, head, request, response);
+            return;
+        }
+
+        // Un reporte comprimido se descomprime al vuelo: su longitud no se conoce y no
+        // admite rangos sobre el contenido original
+        if (compressedFile) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+            response.setContentType(CSV_TYPE);
+            if (head) return;
+            try (InputStream in = compaction.open(filePath)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+
+        long length = attrs.size();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        if (ranges.isEmpty()) {
+            response.setContentType(CSV_TYPE);
+            response.setContentLengthLong(length);
+            if (!head) send(filePath, 0, length, request, response);
+            return;
+        }
+
+        // --- RANGOS ---
+
+        List<long[]> regions = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue; // rango inválido para este archivo: se omite
+            }
+            if (start >= length || start > end) continue; // empieza fuera del archivo
+            regions.add(new long[]{start, end});
+        }
+        // 416 solo si ningún rango es satisfacible (RFC 9110 §15.5.17)
+        if (regions.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        regions = coalesce(regions);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (regions.size() == 1) {
+            long start = regions.get(0)[0];
+            long end = regions.get(0)[1];
+            response.setContentType(CSV_TYPE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            if (!head) send(filePath, start, end + 1, request, response);
+            return;
+        }
+
+        // multipart/byteranges: cabecera de cada parte seguida de su tramo del archivo
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + CSV_TYPE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + region[0] + "-" + region[1] + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + region[1] - region[0] + 1;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) return;
+
+        ServletOutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(filePath)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (int i = 0; i < regions.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, regions.get(i)[0], regions.get(i)[1] + 1, target);
+            }
+        }
+        out.write(closing);
+    }
+
+    /**
+     * Envía la representación gzip del reporte, sin recomprimir si ya existe:
+     * - Archivo comprimido por la compactación → se envía tal cual.
+     * - Sidecar vigente → se envía el sidecar.
+     * - Si no → se comprime al vuelo y, a la vez, se escribe el sidecar.
+     */
+    private void serveGzip(String filename, Path filePath, long size, boolean compressedFile, String version,
+                           boolean head, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setContentType(CSV_TYPE);
+
+        if (compressedFile) {
+            response.setContentLengthLong(size);
+            if (!head) send(filePath, 0, size, request, response);
+            return;
+        }
+
+        // El sidecar se envía desde un canal abierto (no con sendfile, que abre el archivo al
+        // terminar la petición): un desalojo concurrente no deja la respuesta sin cuerpo
+        try (FileChannel sidecar = sidecars.open(filename, version)) {
+            if (sidecar != null) {
+                long sidecarSize = sidecar.size();
+                response.setContentLengthLong(sidecarSize);
+                if (!head) transfer(sidecar, 0, sidecarSize, Channels.newChannel(response.getOutputStream()));
+                return;
+            }
+        }
+        if (head) return;
+
+        DownloadSidecarCache.Writer writer = sidecars.begin(filename, version);
+        TeeOutputStream tee = new TeeOutputStream(response.getOutputStream(), writer == null ? null : writer.stream());
+        try (InputStream in = Files.newInputStream(filePath)) {
+            GZIPOutputStream out = new LeveledGzipOutputStream(tee, 64 * 1024, gzipLevel);
+            in.transferTo(out);
+            out.finish();
+        } catch (IOException e) {
+            // Cliente desconectado: el sidecar quedaría incompleto
+            if (writer != null) writer.abort();
+            throw e;
+        }
+        if (writer != null) {
+            if (tee.secondaryFailed) writer.abort();
+            else writer.commit();
+        }
+    }
+
+    /**
+     * Envía solo las columnas y filas pedidas. La longitud no se conoce de antemano, así
+     * que no hay Content-Length ni rangos; el ETag incluye la consulta y, si el cliente
+     * acepta gzip, la salida se comprime al vuelo (sin sidecar: depende de la consulta).
+     */
+    private void serveFiltered(String filename, Path filePath, BasicFileAttributes attrs, TrafficCsvScanner.Query query,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean gzip = acceptsGzip(request);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(attrs.size()) + "-" + Long.toHexString(lastModified)
+                + "-q" + Integer.toHexString(query.toString().hashCode()) + (gzip ? "-gz" : "") + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        // La cabecera se lee antes de responder: una columna desconocida es un 400
+        try (TrafficCsvScanner.Scan scan = scanner.open(filePath, query)) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(filename).build().toString());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+            response.setContentType(CSV_TYPE);
+            if (gzip) response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            if ("HEAD".equals(request.getMethod())) return;
+
+            if (gzip) {
+                GZIPOutputStream out = new LeveledGzipOutputStream(response.getOutputStream(), 64 * 1024, gzipLevel);
+                scan.writeTo(out);
+                out.finish();
+            } else {
+                scan.writeTo(response.getOutputStream());
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /** Indica si Accept-Encoding admite gzip (explícitamente o con "*") con q > 0. */
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (header == null) return false;
+
+        Boolean wildcard = null;
+        for (String token : header.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
                 }
             }
-        };
+            if (coding.equals("gzip") || coding.equals("x-gzip")) return q > 0;
+            if (coding.equals("*")) wildcard = q > 0;
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
 
-        // --- CONSTRUCCIÓN DE CABECERAS HTTP ---
+    /**
+     * Escribe en la respuesta y, mientras no falle, en el sidecar. Un error del sidecar
+     * no interrumpe la descarga; un error de la respuesta sí.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+
+        private final OutputStream primary;
+        private final OutputStream secondary;
+        private boolean secondaryFailed;
+
+        TeeOutputStream(OutputStream primary, OutputStream secondary) {
+            this.primary = primary;
+            this.secondary = secondary;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            primary.write(b, off, len);
+            if (secondary == null || secondaryFailed) return;
+            try {
+                secondary.write(b, off, len);
+            } catch (IOException e) {
+                secondaryFailed = true;
+            }
+        }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.parseMediaType("text/csv"))
-                .body(stream);
+        @Override
+        public void flush() throws IOException {
+            primary.flush();
+        }
+    }
+
+    /**
+     * Rangos a atender: vacío si no hay cabecera Range, si es inválida o si If-Range no
+     * coincide con la versión actual del archivo (en ese caso se envía completo).
+     */
+    private static List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) return List.of();
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // If-Range exige comparación fuerte: un ETag débil nunca coincide
+                if (!ifRange.equals(etag)) return List.of();
+            } else {
+                long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+                if (date == -1 || date / 1000 != lastModified / 1000) return List.of();
+            }
+        }
+
+        try {
+            return HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return List.of(); // Range mal formado: se ignora
+        }
+    }
+
+    /**
+     * Une los rangos superpuestos o contiguos y los ordena por posición, como permite
+     * RFC 9110 §14.2: la respuesta nunca envía dos veces el mismo byte ni más que el
+     * archivo completo.
+     */
+    private static List<long[]> coalesce(List<long[]> regions) {
+        regions.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>(regions.size());
+        for (long[] region : regions) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && region[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], region[1]);
+            } else {
+                merged.add(region);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Envía [start, end) del archivo. Si el conector admite sendfile, Tomcat lo
+     * transfiere desde el kernel al terminar la petición; si no, se copia con
+     * {@link FileChannel#transferTo} sin vaciar el buffer en cada fragmento.
+     */
+    private static void send(Path file, long start, long end, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            transfer(channel, start, end, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long end, WritableByteChannel target)
+            throws IOException {
+        long position = start;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) break; // el archivo se truncó durante la transferencia
+            position += sent;
+        }
+        if (position < end) throw new IOException("El archivo cambió durante la descarga");
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,27 @@
 package com.example.demo.controller;
 
-import com.example.demo.domain.PcapInfo;
+import com.example.demo.domain.PcapPage;
+import com.example.demo.domain.ReprocessJob;
+import com.example.demo.domain.TrafficCompactionStats;
+import com.example.demo.service.PcapReprocessService;
+import com.example.demo.service.TrafficCompactionService;
+import com.example.demo.service.TrafficInventoryService;
+import com.example.demo.service.TrafficLayout;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
-import org.springframework.beans.factory.annotation.Value;
 
-import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controlador CsvFilesController
@@ -26,56 +35,31 @@ import java.util.stream.Stream;
 @RequestMapping("/api/csv_files")
 public class CsvFilesController {
 
-    @Value("${traffic.dir}")
-    private String TRAFFIC_DIR;
+    /** Estados válidos para el filtro 'status' */
+    private static final Set<String> STATUSES = Set.of("true", "pending", "false");
 
-    @Value("${reg.script.path}")
-    private String REG_DIR;
+    /** Tamaño de página por defecto y máximo cuando se pagina por cursor */
+    private static final int DEFAULT_PAGE = 100;
+    private static final int MAX_PAGE = 1000;
 
-    // -------------------------------------------------------------------
-    // MÉTODOS DE SOPORTE
-    // -------------------------------------------------------------------
+    /** Inventario en memoria de PCAPs y CSVs, actualizado por eventos del directorio */
+    private final TrafficInventoryService inventory;
 
-    /**
-     * Busca el CSV generado que corresponde a un PCAP dado.
-     */
-    private Path findGeneratedCsv(Path dir, String pcapFilename) throws IOException {
-        String base = pcapFilename.replaceFirst("\\.pcap$", "");
-        try (Stream<Path> s = Files.list(dir)) {
-            return s.filter(p -> p.getFileName().toString().startsWith(base))
-                    .filter(p -> p.getFileName().toString().endsWith(".csv"))
-                    .findFirst()
-                    .orElse(null);
-        }
-    }
+    /** Ubicación de los archivos dentro de traffic.dir (plano o particionado por día) */
+    private final TrafficLayout layout;
 
-    /**
-     * Extrae los minutos de captura embebidos en el nombre del archivo.
-     * Formato esperado: "nombre_(X_minutes).pcap"
-     */
-    private double extractMinutesFromFilename(String filename) {
-        Pattern p = Pattern.compile("\\((\\d+(?:\\.\\d+)?)_minutes\\)");
-        Matcher m = p.matcher(filename);
-        return m.find() ? Double.parseDouble(m.group(1)) : -1;
-    }
-
-    /**
-     * Determina el estado de procesamiento de un PCAP:
-     * - "true"    → CSV ya existe
-     * - "pending" → aún dentro del tiempo esperado
-     * - "false"   → tiempo excedido sin CSV
-     */
-    private String resolveCsvStatus(Path pcapPath, Path csvDir) throws IOException {
-        Path csv = findGeneratedCsv(csvDir, pcapPath.getFileName().toString());
-        if (csv != null) return "true";
+    /** Cola acotada de re-procesamientos de PCAP */
+    private final PcapReprocessService reprocess;
 
-        double minutes = extractMinutesFromFilename(pcapPath.getFileName().toString());
-        if (minutes <= 0) return "pending";
+    /** Compresión de los archivos antiguos */
+    private final TrafficCompactionService compaction;
 
-        long tripleMillis = (long) (minutes * 3 * 60_000);
-        long lastModified = Files.getLastModifiedTime(pcapPath).toMillis();
-
-        return (System.currentTimeMillis() - lastModified > tripleMillis) ? "false" : "pending";
+    public CsvFilesController(TrafficInventoryService inventory, TrafficLayout layout,
+                              PcapReprocessService reprocess, TrafficCompactionService compaction) {
+        this.inventory = inventory;
+        this.layout = layout;
+        this.reprocess = reprocess;
+        this.compaction = compaction;
     }
 
     // -------------------------------------------------------------------
@@ -91,109 +75,192 @@ public class CsvFilesController {
      *
      * En el modo fallback, el campo csvFile contiene el nombre del .csv y
      * el status siempre es "true" (el CSV ya existe por definición).
+     *
+     * El listado se sirve desde {@link TrafficInventoryService}, sin recorrer el
+     * directorio en cada petición. Sin 'limit' ni 'cursor' la respuesta es el arreglo
+     * completo (compatibilidad); con alguno de ellos se devuelve una {@link PcapPage}
+     * cuyo 'nextCursor' se envía en la siguiente petición junto con los mismos filtros.
+     *
+     * @param status Filtra por estado del CSV: true, pending o false.
+     * @param from Fecha mínima de modificación (inclusive).
+     * @param to Fecha máxima de modificación (inclusive).
+     * @param prefix Prefijo del nombre del archivo.
+     * @param minSize Tamaño mínimo en bytes.
+     * @param sort Orden: mtime (por defecto), name o size.
+     * @param order asc o desc (por defecto desc para mtime y size, asc para name).
+     * @param cursor Cursor devuelto por la página anterior.
+     * @param limit Tamaño de página (máximo 1000).
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<PcapInfo>> listFiles() {
-        Path dirPath = Paths.get(TRAFFIC_DIR);
+    public ResponseEntity<?> listFiles(@RequestParam(required = false) String status,
+                                       @RequestParam(required = false) LocalDate from,
+                                       @RequestParam(required = false) LocalDate to,
+                                       @RequestParam(required = false) String prefix,
+                                       @RequestParam(required = false) Long minSize,
+                                       @RequestParam(defaultValue = "mtime") String sort,
+                                       @RequestParam(required = false) String order,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit) {
+        Path dirPath = layout.root();
 
         if (!Files.exists(dirPath) || !Files.isDirectory(dirPath)) {
             return ResponseEntity.status(404).build();
         }
 
+        if (status != null && !STATUSES.contains(status)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Estado no soportado: " + status));
+        }
+
+        TrafficInventoryService.SortKey sortKey;
         try {
-            // Contar cuántos PCAPs hay en el directorio
-            long pcapCount;
-            try (Stream<Path> s = Files.list(dirPath)) {
-                pcapCount = s.filter(p -> p.toString().endsWith(".pcap")).count();
-            }
+            sortKey = TrafficInventoryService.SortKey.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Orden no soportado: " + sort));
+        }
 
-            if (pcapCount > 0) {
-                // ── MODO NORMAL: listar PCAPs ──
-                List<PcapInfo> list = Files.list(dirPath)
-                        .filter(p -> p.toString().endsWith(".pcap"))
-                        .sorted((a, b) -> {
-                            try {
-                                return Long.compare(
-                                        Files.getLastModifiedTime(b).toMillis(),
-                                        Files.getLastModifiedTime(a).toMillis());
-                            } catch (IOException e) { return 0; }
-                        })
-                        .map(path -> {
-                            try {
-                                File file = path.toFile();
-                                Path csv   = findGeneratedCsv(dirPath, file.getName());
-                                String status = resolveCsvStatus(path, dirPath);
-                                return new PcapInfo(
-                                        file.getName(),
-                                        Files.getLastModifiedTime(path).toInstant(),
-                                        file.length(),
-                                        status,
-                                        csv != null ? csv.getFileName().toString() : null
-                                );
-                            } catch (Exception e) { return null; }
-                        })
-                        .filter(info -> info != null)
-                        .toList();
-
-                return ResponseEntity.ok(list);
-
-            } else {
-                // ── MODO FALLBACK: no hay PCAPs, listar CSVs directamente ──
-                List<PcapInfo> list = Files.list(dirPath)
-                        .filter(p -> p.toString().endsWith(".csv"))
-                        .sorted((a, b) -> {
-                            try {
-                                return Long.compare(
-                                        Files.getLastModifiedTime(b).toMillis(),
-                                        Files.getLastModifiedTime(a).toMillis());
-                            } catch (IOException e) { return 0; }
-                        })
-                        .map(path -> {
-                            try {
-                                File file = path.toFile();
-                                String csvName = file.getName();
-                                return new PcapInfo(
-                                        csvName,                                    // name (el CSV hace de PCAP)
-                                        Files.getLastModifiedTime(path).toInstant(),
-                                        file.length(),
-                                        "true",                                     // ya existe, siempre true
-                                        csvName                                     // csvFile apunta al mismo
-                                );
-                            } catch (Exception e) { return null; }
-                        })
-                        .filter(info -> info != null)
-                        .toList();
-
-                return ResponseEntity.ok(list);
-            }
+        boolean descending = order == null
+                ? sortKey != TrafficInventoryService.SortKey.NAME
+                : "desc".equalsIgnoreCase(order);
+        boolean paged = limit != null || cursor != null;
+        int pageSize = !paged ? Integer.MAX_VALUE : Math.min(Math.max(limit == null ? DEFAULT_PAGE : limit, 1), MAX_PAGE);
+
+        TrafficInventoryService.InventoryQuery query = new TrafficInventoryService.InventoryQuery(
+                status, from, to, prefix, minSize, sortKey, descending, cursor, pageSize);
 
+        try {
+            PcapPage page = inventory.page(query);
+            return paged ? ResponseEntity.ok(page) : ResponseEntity.ok(page.getItems());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (IOException e) {
             return ResponseEntity.status(500).build();
         }
     }
 
     /**
-     * Dispara el re-procesamiento de un PCAP específico (fire & forget).
+     * Encola el re-procesamiento de un PCAP específico.
+     *
+     * Los trabajos se ejecutan en un pool acotado ({@link PcapReprocessService}); si el
+     * PCAP ya tiene un trabajo en cola o en ejecución se devuelve ese mismo trabajo.
+     *
+     * @return 202 con el trabajo nuevo (y su URL en 'Location'), 200 con el trabajo ya
+     *         activo, o 503 si la cola está llena.
      */
     @PostMapping("/reparar/{filename:.+}")
     public ResponseEntity<?> reparar(@PathVariable String filename) {
-        Path pcapPath = Paths.get(TRAFFIC_DIR).resolve(filename);
+        if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Path pcapPath = layout.resolve(filename);
 
         if (!Files.exists(pcapPath)) {
             return ResponseEntity.notFound().build();
         }
 
         try {
-            String serverIp = "10.0.0.8";
+            PcapReprocessService.Submission submission = reprocess.submit(filename);
+            ReprocessJob job = submission.job();
+            if (!submission.created()) {
+                return ResponseEntity.ok(job);
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/csv_files/reparar/jobs/" + job.getId()))
+                    .body(job);
+
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "La cola de re-procesamiento está llena"));
+        }
+    }
 
-            ProcessBuilder pb = new ProcessBuilder("python3", REG_DIR, pcapPath.toString(), serverIp);
-            pb.redirectErrorStream(true);
-            pb.start();
+    /**
+     * Lista los trabajos de re-procesamiento, del más reciente al más antiguo.
+     * @param state Filtra por fase: QUEUED, RUNNING, SUCCEEDED, FAILED o CANCELLED.
+     */
+    @GetMapping("/reparar/jobs")
+    public List<ReprocessJob> listReprocessJobs(@RequestParam(required = false) String state) {
+        return reprocess.list(state);
+    }
 
-            return ResponseEntity.accepted().build();
+    /**
+     * Estado de un trabajo de re-procesamiento: fase, tiempos, código de salida y las
+     * últimas líneas de salida del script.
+     */
+    @GetMapping("/reparar/jobs/{id}")
+    public ResponseEntity<ReprocessJob> reprocessJob(@PathVariable String id) {
+        return ResponseEntity.of(reprocess.get(id));
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body("Error ejecutando script: " + e.getMessage());
+    /**
+     * Cancela un trabajo de re-procesamiento en cola o en ejecución.
+     * @return Estado del trabajo tras la cancelación (404 si no existe).
+     */
+    @DeleteMapping("/reparar/jobs/{id}")
+    public ResponseEntity<ReprocessJob> cancelReprocessJob(@PathVariable String id) {
+        return ResponseEntity.of(reprocess.cancel(id));
+    }
+
+    /**
+     * Mueve los archivos de la raíz a sus particiones YYYY/MM/DD (layout "daily").
+     * * Solo se mueven los archivos sin modificar en los últimos 'minAgeMinutes', para
+     * no interferir con capturas o procesamientos en curso. Es seguro repetirla.
+     *
+     * * La migración se ejecuta en segundo plano; su progreso y resultado se consultan
+     * en GET /migration.
+     *
+     * @param minAgeMinutes Antigüedad mínima de los archivos a migrar (por defecto 60).
+     * @return 202 con el estado inicial (y su URL en 'Location'), o 409 si el layout
+     *         configurado es plano o ya hay una migración en curso.
+     */
+    @PostMapping("/migrate")
+    public ResponseEntity<?> migrate(@RequestParam(defaultValue = "60") long minAgeMinutes) {
+        try {
+            layout.submitMigration(Duration.ofMinutes(Math.max(minAgeMinutes, 0)));
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/csv_files/migration"))
+                    .body(layout.migration());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /** Estado de la migración en curso o de la última terminada (archivos movidos y error). */
+    @GetMapping("/migration")
+    public TrafficLayout.MigrationStatus migrationStatus() {
+        return layout.migration();
+    }
+
+    /**
+     * Comprime con gzip los CSV y PCAP sin modificar en los últimos 'minAgeDays' días.
+     * * Los archivos comprimidos se siguen listando y descargando con su nombre original.
+     * * La compresión se ejecuta en segundo plano; su progreso y resultado se consultan
+     * en GET /compaction.
+     *
+     * @param minAgeDays Antigüedad mínima (por defecto traffic.compaction.min-age-days).
+     * @return 202 con el estado inicial (y su URL en 'Location'), o 409 si ya hay una
+     *         compresión en curso.
+     */
+    @PostMapping("/compact")
+    public ResponseEntity<?> compact(@RequestParam(required = false) Long minAgeDays) {
+        try {
+            Duration minAge = minAgeDays == null ? compaction.minAge() : Duration.ofDays(Math.max(minAgeDays, 0));
+            compaction.submit(minAge);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/csv_files/compaction"))
+                    .body(compaction.stats());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Métricas de compresión: archivos comprimidos, bytes recuperados y velocidad de
+     * descompresión en las lecturas.
+     */
+    @GetMapping("/compaction")
+    public TrafficCompactionStats compactionStats() {
+        return compaction.stats();
+    }
+}
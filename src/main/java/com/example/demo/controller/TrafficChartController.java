@@ -1,17 +1,37 @@
 package com.example.demo.controller;
 
 import com.example.demo.domain.TrafficDayStats;
+import com.example.demo.domain.TrafficIndexStatus;
+import com.example.demo.domain.TrafficRangeSummary;
+import com.example.demo.domain.TrafficVolumeDistribution;
 import com.example.demo.service.CsvTrafficIndexService;
+import com.example.demo.service.TrafficMetric;
+import com.example.demo.service.TrafficResolution;
+import com.example.demo.service.TrafficResponseCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Controlador TrafficChartController
  * * Provee los puntos de acceso de datos para la visualización de analíticas.
  * Actúa como la fuente de datos principal para gráficas de consumo, permitiendo
  * consultar estadísticas agregadas por días, rangos personalizados o récords de tráfico.
+ * * Mientras el índice se construye en segundo plano, las consultas responden con los
+ * datos parciales disponibles y la cabecera {@code X-Traffic-Index: warming}; si aún no
+ * hay ningún dato devuelven 503 con el progreso y {@code Retry-After}.
+ * * Las respuestas llevan {@code ETag} y {@code Last-Modified} derivados de la versión
+ * del índice: un cliente que repite la consulta con {@code If-None-Match} recibe 304
+ * mientras no se haya publicado una versión nueva.
  */
 @CrossOrigin(origins = "*")
 @RestController
@@ -23,12 +43,36 @@ public class TrafficChartController {
     /** Servicio especializado en la indexación y filtrado de archivos CSV de tráfico */
     private final CsvTrafficIndexService service;
 
+    /** JSON ya serializado por consulta y versión del índice */
+    private final TrafficResponseCache cache;
+
     /**
      * Inyección del servicio de indexación.
      * @param service Servicio que procesa la lógica de agregación de datos.
+     * @param cache Caché de respuestas serializadas.
      */
-    public TrafficChartController(CsvTrafficIndexService service) {
+    public TrafficChartController(CsvTrafficIndexService service, TrafficResponseCache cache) {
         this.service = service;
+        this.cache = cache;
+    }
+
+    /** Cabecera que marca respuestas calculadas sobre un índice incompleto */
+    private static final String INDEX_HEADER = "X-Traffic-Index";
+
+    /** Segundos sugeridos al cliente antes de reintentar mientras el índice está vacío */
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    // --- ENDPOINTS DE ESTADO ---
+
+    /**
+     * Estado de preparación del índice de tráfico.
+     * * Permite al dashboard mostrar el progreso de la construcción inicial.
+     *
+     * @return {@link TrafficIndexStatus} con fase, archivos analizados y tiempo estimado.
+     */
+    @GetMapping("/status")
+    public TrafficIndexStatus status() {
+        return service.status();
     }
 
     // --- ENDPOINTS PARA GRÁFICAS (SERIES TEMPORALES) ---
@@ -41,8 +85,8 @@ public class TrafficChartController {
      * @return Lista de {@link TrafficDayStats} con el consumo diario.
      */
     @GetMapping("/last/{days}")
-    public List<TrafficDayStats> lastDays(@PathVariable int days) {
-        return service.lastDays(days);
+    public ResponseEntity<?> lastDays(@PathVariable int days) {
+        return respond("last/" + days, () -> service.lastDays(days));
     }
 
     /**
@@ -54,18 +98,186 @@ public class TrafficChartController {
      * @return Lista de estadísticas dentro del periodo solicitado.
      */
     @GetMapping("/range")
-    public List<TrafficDayStats> range(@RequestParam LocalDate from, @RequestParam LocalDate to) {
-        return service.between(from, to);
+    public ResponseEntity<?> range(@RequestParam LocalDate from, @RequestParam LocalDate to) {
+        return respond("range/" + from + "/" + to, () -> service.between(from, to));
+    }
+
+    /**
+     * Serie temporal multi-resolución entre dos instantes.
+     * * Con {@code step=auto} (o sin indicarlo) el servidor elige la resolución más fina
+     * (hora, día, semana o mes) que no supera {@code maxPoints} puntos, de modo que una
+     * vista anual no transfiere cientos de puntos y una vista intradía llega por hora.
+     *
+     * @param from Inicio del periodo (ISO, ej. 2026-02-10T00:00).
+     * @param to Fin del periodo (ISO, inclusive).
+     * @param step Resolución: hour, day, week, month o auto.
+     * @param maxPoints Presupuesto de puntos para la selección automática (por defecto 500).
+     * @return {@link com.example.demo.domain.TrafficSeries} con la resolución usada y sus puntos.
+     */
+    @GetMapping("/series")
+    public ResponseEntity<?> series(@RequestParam LocalDateTime from,
+                                    @RequestParam LocalDateTime to,
+                                    @RequestParam(defaultValue = "auto") String step,
+                                    @RequestParam(defaultValue = "500") int maxPoints) {
+
+        if (from.isAfter(to) || maxPoints <= 0) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Rango inválido: 'from' debe ser anterior a 'to' y maxPoints positivo"));
+        }
+
+        TrafficResolution resolution = null;
+        if (!"auto".equalsIgnoreCase(step)) {
+            try {
+                resolution = TrafficResolution.valueOf(step.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Resolución no soportada: " + step));
+            }
+        }
+
+        TrafficResolution chosen = resolution;
+        return respond("series/" + from + "/" + to + "/" + chosen + "/" + maxPoints,
+                () -> service.series(from, to, chosen, maxPoints));
+    }
+
+    // --- ENDPOINTS DE DETALLE (DRILL-DOWN) ---
+
+    /**
+     * Lista las capturas individuales que componen un día.
+     * * Permite identificar qué archivos formaron un pico observado en la gráfica diaria.
+     *
+     * @param date Día a desglosar.
+     * @return Capturas del día en orden cronológico.
+     */
+    @GetMapping("/day/{date}/captures")
+    public ResponseEntity<?> dayCaptures(@PathVariable LocalDate date) {
+        return respond("day/" + date + "/captures",
+                () -> service.captures(date.atStartOfDay(), date.atTime(23, 59, 59), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Lista las capturas individuales dentro de una ventana de tiempo arbitraria.
+     *
+     * @param from Inicio de la ventana (ISO, inclusive).
+     * @param to Fin de la ventana (ISO, inclusive).
+     * @param limit Máximo de capturas a devolver (por defecto 1000).
+     * @return Capturas en orden cronológico.
+     */
+    @GetMapping("/captures")
+    public ResponseEntity<?> captures(@RequestParam LocalDateTime from,
+                                      @RequestParam LocalDateTime to,
+                                      @RequestParam(defaultValue = "1000") int limit) {
+        return respond("captures/" + from + "/" + to + "/" + limit, () -> service.captures(from, to, limit));
+    }
+
+    // --- ENDPOINTS DE RESUMEN Y RANKING ---
+
+    /**
+     * Totales y promedios del tráfico entre dos fechas.
+     * * Alimenta las tarjetas de resumen del dashboard sin transferir la serie completa.
+     *
+     * @param from Fecha de inicio del periodo.
+     * @param to Fecha de fin del periodo.
+     * @return {@link TrafficRangeSummary} con los agregados del periodo.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<?> summary(@RequestParam LocalDate from, @RequestParam LocalDate to) {
+        return respond("summary/" + from + "/" + to, () -> service.summary(from, to));
+    }
+
+    /**
+     * Percentiles (p50, p90, p99) y máximo del volumen por captura entre dos fechas.
+     * * Indica si el tráfico del periodo se concentró en pocas capturas grandes o se
+     * repartió en muchas medianas.
+     *
+     * @param from Fecha de inicio del periodo.
+     * @param to Fecha de fin del periodo.
+     * @return {@link TrafficVolumeDistribution} del periodo.
+     */
+    @GetMapping("/quantiles")
+    public ResponseEntity<?> quantiles(@RequestParam LocalDate from, @RequestParam LocalDate to) {
+        return respond("quantiles/" + from + "/" + to, () -> service.volumeDistribution(from, to));
     }
 
     /**
-     * Identifica los días con mayor volumen de tráfico (picos de consumo).
+     * Percentiles del volumen por captura de cada día con actividad entre dos fechas.
+     *
+     * @param from Fecha de inicio del periodo.
+     * @param to Fecha de fin del periodo.
+     * @return Lista de {@link TrafficVolumeDistribution}, una por día.
+     */
+    @GetMapping("/quantiles/daily")
+    public ResponseEntity<?> dailyQuantiles(@RequestParam LocalDate from, @RequestParam LocalDate to) {
+        return respond("quantiles/daily/" + from + "/" + to, () -> service.dailyVolumeDistribution(from, to));
+    }
+
+    /**
+     * Identifica los días (u horas) con mayor volumen de tráfico (picos de consumo).
+     * * Sin parámetros adicionales conserva el comportamiento original: los días con más
+     * tráfico total de todo el histórico. Opcionalmente se puede acotar a un rango,
+     * elegir la métrica de ordenamiento y rankear horas en lugar de días.
      *
      * @param limit Cantidad de registros máximos a retornar (por defecto 5).
-     * @return Lista de los días con mayor tráfico detectado.
+     * @param from Fecha inicial opcional del rango (inclusive).
+     * @param to Fecha final opcional del rango (inclusive).
+     * @param metric Métrica: input, output, total (por defecto) o captures.
+     * @param step Granularidad del ranking: day (por defecto) u hour.
+     * @return Lista de los días (u horas) con mayor valor de la métrica.
      */
     @GetMapping("/top")
-    public List<TrafficDayStats> top(@RequestParam(defaultValue = "5") int limit) {
-        return service.topDays(limit);
+    public ResponseEntity<?> top(@RequestParam(defaultValue = "5") int limit,
+                                 @RequestParam(required = false) LocalDate from,
+                                 @RequestParam(required = false) LocalDate to,
+                                 @RequestParam(defaultValue = "total") String metric,
+                                 @RequestParam(defaultValue = "day") String step) {
+
+        TrafficMetric trafficMetric;
+        try {
+            trafficMetric = TrafficMetric.valueOf(metric.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Métrica no soportada: " + metric));
+        }
+
+        return switch (step.toLowerCase(Locale.ROOT)) {
+            case "day" -> respond("top/day/" + trafficMetric + "/" + from + "/" + to + "/" + limit,
+                    () -> service.topDays(from, to, trafficMetric, limit));
+            case "hour" -> respond("top/hour/" + trafficMetric + "/" + from + "/" + to + "/" + limit,
+                    () -> service.topHours(from, to, trafficMetric, limit));
+            default -> ResponseEntity.badRequest().body(Map.of("error", "Granularidad no soportada: " + step));
+        };
+    }
+
+    // --- MÉTODOS AUXILIARES ---
+
+    /**
+     * Ejecuta una consulta teniendo en cuenta el estado y la versión del índice.
+     * * El cuerpo se toma de la caché si ya se serializó para la versión vigente. Spring
+     * compara el ETag con {@code If-None-Match} y responde 304 sin enviar el cuerpo. El
+     * ETag incluye el arranque además de la versión, que vuelve a empezar en cada uno: un
+     * ETag de antes de un reinicio nunca coincide con datos distintos.
+     * @param key Identificador de la consulta (endpoint y parámetros).
+     * @param query Consulta a ejecutar sobre la versión vigente del índice.
+     * @return 200 con el resultado (marcado si es parcial), 304 o 503 si aún no hay datos.
+     */
+    private ResponseEntity<?> respond(String key, Supplier<?> query) {
+        TrafficIndexStatus status = service.status();
+        if (!status.isReady() && status.getIndexVersion() == 0) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .header(INDEX_HEADER, status.getState().toLowerCase(Locale.ROOT))
+                    .body(status);
+        }
+
+        long epoch = status.getIndexEpoch();
+        long version = status.getIndexVersion();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag("\"" + epoch + "-" + version + "\"")
+                .lastModified(status.getPublishedAt())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (!status.isReady()) {
+            response.header(INDEX_HEADER, status.getState().toLowerCase(Locale.ROOT));
+        }
+        return response.body(cache.get(key, epoch, version, query));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package com.example.demo.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Entidad de Dominio: CaptureJob
+ * * Estado de una captura de tráfico ejecutada en segundo plano (script de captura
+ * lanzado desde POST /api/capture). El cliente recibe el identificador al instante y
+ * consulta después si la captura sigue en cola, en curso o ya terminó, con su código
+ * de salida y las últimas líneas de la salida del script.
+ */
+public class CaptureJob {
+
+    /** En espera de que termine otra captura */
+    public static final String QUEUED = "QUEUED";
+
+    /** El script de captura se está ejecutando */
+    public static final String RUNNING = "RUNNING";
+
+    /** El script terminó con código de salida 0 */
+    public static final String SUCCEEDED = "SUCCEEDED";
+
+    /** El script terminó con error o no se pudo ejecutar */
+    public static final String FAILED = "FAILED";
+
+    /** Cancelada por el usuario antes o durante la ejecución */
+    public static final String CANCELLED = "CANCELLED";
+
+    /** Identificador de la captura */
+    private String id;
+
+    /** Duración solicitada de la captura, en segundos */
+    private int duration;
+
+    /** Fase actual: QUEUED, RUNNING, SUCCEEDED, FAILED o CANCELLED */
+    private String state;
+
+    /** Momento en que se solicitó la captura */
+    private Instant submittedAt;
+
+    /** Inicio de la ejecución del script (null mientras está en cola) */
+    private Instant startedAt;
+
+    /** Fin de la ejecución (null mientras no termina) */
+    private Instant finishedAt;
+
+    /** Código de salida del script (null si no terminó o no llegó a ejecutarse) */
+    private Integer exitCode;
+
+    /** Últimas líneas de la salida combinada (stdout + stderr) del script */
+    private List<String> logTail;
+
+    /** Líneas de salida emitidas por el script hasta ahora */
+    private long lines;
+
+    /** Bytes escritos en los PCAP de la captura hasta la última medición */
+    private long bytesCaptured;
+
+    /** Mensaje de error si el script no se pudo ejecutar */
+    private String error;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo de la captura.
+     * @param id Identificador.
+     * @param duration Duración solicitada en segundos.
+     * @param state Fase actual.
+     * @param submittedAt Momento de la solicitud.
+     * @param startedAt Inicio de la ejecución.
+     * @param finishedAt Fin de la ejecución.
+     * @param exitCode Código de salida del script.
+     * @param logTail Últimas líneas de salida.
+     * @param lines Líneas de salida emitidas.
+     * @param bytesCaptured Bytes capturados.
+     * @param error Mensaje de error, si lo hubo.
+     */
+    public CaptureJob(String id, int duration, String state, Instant submittedAt, Instant startedAt,
+                      Instant finishedAt, Integer exitCode, List<String> logTail, long lines,
+                      long bytesCaptured, String error) {
+        this.id = id;
+        this.duration = duration;
+        this.state = state;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.exitCode = exitCode;
+        this.logTail = logTail;
+        this.lines = lines;
+        this.bytesCaptured = bytesCaptured;
+        this.error = error;
+    }
+
+    // --- MÉTODOS DERIVADOS ---
+
+    /** Indica si la captura sigue en cola o en ejecución. */
+    public boolean isActive() {
+        return QUEUED.equals(state) || RUNNING.equals(state);
+    }
+
+    /** Segundos de ejecución hasta el fin (o hasta ahora si sigue en curso); 0 si no empezó. */
+    public long getElapsedSeconds() {
+        if (startedAt == null) return 0;
+        return Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toSeconds();
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Instant submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(Integer exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    public List<String> getLogTail() {
+        return logTail;
+    }
+
+    public void setLogTail(List<String> logTail) {
+        this.logTail = logTail;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public long getBytesCaptured() {
+        return bytesCaptured;
+    }
+
+    public void setBytesCaptured(long bytesCaptured) {
+        this.bytesCaptured = bytesCaptured;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo.domain;
+
+import java.time.Instant;
+
+/**
+ * Entidad de Dominio: CaptureSchedule
+ * * Definición de una captura recurrente (expresión cron o intervalo fijo) y métricas de
+ * sus ejecuciones. La definición se persiste; las métricas se calculan desde el
+ * arranque de la aplicación.
+ * * Lag: retraso entre el instante planificado (incluido el jitter) y el disparo real.
+ * Retraso de inicio: espera de la captura en la cola antes de empezar a ejecutarse.
+ */
+public class CaptureSchedule {
+
+    /** Si hay otra captura activa, la ejecución se omite */
+    public static final String SKIP = "SKIP";
+
+    /** Si hay otra captura activa, la ejecución espera a que termine (una como máximo por programación) */
+    public static final String QUEUE = "QUEUE";
+
+    /** Resultados de la última ejecución */
+    public static final String STARTED = "STARTED";
+    public static final String SKIPPED = "SKIPPED";
+    public static final String REJECTED = "REJECTED";
+    public static final String FAILED = "FAILED";
+    /** Ejecución QUEUE esperando a que termine la captura activa */
+    public static final String WAITING = "WAITING";
+
+    // --- DEFINICIÓN ---
+
+    /** Identificador de la programación */
+    private String id;
+
+    /** Expresión cron de Spring (segundo minuto hora día mes día-semana); excluyente con el intervalo */
+    private String cron;
+
+    /** Intervalo fijo entre ejecuciones, en segundos; excluyente con la expresión cron */
+    private Long intervalSeconds;
+
+    /** Duración de cada captura, en segundos */
+    private Integer duration;
+
+    /** Política si la captura anterior sigue activa: SKIP o QUEUE */
+    private String overlap;
+
+    /** Retraso aleatorio máximo añadido a cada ejecución, en segundos */
+    private long jitterSeconds;
+
+    /** Indica si la programación está activa */
+    private Boolean enabled;
+
+    // --- MÉTRICAS ---
+
+    /** Próximo disparo planificado (con jitter); null si está deshabilitada */
+    private Instant nextRunAt;
+
+    /** Último disparo */
+    private Instant lastRunAt;
+
+    /** Captura lanzada en el último disparo */
+    private String lastJobId;
+
+    /** Resultado del último disparo: STARTED, SKIPPED, REJECTED, FAILED o WAITING */
+    private String lastOutcome;
+
+    /** Capturas lanzadas */
+    private long runs;
+
+    /** Disparos omitidos por solapamiento o cola llena */
+    private long skipped;
+
+    /** Lag del último disparo en milisegundos */
+    private long lastLagMs;
+
+    /** Lag máximo observado en milisegundos */
+    private long maxLagMs;
+
+    /** Suma de los lags (para la media) */
+    private long totalLagMs;
+
+    /** Espera en cola de la última captura lanzada, en milisegundos (null si aún no empieza) */
+    private Long lastStartDelayMs;
+
+    // --- CONSTRUCTORES ---
+
+    public CaptureSchedule() {
+    }
+
+    // --- MÉTODOS DERIVADOS ---
+
+    /** Lag medio por disparo en milisegundos. */
+    public double getAverageLagMs() {
+        long fired = runs + skipped;
+        return fired > 0 ? (double) totalLagMs / fired : 0;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public void setCron(String cron) {
+        this.cron = cron;
+    }
+
+    public Long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public void setIntervalSeconds(Long intervalSeconds) {
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Integer duration) {
+        this.duration = duration;
+    }
+
+    public String getOverlap() {
+        return overlap;
+    }
+
+    public void setOverlap(String overlap) {
+        this.overlap = overlap;
+    }
+
+    public long getJitterSeconds() {
+        return jitterSeconds;
+    }
+
+    public void setJitterSeconds(long jitterSeconds) {
+        this.jitterSeconds = jitterSeconds;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Instant getNextRunAt() {
+        return nextRunAt;
+    }
+
+    public void setNextRunAt(Instant nextRunAt) {
+        this.nextRunAt = nextRunAt;
+    }
+
+    public Instant getLastRunAt() {
+        return lastRunAt;
+    }
+
+    public void setLastRunAt(Instant lastRunAt) {
+        this.lastRunAt = lastRunAt;
+    }
+
+    public String getLastJobId() {
+        return lastJobId;
+    }
+
+    public void setLastJobId(String lastJobId) {
+        this.lastJobId = lastJobId;
+    }
+
+    public String getLastOutcome() {
+        return lastOutcome;
+    }
+
+    public void setLastOutcome(String lastOutcome) {
+        this.lastOutcome = lastOutcome;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public void setRuns(long runs) {
+        this.runs = runs;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public long getLastLagMs() {
+        return lastLagMs;
+    }
+
+    public void setLastLagMs(long lastLagMs) {
+        this.lastLagMs = lastLagMs;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    public void setMaxLagMs(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    public long getTotalLagMs() {
+        return totalLagMs;
+    }
+
+    public void setTotalLagMs(long totalLagMs) {
+        this.totalLagMs = totalLagMs;
+    }
+
+    public Long getLastStartDelayMs() {
+        return lastStartDelayMs;
+    }
+
+    public void setLastStartDelayMs(Long lastStartDelayMs) {
+        this.lastStartDelayMs = lastStartDelayMs;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.domain;
+
+import java.util.List;
+
+/**
+ * Entidad de Dominio: PcapPage
+ * * Página del inventario de capturas con paginación por cursor. El cursor es opaco:
+ * identifica el último elemento entregado (no una posición), por lo que las páginas
+ * siguientes siguen siendo consistentes aunque aparezcan o desaparezcan archivos
+ * entre una petición y otra.
+ */
+public class PcapPage {
+
+    /** Elementos de la página, en el orden solicitado */
+    private List<PcapInfo> items;
+
+    /** Cursor para pedir la página siguiente (null si no hay más elementos) */
+    private String nextCursor;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo de la página.
+     * @param items Elementos de la página.
+     * @param nextCursor Cursor de la página siguiente.
+     */
+    public PcapPage(List<PcapInfo> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public List<PcapInfo> getItems() {
+        return items;
+    }
+
+    public void setItems(List<PcapInfo> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Entidad de Dominio: ReprocessJob
+ * * Estado de un trabajo de re-procesamiento de un PCAP (ejecución del script de
+ * procesamiento sobre una captura cuyo CSV no se generó). Permite al cliente consultar
+ * si el trabajo sigue en cola, en ejecución o ya terminó, con su código de salida y
+ * las últimas líneas de la salida del script.
+ */
+public class ReprocessJob {
+
+    /** En espera de un worker libre */
+    public static final String QUEUED = "QUEUED";
+
+    /** El script se está ejecutando */
+    public static final String RUNNING = "RUNNING";
+
+    /** El script terminó con código de salida 0 */
+    public static final String SUCCEEDED = "SUCCEEDED";
+
+    /** El script terminó con error o no se pudo ejecutar */
+    public static final String FAILED = "FAILED";
+
+    /** Cancelado por el usuario antes o durante la ejecución */
+    public static final String CANCELLED = "CANCELLED";
+
+    /** Identificador del trabajo */
+    private String id;
+
+    /** Nombre del PCAP a re-procesar */
+    private String pcap;
+
+    /** Fase actual: QUEUED, RUNNING, SUCCEEDED, FAILED o CANCELLED */
+    private String state;
+
+    /** Momento en que se encoló el trabajo */
+    private Instant submittedAt;
+
+    /** Inicio de la ejecución del script (null mientras está en cola) */
+    private Instant startedAt;
+
+    /** Fin de la ejecución (null mientras no termina) */
+    private Instant finishedAt;
+
+    /** Código de salida del script (null si no terminó o no llegó a ejecutarse) */
+    private Integer exitCode;
+
+    /** Últimas líneas de la salida combinada (stdout + stderr) del script */
+    private List<String> logTail;
+
+    /** Mensaje de error si el script no se pudo ejecutar */
+    private String error;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo del trabajo.
+     * @param id Identificador.
+     * @param pcap PCAP a re-procesar.
+     * @param state Fase actual.
+     * @param submittedAt Momento de encolado.
+     * @param startedAt Inicio de la ejecución.
+     * @param finishedAt Fin de la ejecución.
+     * @param exitCode Código de salida del script.
+     * @param logTail Últimas líneas de salida.
+     * @param error Mensaje de error, si lo hubo.
+     */
+    public ReprocessJob(String id, String pcap, String state, Instant submittedAt, Instant startedAt,
+                        Instant finishedAt, Integer exitCode, List<String> logTail, String error) {
+        this.id = id;
+        this.pcap = pcap;
+        this.state = state;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.exitCode = exitCode;
+        this.logTail = logTail;
+        this.error = error;
+    }
+
+    // --- MÉTODOS DERIVADOS ---
+
+    /** Indica si el trabajo sigue en cola o en ejecución. */
+    public boolean isActive() {
+        return QUEUED.equals(state) || RUNNING.equals(state);
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPcap() {
+        return pcap;
+    }
+
+    public void setPcap(String pcap) {
+        this.pcap = pcap;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Instant submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(Integer exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    public List<String> getLogTail() {
+        return logTail;
+    }
+
+    public void setLogTail(List<String> logTail) {
+        this.logTail = logTail;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad de Dominio: TrafficCapture
+ * * Representa una captura individual (un reporte CSV) con los volúmenes extraídos de
+ * su nombre. Permite desglosar un pico diario en las capturas que lo componen.
+ */
+public class TrafficCapture {
+
+    /** Fecha y hora de inicio de la captura */
+    private LocalDateTime timestamp;
+
+    /** Tráfico de entrada registrado por la captura */
+    private double input;
+
+    /** Tráfico de salida registrado por la captura */
+    private double output;
+
+    /** Nombre del archivo CSV de la captura (descargable vía /api/csv_files/download) */
+    private String file;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo de la captura.
+     * @param timestamp Instante de la captura.
+     * @param input Volumen de entrada.
+     * @param output Volumen de salida.
+     * @param file Nombre del archivo CSV.
+     */
+    public TrafficCapture(LocalDateTime timestamp, double input, double output, String file) {
+        this.timestamp = timestamp;
+        this.input = input;
+        this.output = output;
+        this.file = file;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public double getInput() {
+        return input;
+    }
+
+    public void setInput(double input) {
+        this.input = input;
+    }
+
+    public double getOutput() {
+        return output;
+    }
+
+    public void setOutput(double output) {
+        this.output = output;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.demo.domain;
+
+import java.time.Instant;
+
+/**
+ * Entidad de Dominio: TrafficCompactionStats
+ * * Métricas de la compresión de archivos antiguos del directorio de tráfico: cuántos
+ * archivos se comprimieron, cuánto espacio se recuperó y a qué velocidad se están
+ * descomprimiendo al leerlos (descargas, re-procesamientos y análisis).
+ */
+public class TrafficCompactionStats {
+
+    /** Indica si la compresión periódica está habilitada */
+    private boolean enabled;
+
+    /** Indica si hay una compresión en curso */
+    private boolean running;
+
+    /** Antigüedad mínima (días desde la última modificación) para comprimir un archivo */
+    private long minAgeDays;
+
+    // --- ÚLTIMA EJECUCIÓN ---
+
+    /** Inicio de la última ejecución */
+    private Instant lastRunStartedAt;
+
+    /** Fin de la última ejecución (null mientras está en curso) */
+    private Instant lastRunFinishedAt;
+
+    /** Archivos comprimidos en la última ejecución */
+    private long lastRunFiles;
+
+    /** Error que interrumpió la última ejecución (null si terminó bien o sigue en curso) */
+    private String lastRunError;
+
+    // --- ACUMULADOS DESDE EL ARRANQUE ---
+
+    /** Archivos comprimidos */
+    private long filesCompressed;
+
+    /** Bytes originales de los archivos comprimidos */
+    private long bytesBefore;
+
+    /** Bytes en disco tras comprimirlos */
+    private long bytesAfter;
+
+    /** Archivos restaurados a su forma original (para scripts externos) */
+    private long filesInflated;
+
+    /** Bytes entregados por la descompresión en streaming */
+    private long bytesDecompressed;
+
+    /** Segundos dedicados a descomprimir */
+    private double decompressSeconds;
+
+    // --- CONSTRUCTORES ---
+
+    public TrafficCompactionStats() {
+    }
+
+    // --- MÉTODOS DERIVADOS ---
+
+    /** Bytes recuperados en disco. */
+    public long getBytesReclaimed() {
+        return bytesBefore - bytesAfter;
+    }
+
+    /** Velocidad media de descompresión en MB/s (0 si aún no se ha descomprimido nada). */
+    public double getDecompressMbPerSecond() {
+        return decompressSeconds > 0 ? bytesDecompressed / 1_000_000.0 / decompressSeconds : 0;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public long getMinAgeDays() {
+        return minAgeDays;
+    }
+
+    public void setMinAgeDays(long minAgeDays) {
+        this.minAgeDays = minAgeDays;
+    }
+
+    public Instant getLastRunStartedAt() {
+        return lastRunStartedAt;
+    }
+
+    public void setLastRunStartedAt(Instant lastRunStartedAt) {
+        this.lastRunStartedAt = lastRunStartedAt;
+    }
+
+    public Instant getLastRunFinishedAt() {
+        return lastRunFinishedAt;
+    }
+
+    public void setLastRunFinishedAt(Instant lastRunFinishedAt) {
+        this.lastRunFinishedAt = lastRunFinishedAt;
+    }
+
+    public long getLastRunFiles() {
+        return lastRunFiles;
+    }
+
+    public void setLastRunFiles(long lastRunFiles) {
+        this.lastRunFiles = lastRunFiles;
+    }
+
+    public String getLastRunError() {
+        return lastRunError;
+    }
+
+    public void setLastRunError(String lastRunError) {
+        this.lastRunError = lastRunError;
+    }
+
+    public long getFilesCompressed() {
+        return filesCompressed;
+    }
+
+    public void setFilesCompressed(long filesCompressed) {
+        this.filesCompressed = filesCompressed;
+    }
+
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    public void setBytesBefore(long bytesBefore) {
+        this.bytesBefore = bytesBefore;
+    }
+
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    public void setBytesAfter(long bytesAfter) {
+        this.bytesAfter = bytesAfter;
+    }
+
+    public long getFilesInflated() {
+        return filesInflated;
+    }
+
+    public void setFilesInflated(long filesInflated) {
+        this.filesInflated = filesInflated;
+    }
+
+    public long getBytesDecompressed() {
+        return bytesDecompressed;
+    }
+
+    public void setBytesDecompressed(long bytesDecompressed) {
+        this.bytesDecompressed = bytesDecompressed;
+    }
+
+    public double getDecompressSeconds() {
+        return decompressSeconds;
+    }
+
+    public void setDecompressSeconds(double decompressSeconds) {
+        this.decompressSeconds = decompressSeconds;
+    }
+}
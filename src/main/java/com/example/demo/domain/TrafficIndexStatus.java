@@ -0,0 +1,172 @@
+package com.example.demo.domain;
+
+import java.time.Instant;
+
+/**
+ * Entidad de Dominio: TrafficIndexStatus
+ * * Estado de preparación del índice de tráfico. Permite a los clientes saber si las
+ * gráficas ya reflejan todos los reportes o si el índice se sigue construyendo.
+ */
+public class TrafficIndexStatus {
+
+    /** El índice se está construyendo; las consultas pueden devolver datos parciales */
+    public static final String WARMING = "WARMING";
+
+    /** El índice está completo y se mantiene al día de forma incremental */
+    public static final String READY = "READY";
+
+    /** La construcción falló; el siguiente resync reintenta */
+    public static final String FAILED = "FAILED";
+
+    /** Fase actual: WARMING, READY o FAILED */
+    private String state;
+
+    /** Inicio de la construcción del índice */
+    private Instant startedAt;
+
+    /** Momento en que el índice quedó completo (null mientras se construye) */
+    private Instant readyAt;
+
+    /** Archivos CSV analizados hasta el momento */
+    private long filesScanned;
+
+    /** Archivos CSV por analizar conocidos hasta el momento */
+    private long filesTotal;
+
+    /** Segundos restantes estimados (null si no aplica o aún no se puede estimar) */
+    private Long etaSeconds;
+
+    /**
+     * Arranque de la aplicación en el que se publicó la versión (epoch en milisegundos): las
+     * versiones vuelven a empezar en cada arranque y solo son comparables dentro de uno
+     */
+    private long indexEpoch;
+
+    /** Versión publicada del índice (0 = aún no hay datos) */
+    private long indexVersion;
+
+    /** Momento en que se publicó la versión vigente del índice */
+    private Instant publishedAt;
+
+    /** Mensaje de error de la última construcción fallida */
+    private String error;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo del estado.
+     * @param state Fase actual.
+     * @param startedAt Inicio de la construcción.
+     * @param readyAt Fin de la construcción.
+     * @param filesScanned Archivos analizados.
+     * @param filesTotal Archivos por analizar.
+     * @param etaSeconds Segundos restantes estimados.
+     * @param indexEpoch Arranque de la aplicación al que pertenece la versión.
+     * @param indexVersion Versión publicada del índice.
+     * @param publishedAt Momento de publicación de esa versión.
+     * @param error Mensaje de error, si lo hubo.
+     */
+    public TrafficIndexStatus(String state, Instant startedAt, Instant readyAt, long filesScanned,
+                              long filesTotal, Long etaSeconds, long indexEpoch, long indexVersion, Instant publishedAt,
+                              String error) {
+        this.state = state;
+        this.startedAt = startedAt;
+        this.readyAt = readyAt;
+        this.filesScanned = filesScanned;
+        this.filesTotal = filesTotal;
+        this.etaSeconds = etaSeconds;
+        this.indexEpoch = indexEpoch;
+        this.indexVersion = indexVersion;
+        this.publishedAt = publishedAt;
+        this.error = error;
+    }
+
+    // --- MÉTODOS DERIVADOS ---
+
+    /** Indica si el índice está completo. */
+    public boolean isReady() {
+        return READY.equals(state);
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getReadyAt() {
+        return readyAt;
+    }
+
+    public void setReadyAt(Instant readyAt) {
+        this.readyAt = readyAt;
+    }
+
+    public long getFilesScanned() {
+        return filesScanned;
+    }
+
+    public void setFilesScanned(long filesScanned) {
+        this.filesScanned = filesScanned;
+    }
+
+    public long getFilesTotal() {
+        return filesTotal;
+    }
+
+    public void setFilesTotal(long filesTotal) {
+        this.filesTotal = filesTotal;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    public long getIndexEpoch() {
+        return indexEpoch;
+    }
+
+    public void setIndexEpoch(long indexEpoch) {
+        this.indexEpoch = indexEpoch;
+    }
+
+    public long getIndexVersion() {
+        return indexVersion;
+    }
+
+    public void setIndexVersion(long indexVersion) {
+        this.indexVersion = indexVersion;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(Instant publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
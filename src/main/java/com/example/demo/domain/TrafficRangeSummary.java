@@ -0,0 +1,122 @@
+package com.example.demo.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Entidad de Dominio: TrafficRangeSummary
+ * * Resumen agregado del tráfico de un periodo arbitrario (totales y promedios).
+ * Alimenta las tarjetas de indicadores del dashboard sin necesidad de descargar
+ * la serie diaria completa y sumarla en el cliente.
+ */
+public class TrafficRangeSummary {
+
+    // --- PERIODO ---
+
+    /** Fecha inicial del periodo consultado (inclusive) */
+    private LocalDate from;
+
+    /** Fecha final del periodo consultado (inclusive) */
+    private LocalDate to;
+
+    // --- MÉTRICAS AGREGADAS ---
+
+    /** Días del periodo que tienen al menos una captura */
+    private int activeDays;
+
+    /** Número total de capturas del periodo */
+    private long captures;
+
+    /** Sumatoria del tráfico de entrada del periodo */
+    private double totalInput;
+
+    /** Sumatoria del tráfico de salida del periodo */
+    private double totalOutput;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor para la creación del resumen.
+     * @param from Inicio del periodo.
+     * @param to Fin del periodo.
+     * @param activeDays Días con actividad.
+     * @param captures Cantidad de capturas.
+     * @param totalInput Volumen de entrada.
+     * @param totalOutput Volumen de salida.
+     */
+    public TrafficRangeSummary(LocalDate from, LocalDate to, int activeDays, long captures,
+                               double totalInput, double totalOutput) {
+        this.from = from;
+        this.to = to;
+        this.activeDays = activeDays;
+        this.captures = captures;
+        this.totalInput = totalInput;
+        this.totalOutput = totalOutput;
+    }
+
+    // --- MÉTRICAS DERIVADAS ---
+
+    /** Promedio de entrada por día con actividad */
+    public double getAverageDailyInput() {
+        return activeDays == 0 ? 0 : totalInput / activeDays;
+    }
+
+    /** Promedio de salida por día con actividad */
+    public double getAverageDailyOutput() {
+        return activeDays == 0 ? 0 : totalOutput / activeDays;
+    }
+
+    /** Volumen promedio (input + output) por captura */
+    public double getAverageCaptureVolume() {
+        return captures == 0 ? 0 : (totalInput + totalOutput) / captures;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public int getActiveDays() {
+        return activeDays;
+    }
+
+    public void setActiveDays(int activeDays) {
+        this.activeDays = activeDays;
+    }
+
+    public long getCaptures() {
+        return captures;
+    }
+
+    public void setCaptures(long captures) {
+        this.captures = captures;
+    }
+
+    public double getTotalInput() {
+        return totalInput;
+    }
+
+    public void setTotalInput(double totalInput) {
+        this.totalInput = totalInput;
+    }
+
+    public double getTotalOutput() {
+        return totalOutput;
+    }
+
+    public void setTotalOutput(double totalOutput) {
+        this.totalOutput = totalOutput;
+    }
+}
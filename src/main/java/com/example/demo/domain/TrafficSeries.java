@@ -0,0 +1,75 @@
+package com.example.demo.domain;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Entidad de Dominio: TrafficSeries
+ * * Serie temporal de tráfico lista para graficar, junto con la resolución con la que
+ * fue agregada. Permite al frontend ajustar las etiquetas del eje X según el paso
+ * elegido por el servidor.
+ */
+public class TrafficSeries {
+
+    /** Resolución de los puntos: HOUR, DAY, WEEK o MONTH */
+    private String step;
+
+    /** Inicio del periodo solicitado */
+    private LocalDateTime from;
+
+    /** Fin del periodo solicitado */
+    private LocalDateTime to;
+
+    /** Intervalos con actividad, ordenados cronológicamente */
+    private List<TrafficSeriesPoint> points;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo de la serie.
+     * @param step Resolución usada.
+     * @param from Inicio del periodo.
+     * @param to Fin del periodo.
+     * @param points Puntos de la serie.
+     */
+    public TrafficSeries(String step, LocalDateTime from, LocalDateTime to, List<TrafficSeriesPoint> points) {
+        this.step = step;
+        this.from = from;
+        this.to = to;
+        this.points = points;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public String getStep() {
+        return step;
+    }
+
+    public void setStep(String step) {
+        this.step = step;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public List<TrafficSeriesPoint> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<TrafficSeriesPoint> points) {
+        this.points = points;
+    }
+}
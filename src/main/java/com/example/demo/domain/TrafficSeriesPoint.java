@@ -0,0 +1,78 @@
+package com.example.demo.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad de Dominio: TrafficSeriesPoint
+ * * Un punto de una serie temporal de tráfico agregada a una resolución arbitraria
+ * (hora, día, semana o mes). Equivale a {@link TrafficDayStats} pero identificado por
+ * el instante de inicio del intervalo en lugar de por una fecha.
+ */
+public class TrafficSeriesPoint {
+
+    // --- DIMENSIONES TEMPORALES ---
+
+    /** Inicio del intervalo agregado (inclusive) */
+    private LocalDateTime start;
+
+    // --- MÉTRICAS AGREGADAS ---
+
+    /** Sumatoria del tráfico de entrada del intervalo */
+    private double totalInput;
+
+    /** Sumatoria del tráfico de salida del intervalo */
+    private double totalOutput;
+
+    /** Número de capturas que contribuyeron al intervalo */
+    private int captures;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor para la creación de puntos agregados.
+     * @param start Inicio del intervalo.
+     * @param totalInput Volumen de entrada.
+     * @param totalOutput Volumen de salida.
+     * @param captures Cantidad de capturas.
+     */
+    public TrafficSeriesPoint(LocalDateTime start, double totalInput, double totalOutput, int captures) {
+        this.start = start;
+        this.totalInput = totalInput;
+        this.totalOutput = totalOutput;
+        this.captures = captures;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+
+    public double getTotalInput() {
+        return totalInput;
+    }
+
+    public void setTotalInput(double totalInput) {
+        this.totalInput = totalInput;
+    }
+
+    public double getTotalOutput() {
+        return totalOutput;
+    }
+
+    public void setTotalOutput(double totalOutput) {
+        this.totalOutput = totalOutput;
+    }
+
+    public int getCaptures() {
+        return captures;
+    }
+
+    public void setCaptures(int captures) {
+        this.captures = captures;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Entidad de Dominio: TrafficVolumeDistribution
+ * * Distribución del volumen (input + output) por captura dentro de un periodo.
+ * Complementa a los totales diarios: permite distinguir un día con una sola captura
+ * enorme de otro con muchas capturas medianas. Los percentiles son aproximados, con
+ * un error relativo máximo del 1 %.
+ */
+public class TrafficVolumeDistribution {
+
+    // --- PERIODO ---
+
+    /** Fecha inicial del periodo (inclusive) */
+    private LocalDate from;
+
+    /** Fecha final del periodo (inclusive) */
+    private LocalDate to;
+
+    // --- DISTRIBUCIÓN ---
+
+    /** Número de capturas del periodo */
+    private long captures;
+
+    /** Mediana del volumen por captura */
+    private double p50;
+
+    /** Percentil 90 del volumen por captura */
+    private double p90;
+
+    /** Percentil 99 del volumen por captura */
+    private double p99;
+
+    /** Volumen de la captura más grande */
+    private double max;
+
+    // --- CONSTRUCTORES ---
+
+    /**
+     * Constructor completo de la distribución.
+     * @param from Inicio del periodo.
+     * @param to Fin del periodo.
+     * @param captures Cantidad de capturas.
+     * @param p50 Mediana del volumen.
+     * @param p90 Percentil 90 del volumen.
+     * @param p99 Percentil 99 del volumen.
+     * @param max Volumen máximo.
+     */
+    public TrafficVolumeDistribution(LocalDate from, LocalDate to, long captures,
+                                     double p50, double p90, double p99, double max) {
+        this.from = from;
+        this.to = to;
+        this.captures = captures;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    // --- GETTERS Y SETTERS ---
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public long getCaptures() {
+        return captures;
+    }
+
+    public void setCaptures(long captures) {
+        this.captures = captures;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public void setP50(double p50) {
+        this.p50 = p50;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public void setP90(double p90) {
+        this.p90 = p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public void setP99(double p99) {
+        this.p99 = p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+}
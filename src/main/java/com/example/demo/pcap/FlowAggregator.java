@@ -0,0 +1,97 @@
+package com.example.demo.pcap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Agrega los paquetes de una captura en flujos bidireccionales por 5-tupla.
+ * * Lee la captura con {@link PcapReader}, acumula en una {@link FlowTable} y entrega los
+ * flujos a un {@link FlowTable.Sink} a medida que terminan:
+ * - inactivos: sin paquetes durante {@code idleTimeout};
+ * - activos: abiertos más de {@code activeTimeout} (se parten en varios registros);
+ * - TCP: RST de inmediato, o FIN en ambos sentidos tras {@code finTimeout} sin paquetes;
+ * - al final de la captura, todos los que sigan abiertos.
+ * * Los plazos se miden con el reloj de la captura (las marcas de tiempo de los
+ * paquetes), con una resolución de un segundo, así que el resultado no depende de la
+ * velocidad de lectura.
+ */
+public final class FlowAggregator {
+
+    /** Cada cuánto tiempo de captura se revisan los plazos */
+    private static final long SWEEP_NANOS = 1_000_000_000L;
+
+    /** Flujos previstos al crear la tabla (crece al llenarse) */
+    private static final int INITIAL_FLOWS = 1 << 14;
+
+    /** Paquetes entre consultas de cancelación */
+    private static final int CANCEL_CHECK_PACKETS = 1 << 16;
+
+    private final long idleTimeoutNanos;
+    private final long activeTimeoutNanos;
+    private final long finTimeoutNanos;
+    private final int maxFlows;
+    private final int initialFlows;
+
+    /** Resultado de una agregación. */
+    public record Result(long packets, long ignoredPackets, long flows, boolean truncated) {}
+
+    /**
+     * @param idleTimeoutSeconds Inactividad tras la que un flujo se cierra.
+     * @param activeTimeoutSeconds Duración máxima de un registro de flujo.
+     * @param finTimeoutSeconds Espera tras el FIN de ambos extremos.
+     * @param maxFlows Flujos simultáneos antes de forzar el cierre de los más inactivos.
+     */
+    public FlowAggregator(long idleTimeoutSeconds, long activeTimeoutSeconds, long finTimeoutSeconds, int maxFlows) {
+        this(idleTimeoutSeconds, activeTimeoutSeconds, finTimeoutSeconds, maxFlows, INITIAL_FLOWS);
+    }
+
+    /** @param initialFlows Flujos previstos al crear la tabla (las pruebas la fuerzan a crecer). */
+    FlowAggregator(long idleTimeoutSeconds, long activeTimeoutSeconds, long finTimeoutSeconds, int maxFlows,
+                   int initialFlows) {
+        this.idleTimeoutNanos = Math.max(idleTimeoutSeconds, 1) * 1_000_000_000L;
+        this.activeTimeoutNanos = Math.max(activeTimeoutSeconds, 1) * 1_000_000_000L;
+        this.finTimeoutNanos = Math.max(finTimeoutSeconds, 0) * 1_000_000_000L;
+        this.maxFlows = maxFlows;
+        this.initialFlows = initialFlows;
+    }
+
+    /**
+     * Agrega una captura completa.
+     * @param cancelled Se consulta periódicamente; si devuelve true la agregación se interrumpe.
+     * @throws CancellationException Si se canceló.
+     * @throws IOException Si la captura no se puede leer o el sink falla.
+     */
+    public Result aggregate(Path pcap, FlowTable.Sink sink, BooleanSupplier cancelled) throws IOException {
+        FlowTable table = new FlowTable(initialFlows, maxFlows);
+        long[] flows = new long[1];
+        FlowTable.Sink counting = (t, slot, reason) -> {
+            flows[0]++;
+            sink.flow(t, slot, reason);
+        };
+        long ignored = 0;
+        long nextSweep = Long.MIN_VALUE;
+        long now = Long.MIN_VALUE;
+
+        try (PcapReader reader = PcapReader.open(pcap)) {
+            while (reader.next()) {
+                PcapPacket packet = reader.packet();
+
+                // Se vence antes de contabilizar: tras un hueco largo el paquete abre un flujo nuevo
+                now = Math.max(now, packet.timestampNanos());
+                if (nextSweep == Long.MIN_VALUE) nextSweep = now + SWEEP_NANOS;
+                if (now >= nextSweep) {
+                    table.expire(now - idleTimeoutNanos, now - finTimeoutNanos, now - activeTimeoutNanos, counting);
+                    nextSweep = now + SWEEP_NANOS;
+                }
+                if (!table.add(packet, counting)) ignored++;
+                if ((reader.packetsRead() & (CANCEL_CHECK_PACKETS - 1)) == 0 && cancelled.getAsBoolean()) {
+                    throw new CancellationException("Agregación cancelada");
+                }
+            }
+            table.flush(counting);
+            return new Result(reader.packetsRead(), ignored, flows[0], reader.truncated());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.pcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe los flujos terminados de una {@link FlowTable} como filas CSV.
+ * * Cada fila se formatea directamente en un buffer de bytes reutilizado (sin String
+ * por flujo) y se vuelca al flujo de salida en bloques de 64 KB.
+ * * También acumula el volumen de entrada y salida del servidor VPN, que va en el
+ * nombre del reporte: entrada = bytes enviados hacia la IP del servidor, salida = bytes
+ * enviados desde ella. Sin IP de servidor, entrada es el sentido iniciador → respondedor
+ * y salida el contrario.
+ */
+public final class FlowCsvWriter implements FlowTable.Sink, Closeable {
+
+    /** Columnas del reporte, en orden */
+    public static final String HEADER = "flow.start,flow.end,flow.duration,ip.version,ip.src,ip.dst,ip.proto,"
+            + "srcport,dstport,packets.fwd,packets.bwd,bytes.fwd,bytes.bwd,tcp.flags.fwd,tcp.flags.bwd,flow.end_reason";
+
+    private static final byte[][] END_NAMES = {
+            bytes("idle"), bytes("active"), bytes("fin"), bytes("rst"), bytes("eof")
+    };
+
+    private static final byte[] HEX = bytes("0123456789abcdef");
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int count;
+
+    private final boolean hasServer;
+    private final long serverHi;
+    private final long serverLo;
+
+    private long flows;
+    private long inputBytes;
+    private long outputBytes;
+
+    /**
+     * @param server IP del servidor VPN para separar entrada y salida (null = por sentido del flujo).
+     */
+    public FlowCsvWriter(OutputStream out, InetAddress server) throws IOException {
+        this.out = out;
+        this.hasServer = server != null;
+        byte[] address = server == null ? new byte[4] : server.getAddress();
+        long hi = 0, lo = 0;
+        if (address.length == 4) {
+            lo = 0x0000_FFFF_0000_0000L | ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFFL) << 16)
+                    | ((address[2] & 0xFFL) << 8) | (address[3] & 0xFFL);
+        } else {
+            for (int i = 0; i < 8; i++) hi = (hi << 8) | (address[i] & 0xFF);
+            for (int i = 8; i < 16; i++) lo = (lo << 8) | (address[i] & 0xFF);
+        }
+        this.serverHi = hi;
+        this.serverLo = lo;
+
+        out.write(bytes(HEADER + "\n"));
+    }
+
+    @Override
+    public void flow(FlowTable t, int slot, int reason) throws IOException {
+        // Una fila ocupa como máximo ~330 bytes (dos direcciones IPv6 y contadores de 19 dígitos)
+        if (count > buffer.length - 512) drain();
+
+        long first = t.firstNanos(slot);
+        long last = t.lastNanos(slot);
+        int version = t.ipVersion(slot);
+
+        seconds(first);
+        comma();
+        seconds(last);
+        comma();
+        seconds(last - first);
+        comma();
+        number(version);
+        comma();
+        address(version, t.srcAddressHi(slot), t.srcAddressLo(slot));
+        comma();
+        address(version, t.dstAddressHi(slot), t.dstAddressLo(slot));
+        comma();
+        number(t.protocol(slot));
+        comma();
+        number(t.srcPort(slot));
+        comma();
+        number(t.dstPort(slot));
+        comma();
+        number(t.packetsFwd(slot));
+        comma();
+        number(t.packetsBwd(slot));
+        comma();
+        number(t.bytesFwd(slot));
+        comma();
+        number(t.bytesBwd(slot));
+        comma();
+        number(t.tcpFlagsFwd(slot));
+        comma();
+        number(t.tcpFlagsBwd(slot));
+        comma();
+        byte[] end = END_NAMES[reason];
+        System.arraycopy(end, 0, buffer, count, end.length);
+        count += end.length;
+        buffer[count++] = '\n';
+
+        flows++;
+        boolean fromServer = hasServer && t.srcAddressLo(slot) == serverLo && t.srcAddressHi(slot) == serverHi;
+        boolean toServer = hasServer && t.dstAddressLo(slot) == serverLo && t.dstAddressHi(slot) == serverHi;
+        if (!hasServer || toServer) {
+            inputBytes += t.bytesFwd(slot);
+            outputBytes += t.bytesBwd(slot);
+        } else if (fromServer) {
+            outputBytes += t.bytesFwd(slot);
+            inputBytes += t.bytesBwd(slot);
+        }
+    }
+
+    /** Flujos escritos. */
+    public long flows() {
+        return flows;
+    }
+
+    /** Bytes recibidos por el servidor. */
+    public long inputBytes() {
+        return inputBytes;
+    }
+
+    /** Bytes enviados por el servidor. */
+    public long outputBytes() {
+        return outputBytes;
+    }
+
+    // --- FORMATO ---
+
+    private void comma() {
+        buffer[count++] = ',';
+    }
+
+    private void number(long value) {
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            buffer[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        reverse(start, count - 1);
+    }
+
+    /** Nanosegundos como segundos con 6 decimales. */
+    private void seconds(long nanos) {
+        if (nanos < 0) {
+            buffer[count++] = '-';
+            nanos = -nanos;
+        }
+        number(nanos / 1_000_000_000L);
+        buffer[count++] = '.';
+        long micros = (nanos % 1_000_000_000L) / 1000;
+        for (long div = 100_000; div > 0; div /= 10) {
+            buffer[count++] = (byte) ('0' + (micros / div) % 10);
+        }
+    }
+
+    private void address(int version, long hi, long lo) {
+        if (version == 4) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                number((lo >>> shift) & 0xFF);
+                if (shift > 0) buffer[count++] = '.';
+            }
+            return;
+        }
+        for (int group = 0; group < 8; group++) {
+            if (group > 0) buffer[count++] = ':';
+            long word = group < 4 ? hi : lo;
+            int value = (int) (word >>> (48 - 16 * (group & 3))) & 0xFFFF;
+            boolean started = false;
+            for (int shift = 12; shift >= 0; shift -= 4) {
+                int digit = (value >>> shift) & 0xF;
+                if (digit != 0 || started || shift == 0) {
+                    buffer[count++] = HEX[digit];
+                    started = true;
+                }
+            }
+        }
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte b = buffer[from];
+            buffer[from++] = buffer[to];
+            buffer[to--] = b;
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Vuelca las filas pendientes (no cierra el flujo de salida subyacente). */
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.flush();
+    }
+}
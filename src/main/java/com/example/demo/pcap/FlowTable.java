@@ -0,0 +1,386 @@
+package com.example.demo.pcap;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tabla de flujos bidireccionales con direccionamiento abierto sobre un único long[].
+ * * Cada ranura ocupa {@link #STRIDE} longs consecutivos: la clave (5-tupla canónica, con
+ * las direcciones IPv4 mapeadas a IPv6 ::ffff:a.b.c.d) y los contadores del flujo. Los
+ * dos sentidos de una conexión comparten clave porque los extremos se ordenan; el
+ * extremo que envió el primer paquete es el iniciador ("fwd").
+ * * Sondeo lineal y borrado por desplazamiento hacia atrás (sin lápidas), de modo que
+ * la tabla no se degrada con el alta y baja continua de flujos. No crea objetos por
+ * paquete ni por flujo: los flujos terminados se entregan a un {@link Sink} por su
+ * ranura, que es válida solo durante la llamada.
+ * * No es segura para uso concurrente.
+ */
+public final class FlowTable {
+
+    /** Motivos de cierre de un flujo */
+    public static final int END_IDLE = 0;
+    public static final int END_ACTIVE = 1;
+    public static final int END_FIN = 2;
+    public static final int END_RST = 3;
+    public static final int END_EOF = 4;
+
+    private static final String[] END_NAMES = {"idle", "active", "fin", "rst", "eof"};
+
+    /** Recibe cada flujo terminado. */
+    public interface Sink {
+        void flow(FlowTable table, int slot, int reason) throws IOException;
+    }
+
+    // --- DISPOSICIÓN DE UNA RANURA ---
+
+    private static final int A_HI = 0;
+    private static final int A_LO = 1;
+    private static final int B_HI = 2;
+    private static final int B_LO = 3;
+    /** puertoA << 32 | puertoB << 16 | protocolo << 8 | versión IP */
+    private static final int PORTS = 4;
+    /** bit 0 ocupado, bit 1 iniciador = B, bit 2 FIN en ambos sentidos, bits 8-15 flags A→B, 16-23 flags B→A */
+    private static final int META = 5;
+    private static final int FIRST = 6;
+    private static final int LAST = 7;
+    private static final int PACKETS_AB = 8;
+    private static final int PACKETS_BA = 9;
+    private static final int BYTES_AB = 10;
+    private static final int BYTES_BA = 11;
+    static final int STRIDE = 12;
+
+    private static final long USED = 1;
+    private static final long INITIATOR_B = 2;
+    private static final long FINISHED = 4;
+    private static final int TCP_FIN = 0x01;
+    private static final int TCP_RST = 0x04;
+
+    /** Prefijo de una dirección IPv4 mapeada a IPv6 (::ffff:0:0/96) */
+    private static final long V4_MAPPED_LO = 0x0000_FFFF_0000_0000L;
+
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private int growAt;
+    private final int maxFlows;
+
+    /** Dirección del paquete en curso, reutilizada */
+    private final byte[] address = new byte[16];
+
+    // --- CLAVE DEL PAQUETE EN CURSO ---
+
+    private long srcHi;
+    private long srcLo;
+    private long dstHi;
+    private long dstLo;
+
+    /**
+     * @param initialCapacity Flujos previstos (se redondea a potencia de 2 con factor de carga 0.5).
+     * @param maxFlows Límite de flujos simultáneos; al alcanzarlo se cierran los más inactivos.
+     */
+    public FlowTable(int initialCapacity, int maxFlows) {
+        this.maxFlows = Math.max(maxFlows, 16);
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity * STRIDE];
+        mask = capacity - 1;
+        growAt = (int) (capacity * MAX_LOAD);
+        size = 0;
+    }
+
+    /** Flujos abiertos. */
+    public int size() {
+        return size;
+    }
+
+    // --- ACTUALIZACIÓN ---
+
+    /**
+     * Contabiliza un paquete IP con su 5-tupla en el flujo correspondiente.
+     * * Un RST cierra el flujo y lo entrega a {@code sink} de inmediato. Con FIN en ambos
+     * sentidos el flujo queda terminado pero abierto hasta {@link #expire}, para que el
+     * ACK final no abra un flujo nuevo.
+     * @return false si el paquete no es IP (se ignora).
+     */
+    public boolean add(PcapPacket packet, Sink sink) throws IOException {
+        int version = packet.ipVersion();
+        if (version == 0) return false;
+
+        if (version == 4) {
+            srcHi = 0;
+            srcLo = V4_MAPPED_LO | (packet.srcIpv4() & 0xFFFFFFFFL);
+            dstHi = 0;
+            dstLo = V4_MAPPED_LO | (packet.dstIpv4() & 0xFFFFFFFFL);
+        } else {
+            packet.copySrcAddress(address);
+            srcHi = longAt(address, 0);
+            srcLo = longAt(address, 8);
+            packet.copyDstAddress(address);
+            dstHi = longAt(address, 0);
+            dstLo = longAt(address, 8);
+        }
+        int srcPort = Math.max(packet.srcPort(), 0);
+        int dstPort = Math.max(packet.dstPort(), 0);
+        int protocol = packet.protocol() & 0xFF;
+
+        // Extremo A = el menor (dirección, puerto): ambos sentidos dan la misma clave
+        int order = Long.compareUnsigned(srcHi, dstHi);
+        if (order == 0) order = Long.compareUnsigned(srcLo, dstLo);
+        if (order == 0) order = Integer.compare(srcPort, dstPort);
+        boolean fromA = order <= 0;
+
+        long aHi = fromA ? srcHi : dstHi, aLo = fromA ? srcLo : dstLo;
+        long bHi = fromA ? dstHi : srcHi, bLo = fromA ? dstLo : srcLo;
+        long ports = (long) (fromA ? srcPort : dstPort) << 32 | (long) (fromA ? dstPort : srcPort) << 16
+                | protocol << 8 | version;
+
+        int slot = find(aHi, aLo, bHi, bLo, ports);
+        int base = slot * STRIDE;
+        long now = packet.timestampNanos();
+        if ((slots[base + META] & USED) == 0) {
+            slots[base + A_HI] = aHi;
+            slots[base + A_LO] = aLo;
+            slots[base + B_HI] = bHi;
+            slots[base + B_LO] = bLo;
+            slots[base + PORTS] = ports;
+            slots[base + META] = USED | (fromA ? 0 : INITIATOR_B);
+            slots[base + FIRST] = now;
+            slots[base + LAST] = now;
+            size++;
+        }
+
+        long bytes = packet.originalLength();
+        if (fromA) {
+            slots[base + PACKETS_AB]++;
+            slots[base + BYTES_AB] += bytes;
+        } else {
+            slots[base + PACKETS_BA]++;
+            slots[base + BYTES_BA] += bytes;
+        }
+        if (now > slots[base + LAST]) slots[base + LAST] = now;
+
+        int flags = packet.tcpFlags();
+        if (flags > 0) {
+            long meta = slots[base + META] | ((long) flags << (fromA ? 8 : 16));
+            if (((meta >> 8) & TCP_FIN) != 0 && ((meta >> 16) & TCP_FIN) != 0) meta |= FINISHED;
+            slots[base + META] = meta;
+            if ((flags & TCP_RST) != 0) {
+                sink.flow(this, slot, END_RST);
+                remove(slot);
+                return true;
+            }
+        }
+
+        if (size >= maxFlows) evictOldest(sink, now);
+        else if (size > growAt) grow();
+        return true;
+    }
+
+    /** Ranura del flujo con esa clave, o la ranura libre donde insertarlo. */
+    private int find(long aHi, long aLo, long bHi, long bLo, long ports) {
+        int slot = (int) mix(aHi, aLo, bHi, bLo, ports) & mask;
+        while (true) {
+            int base = slot * STRIDE;
+            if ((slots[base + META] & USED) == 0) return slot;
+            if (slots[base + PORTS] == ports && slots[base + A_LO] == aLo && slots[base + B_LO] == bLo
+                    && slots[base + A_HI] == aHi && slots[base + B_HI] == bHi) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static long mix(long aHi, long aLo, long bHi, long bLo, long ports) {
+        long h = aHi * 0x9E3779B97F4A7C15L;
+        h = (h ^ aLo) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ bHi) * 0x9E3779B97F4A7C15L;
+        h = (h ^ bLo) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ ports) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29) ^ (h >>> 47);
+    }
+
+    private static long longAt(byte[] b, int offset) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) v = (v << 8) | (b[offset + i] & 0xFF);
+        return v;
+    }
+
+    /** Borrado con desplazamiento hacia atrás: recoloca los elementos del grupo que siguen. */
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while ((slots[next * STRIDE + META] & USED) != 0) {
+            int base = next * STRIDE;
+            int home = (int) mix(slots[base + A_HI], slots[base + A_LO], slots[base + B_HI],
+                    slots[base + B_LO], slots[base + PORTS]) & mask;
+            // Se mueve si su posición ideal no está entre el hueco (exclusive) y él mismo
+            boolean between = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!between) {
+                System.arraycopy(slots, base, slots, hole * STRIDE, STRIDE);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        Arrays.fill(slots, hole * STRIDE, hole * STRIDE + STRIDE, 0L);
+        size--;
+    }
+
+    /** Duplica la tabla y reubica los flujos abiertos. */
+    private void grow() {
+        long[] old = slots;
+        allocate((mask + 1) * 2);
+        for (int base = 0; base < old.length; base += STRIDE) {
+            if ((old[base + META] & USED) == 0) continue;
+            int slot = find(old[base + A_HI], old[base + A_LO], old[base + B_HI], old[base + B_LO], old[base + PORTS]);
+            System.arraycopy(old, base, slots, slot * STRIDE, STRIDE);
+            size++;
+        }
+    }
+
+    /** En el límite de flujos, cierra como inactivos los que llevan más tiempo sin tráfico (la mitad más antigua del intervalo). */
+    private void evictOldest(Sink sink, long now) throws IOException {
+        long oldest = Long.MAX_VALUE;
+        for (int base = 0; base < slots.length; base += STRIDE) {
+            if ((slots[base + META] & USED) != 0) oldest = Math.min(oldest, slots[base + LAST]);
+        }
+        expire(oldest + (now - oldest) / 2 + 1, Long.MIN_VALUE, Long.MIN_VALUE, sink);
+    }
+
+    // --- EXPIRACIÓN ---
+
+    /**
+     * Cierra los flujos sin paquetes desde {@code idleBefore} (inactivos), los terminados
+     * con FIN sin paquetes desde {@code finishedBefore} y los que empezaron antes de
+     * {@code activeBefore} (activos demasiado tiempo; su siguiente paquete abre un flujo
+     * nuevo). Los instantes son del reloj de la captura, en nanosegundos.
+     * @return Flujos cerrados.
+     */
+    public int expire(long idleBefore, long finishedBefore, long activeBefore, Sink sink) throws IOException {
+        int closed = 0;
+        int slot = 0;
+        int capacity = mask + 1;
+        // Los borrados desplazan elementos hacia la ranura actual: se vuelve a examinar
+        while (slot < capacity) {
+            int base = slot * STRIDE;
+            long meta = slots[base + META];
+            if ((meta & USED) != 0) {
+                long last = slots[base + LAST];
+                int reason = (meta & FINISHED) != 0 && last < finishedBefore ? END_FIN
+                        : last < idleBefore ? END_IDLE
+                        : slots[base + FIRST] < activeBefore ? END_ACTIVE : -1;
+                if (reason >= 0) {
+                    sink.flow(this, slot, reason);
+                    remove(slot);
+                    closed++;
+                    continue;
+                }
+            }
+            slot++;
+        }
+        return closed;
+    }
+
+    /** Entrega todos los flujos abiertos (los no terminados, por fin de captura) y vacía la tabla. */
+    public int flush(Sink sink) throws IOException {
+        int closed = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if ((slots[slot * STRIDE + META] & USED) != 0) {
+                sink.flow(this, slot, (slots[slot * STRIDE + META] & FINISHED) != 0 ? END_FIN : END_EOF);
+                closed++;
+            }
+        }
+        Arrays.fill(slots, 0L);
+        size = 0;
+        return closed;
+    }
+
+    // --- ACCESO A UN FLUJO (POR RANURA, DURANTE Sink#flow) ---
+
+    private boolean initiatorIsB(int slot) {
+        return (slots[slot * STRIDE + META] & INITIATOR_B) != 0;
+    }
+
+    /** 4 o 6. */
+    public int ipVersion(int slot) {
+        return (int) (slots[slot * STRIDE + PORTS] & 0xFF);
+    }
+
+    public int protocol(int slot) {
+        return (int) (slots[slot * STRIDE + PORTS] >>> 8) & 0xFF;
+    }
+
+    /** Puerto del iniciador. */
+    public int srcPort(int slot) {
+        long ports = slots[slot * STRIDE + PORTS];
+        return (int) (initiatorIsB(slot) ? ports >>> 16 : ports >>> 32) & 0xFFFF;
+    }
+
+    /** Puerto del respondedor. */
+    public int dstPort(int slot) {
+        long ports = slots[slot * STRIDE + PORTS];
+        return (int) (initiatorIsB(slot) ? ports >>> 32 : ports >>> 16) & 0xFFFF;
+    }
+
+    /** Mitad alta (bytes 0-7) de la dirección del iniciador, en formato IPv6. */
+    public long srcAddressHi(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? B_HI : A_HI)];
+    }
+
+    /** Mitad baja (bytes 8-15) de la dirección del iniciador; en IPv4 sus 32 bits bajos son la dirección. */
+    public long srcAddressLo(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? B_LO : A_LO)];
+    }
+
+    public long dstAddressHi(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? A_HI : B_HI)];
+    }
+
+    public long dstAddressLo(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? A_LO : B_LO)];
+    }
+
+    public long firstNanos(int slot) {
+        return slots[slot * STRIDE + FIRST];
+    }
+
+    public long lastNanos(int slot) {
+        return slots[slot * STRIDE + LAST];
+    }
+
+    /** Paquetes del iniciador al respondedor. */
+    public long packetsFwd(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? PACKETS_BA : PACKETS_AB)];
+    }
+
+    public long packetsBwd(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? PACKETS_AB : PACKETS_BA)];
+    }
+
+    /** Bytes (longitud original en el cable) del iniciador al respondedor. */
+    public long bytesFwd(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? BYTES_BA : BYTES_AB)];
+    }
+
+    public long bytesBwd(int slot) {
+        return slots[slot * STRIDE + (initiatorIsB(slot) ? BYTES_AB : BYTES_BA)];
+    }
+
+    /** OR de los flags TCP enviados por el iniciador. */
+    public int tcpFlagsFwd(int slot) {
+        return (int) (slots[slot * STRIDE + META] >>> (initiatorIsB(slot) ? 16 : 8)) & 0xFF;
+    }
+
+    public int tcpFlagsBwd(int slot) {
+        return (int) (slots[slot * STRIDE + META] >>> (initiatorIsB(slot) ? 8 : 16)) & 0xFF;
+    }
+
+    /** Nombre del motivo de cierre para el CSV. */
+    public static String endName(int reason) {
+        return END_NAMES[reason];
+    }
+}
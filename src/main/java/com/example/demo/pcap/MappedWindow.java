@@ -0,0 +1,86 @@
+package com.example.demo.pcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ventana mapeada en memoria sobre un archivo de cualquier tamaño.
+ * * Un MappedByteBuffer se limita a 2 GB; el archivo se recorre con ventanas de
+ * {@code windowSize} bytes que se vuelven a mapear cuando un registro no cabe en la
+ * actual. Solo se crea un buffer nuevo al cambiar de ventana, nunca por registro.
+ */
+final class MappedWindow implements Closeable {
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+
+    /** Posición en el archivo del byte 0 de la ventana */
+    private long base;
+
+    /** Ventana en el orden de bytes del archivo (cabeceras de registro) */
+    private ByteBuffer file;
+
+    /** La misma ventana en orden de red (cabeceras de los protocolos) */
+    private ByteBuffer network;
+
+    MappedWindow(Path path, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = Math.max(windowSize, 64 * 1024);
+        map(0, 0);
+    }
+
+    /** Tamaño total del archivo. */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Garantiza que [position, position + length) está dentro de la ventana.
+     * @return false si el rango excede el final del archivo.
+     */
+    boolean ensure(long position, long length) throws IOException {
+        if (position < 0 || length < 0 || position + length > size) return false;
+        if (position >= base && position + length <= base + file.limit()) return true;
+        map(position, length);
+        return true;
+    }
+
+    /** Desplazamiento dentro de la ventana de una posición del archivo (ya asegurada). */
+    int offset(long position) {
+        return (int) (position - base);
+    }
+
+    ByteBuffer file() {
+        return file;
+    }
+
+    ByteBuffer network() {
+        return network;
+    }
+
+    /** Cambia el orden de bytes de las cabeceras de registro (p. ej. nueva sección pcapng). */
+    void order(ByteOrder order) {
+        file.order(order);
+    }
+
+    private void map(long position, long minLength) throws IOException {
+        if (minLength > Integer.MAX_VALUE) throw new IOException("Registro demasiado grande: " + minLength + " bytes");
+        long length = Math.min(Math.max(windowSize, minLength), size - position);
+        ByteOrder order = file == null ? ByteOrder.BIG_ENDIAN : file.order();
+        base = position;
+        file = channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(order);
+        network = file.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
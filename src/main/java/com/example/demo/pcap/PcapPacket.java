@@ -0,0 +1,334 @@
+package com.example.demo.pcap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Paquete actual de un {@link PcapReader} (flyweight).
+ * * No copia bytes: apunta a la ventana mapeada del archivo y el lector lo reutiliza en
+ * cada {@link PcapReader#next()}, así que sus valores solo son válidos hasta la
+ * siguiente llamada. Las cabeceras Ethernet (con VLAN), Linux SLL/SLL2, IP crudo y
+ * loopback, IPv4, IPv6 (con cabeceras de extensión), TCP y UDP se decodifican al
+ * avanzar; los campos de una capa ausente o truncada valen 0 / -1.
+ * * Solo {@link #srcAddress()} y {@link #dstAddress()} crean objetos.
+ */
+public final class PcapPacket {
+
+    /** Tipos de enlace (LINKTYPE_*) reconocidos */
+    public static final int LINKTYPE_NULL = 0;
+    public static final int LINKTYPE_ETHERNET = 1;
+    public static final int LINKTYPE_RAW = 101;
+    public static final int LINKTYPE_LINUX_SLL = 113;
+    public static final int LINKTYPE_IPV4 = 228;
+    public static final int LINKTYPE_IPV6 = 229;
+    public static final int LINKTYPE_LINUX_SLL2 = 276;
+
+    /** Protocolos de transporte (número de protocolo IP) */
+    public static final int PROTO_TCP = 6;
+    public static final int PROTO_UDP = 17;
+
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+
+    // --- REGISTRO ---
+
+    private ByteBuffer buffer;
+    private int start;
+    private int capturedLength;
+    private int originalLength;
+    private long timestampNanos;
+    private int linkType;
+    private int interfaceId;
+
+    // --- CABECERAS DECODIFICADAS ---
+
+    private int ipVersion;
+    private int ipOffset;
+    private int protocol;
+    private int transportOffset;
+    private int srcPort;
+    private int dstPort;
+    private int tcpFlags;
+    private int payloadOffset;
+
+    PcapPacket() {
+    }
+
+    /** Apunta el flyweight a un registro y decodifica sus cabeceras. */
+    void reset(ByteBuffer buffer, int start, int capturedLength, int originalLength,
+               long timestampNanos, int linkType, int interfaceId) {
+        this.buffer = buffer;
+        this.start = start;
+        this.capturedLength = capturedLength;
+        this.originalLength = originalLength;
+        this.timestampNanos = timestampNanos;
+        this.linkType = linkType;
+        this.interfaceId = interfaceId;
+        decode();
+    }
+
+    // --- DECODIFICACIÓN ---
+
+    private void decode() {
+        ipVersion = 0;
+        ipOffset = -1;
+        protocol = -1;
+        transportOffset = -1;
+        srcPort = -1;
+        dstPort = -1;
+        tcpFlags = -1;
+        payloadOffset = -1;
+
+        int l3 = networkOffset();
+        if (l3 < 0 || l3 >= capturedLength) return;
+
+        int version = (u8(l3) >> 4);
+        if (version == 4) decodeIpv4(l3);
+        else if (version == 6) decodeIpv6(l3);
+    }
+
+    /** Desplazamiento de la cabecera IP según el tipo de enlace, o -1 si no es IP. */
+    private int networkOffset() {
+        switch (linkType) {
+            case LINKTYPE_ETHERNET: {
+                int offset = 12;
+                if (capturedLength < offset + 2) return -1;
+                int type = u16(offset);
+                while ((type == ETHERTYPE_VLAN || type == ETHERTYPE_QINQ) && capturedLength >= offset + 6) {
+                    offset += 4;
+                    type = u16(offset);
+                }
+                return isIp(type) ? offset + 2 : -1;
+            }
+            case LINKTYPE_LINUX_SLL:
+                return capturedLength >= 16 && isIp(u16(14)) ? 16 : -1;
+            case LINKTYPE_LINUX_SLL2:
+                return capturedLength >= 20 && isIp(u16(0)) ? 20 : -1;
+            case LINKTYPE_NULL: {
+                if (capturedLength < 4) return -1;
+                // Familia de direcciones en el orden del host que capturó
+                int family = buffer.get(start) != 0 ? u8(0) : u8(3);
+                return family == 2 || family == 24 || family == 28 || family == 30 ? 4 : -1;
+            }
+            case LINKTYPE_RAW:
+            case LINKTYPE_IPV4:
+            case LINKTYPE_IPV6:
+                return 0;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean isIp(int ethertype) {
+        return ethertype == ETHERTYPE_IPV4 || ethertype == ETHERTYPE_IPV6;
+    }
+
+    private void decodeIpv4(int l3) {
+        if (capturedLength < l3 + 20) return;
+        int headerLength = (u8(l3) & 0x0F) * 4;
+        if (headerLength < 20) return;
+        ipVersion = 4;
+        ipOffset = l3;
+        protocol = u8(l3 + 9);
+        // Solo el primer fragmento lleva la cabecera de transporte
+        if ((u16(l3 + 6) & 0x1FFF) != 0) return;
+        decodeTransport(l3 + headerLength);
+    }
+
+    private void decodeIpv6(int l3) {
+        if (capturedLength < l3 + 40) return;
+        ipVersion = 6;
+        ipOffset = l3;
+        int next = u8(l3 + 6);
+        int offset = l3 + 40;
+
+        // Cabeceras de extensión hasta llegar al transporte
+        while (true) {
+            if (next == 0 || next == 43 || next == 60) {
+                if (capturedLength < offset + 2) break;
+                int length = (u8(offset + 1) + 1) * 8;
+                next = u8(offset);
+                offset += length;
+            } else if (next == 44) {
+                if (capturedLength < offset + 8) break;
+                boolean laterFragment = (u16(offset + 2) & 0xFFF8) != 0;
+                next = u8(offset);
+                offset += 8;
+                if (laterFragment) {
+                    protocol = next;
+                    return;
+                }
+            } else if (next == 51) {
+                if (capturedLength < offset + 2) break;
+                int length = (u8(offset + 1) + 2) * 4;
+                next = u8(offset);
+                offset += length;
+            } else {
+                break;
+            }
+        }
+        protocol = next;
+        decodeTransport(offset);
+    }
+
+    private void decodeTransport(int offset) {
+        if (protocol == PROTO_TCP) {
+            if (capturedLength < offset + 20) return;
+            transportOffset = offset;
+            srcPort = u16(offset);
+            dstPort = u16(offset + 2);
+            tcpFlags = u8(offset + 13);
+            int headerLength = (u8(offset + 12) >> 4) * 4;
+            payloadOffset = Math.min(offset + Math.max(headerLength, 20), capturedLength);
+        } else if (protocol == PROTO_UDP) {
+            if (capturedLength < offset + 8) return;
+            transportOffset = offset;
+            srcPort = u16(offset);
+            dstPort = u16(offset + 2);
+            payloadOffset = offset + 8;
+        }
+    }
+
+    private int u8(int offset) {
+        return buffer.get(start + offset) & 0xFF;
+    }
+
+    private int u16(int offset) {
+        return buffer.getShort(start + offset) & 0xFFFF;
+    }
+
+    // --- ACCESO ---
+
+    /** Instante de captura en nanosegundos desde la época Unix (0 si el formato no lo registra). */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    /** Bytes guardados en el archivo para este paquete. */
+    public int capturedLength() {
+        return capturedLength;
+    }
+
+    /** Longitud del paquete en el cable (puede ser mayor que la capturada). */
+    public int originalLength() {
+        return originalLength;
+    }
+
+    /** Tipo de enlace (LINKTYPE_*) de la interfaz. */
+    public int linkType() {
+        return linkType;
+    }
+
+    /** Interfaz pcapng del paquete (0 en pcap clásico). */
+    public int interfaceId() {
+        return interfaceId;
+    }
+
+    /** 4, 6 o 0 si el paquete no es IP o su cabecera está truncada. */
+    public int ipVersion() {
+        return ipVersion;
+    }
+
+    /** Protocolo de transporte (PROTO_TCP, PROTO_UDP, ...) o -1. */
+    public int protocol() {
+        return protocol;
+    }
+
+    /** Puerto de origen TCP/UDP, o -1. */
+    public int srcPort() {
+        return srcPort;
+    }
+
+    /** Puerto de destino TCP/UDP, o -1. */
+    public int dstPort() {
+        return dstPort;
+    }
+
+    /** Flags TCP (FIN = 0x01, SYN = 0x02, RST = 0x04, PSH = 0x08, ACK = 0x10), o -1. */
+    public int tcpFlags() {
+        return tcpFlags;
+    }
+
+    /** Longitud total declarada en la cabecera IP (IPv6: carga útil + 40), o -1. */
+    public int ipLength() {
+        if (ipVersion == 4) return u16(ipOffset + 2);
+        if (ipVersion == 6) return u16(ipOffset + 4) + 40;
+        return -1;
+    }
+
+    /** Bytes de carga útil del transporte presentes en la captura, o -1. */
+    public int payloadLength() {
+        return payloadOffset < 0 ? -1 : capturedLength - payloadOffset;
+    }
+
+    /** Dirección IPv4 de origen como entero sin signo en un int, o 0 si no es IPv4. */
+    public int srcIpv4() {
+        return ipVersion == 4 ? buffer.getInt(start + ipOffset + 12) : 0;
+    }
+
+    /** Dirección IPv4 de destino como entero sin signo en un int, o 0 si no es IPv4. */
+    public int dstIpv4() {
+        return ipVersion == 4 ? buffer.getInt(start + ipOffset + 16) : 0;
+    }
+
+    /**
+     * Copia la dirección de origen (4 o 16 bytes) en {@code target}.
+     * @return Bytes copiados (0 si no es IP).
+     */
+    public int copySrcAddress(byte[] target) {
+        return copyAddress(ipVersion == 4 ? 12 : 8, target);
+    }
+
+    /**
+     * Copia la dirección de destino (4 o 16 bytes) en {@code target}.
+     * @return Bytes copiados (0 si no es IP).
+     */
+    public int copyDstAddress(byte[] target) {
+        return copyAddress(ipVersion == 4 ? 16 : 24, target);
+    }
+
+    private int copyAddress(int offset, byte[] target) {
+        if (ipVersion == 0) return 0;
+        int length = ipVersion == 4 ? 4 : 16;
+        buffer.get(start + ipOffset + offset, target, 0, length);
+        return length;
+    }
+
+    /** Dirección de origen en texto (crea un String), o null si no es IP. */
+    public String srcAddress() {
+        return formatAddress(true);
+    }
+
+    /** Dirección de destino en texto (crea un String), o null si no es IP. */
+    public String dstAddress() {
+        return formatAddress(false);
+    }
+
+    private String formatAddress(boolean source) {
+        if (ipVersion == 0) return null;
+        byte[] address = new byte[ipVersion == 4 ? 4 : 16];
+        if (source) copySrcAddress(address);
+        else copyDstAddress(address);
+        if (ipVersion == 4) {
+            return (address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." + (address[2] & 0xFF) + "." + (address[3] & 0xFF);
+        }
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 16; i += 2) {
+            if (i > 0) sb.append(':');
+            sb.append(Integer.toHexString(((address[i] & 0xFF) << 8) | (address[i + 1] & 0xFF)));
+        }
+        return sb.toString();
+    }
+
+    /** Byte {@code index} del paquete capturado (0 = primer byte de la capa de enlace). */
+    public byte byteAt(int index) {
+        if (index < 0 || index >= capturedLength) throw new IndexOutOfBoundsException(index);
+        return buffer.get(start + index);
+    }
+
+    /** Vista de solo lectura de los bytes capturados (crea un ByteBuffer; no copia). */
+    public ByteBuffer data() {
+        return buffer.slice(start, capturedLength).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.demo.pcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Lector secuencial de capturas libpcap (.pcap) y pcapng en Java puro.
+ * * El archivo se mapea en memoria por ventanas ({@link MappedWindow}), por lo que admite
+ * capturas de más de 2 GB, y cada paquete se expone a través de un único
+ * {@link PcapPacket} reutilizado: iterar no crea objetos por paquete.
+ * * pcap clásico: magia 0xA1B2C3D4 (microsegundos) o 0xA1B23C4D (nanosegundos) en
+ * cualquier orden de bytes. pcapng: bloques SHB, IDB (con if_tsresol / if_tsoffset),
+ * EPB, SPB y PB; el resto de bloques se ignora.
+ * * Un registro cortado al final del archivo (captura aún en curso) termina la lectura
+ * sin error; {@link #truncated()} lo indica.
+ *
+ * <pre>
+ * try (PcapReader reader = PcapReader.open(path)) {
+ *     while (reader.next()) {
+ *         PcapPacket p = reader.packet();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class PcapReader implements Closeable {
+
+    /** Tamaño por defecto de la ventana mapeada */
+    public static final long DEFAULT_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private static final int PCAP_MAGIC_MICROS = 0xA1B2C3D4;
+    private static final int PCAP_MAGIC_NANOS = 0xA1B23C4D;
+    private static final int PCAPNG_SHB = 0x0A0D0D0A;
+    private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+
+    private static final int BLOCK_IDB = 1;
+    private static final int BLOCK_PB = 2;
+    private static final int BLOCK_SPB = 3;
+    private static final int BLOCK_EPB = 6;
+
+    private static final int OPTION_END = 0;
+    private static final int OPTION_TSRESOL = 9;
+    private static final int OPTION_TSOFFSET = 14;
+
+    /** Límite de seguridad para un registro o bloque (evita mapear basura) */
+    private static final long MAX_RECORD_BYTES = 256L * 1024 * 1024;
+
+    private final MappedWindow window;
+    private final PcapPacket packet = new PcapPacket();
+    private final boolean pcapng;
+
+    /** Posición en el archivo del siguiente registro o bloque */
+    private long position;
+    private long packetsRead;
+    private boolean truncated;
+
+    // --- PCAP CLÁSICO ---
+
+    private int linkType;
+    private int snapLength;
+    private boolean nanos;
+
+    // --- PCAPNG: INTERFACES DE LA SECCIÓN ACTUAL ---
+
+    private int interfaces;
+    private int[] ifLinkType = new int[4];
+    private int[] ifSnapLength = new int[4];
+    private long[] ifUnitsPerSecond = new long[4];
+    private long[] ifOffsetSeconds = new long[4];
+
+    private PcapReader(MappedWindow window) throws IOException {
+        this.window = window;
+        if (!window.ensure(0, 4)) throw new IOException("Archivo demasiado corto para ser una captura");
+
+        int magic = window.file().order(ByteOrder.BIG_ENDIAN).getInt(0);
+        if (magic == PCAPNG_SHB) {
+            pcapng = true;
+            position = 0;
+        } else {
+            pcapng = false;
+            readGlobalHeader(magic);
+        }
+    }
+
+    /** Abre una captura con la ventana por defecto. */
+    public static PcapReader open(Path path) throws IOException {
+        return open(path, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * Abre una captura.
+     * @param windowBytes Tamaño de la ventana mapeada (mínimo 64 KB, máximo 2 GB).
+     * @throws IOException si el archivo no es pcap ni pcapng.
+     */
+    public static PcapReader open(Path path, long windowBytes) throws IOException {
+        MappedWindow window = new MappedWindow(path, Math.min(windowBytes, Integer.MAX_VALUE));
+        try {
+            return new PcapReader(window);
+        } catch (IOException | RuntimeException e) {
+            window.close();
+            throw e;
+        }
+    }
+
+    private void readGlobalHeader(int magic) throws IOException {
+        ByteBuffer file = window.file();
+        if (magic == PCAP_MAGIC_MICROS || magic == PCAP_MAGIC_NANOS) {
+            window.order(ByteOrder.BIG_ENDIAN);
+        } else if (Integer.reverseBytes(magic) == PCAP_MAGIC_MICROS || Integer.reverseBytes(magic) == PCAP_MAGIC_NANOS) {
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            magic = Integer.reverseBytes(magic);
+        } else {
+            throw new IOException(String.format("Formato de captura desconocido (magia 0x%08X)", magic));
+        }
+        if (!window.ensure(0, 24)) throw new IOException("Cabecera pcap incompleta");
+        file = window.file();
+        nanos = magic == PCAP_MAGIC_NANOS;
+        snapLength = file.getInt(16);
+        linkType = file.getInt(20) & 0x0FFFFFFF;
+        position = 24;
+    }
+
+    // --- ITERACIÓN ---
+
+    /**
+     * Avanza al siguiente paquete.
+     * @return false al llegar al final del archivo (o a un registro incompleto).
+     * @throws IOException si el archivo está corrupto.
+     */
+    public boolean next() throws IOException {
+        boolean found = pcapng ? nextBlock() : nextRecord();
+        if (found) packetsRead++;
+        return found;
+    }
+
+    /** Paquete actual; se reutiliza en cada {@link #next()}. */
+    public PcapPacket packet() {
+        return packet;
+    }
+
+    /** Paquetes leídos hasta ahora. */
+    public long packetsRead() {
+        return packetsRead;
+    }
+
+    /** Indica si la lectura terminó en un registro incompleto. */
+    public boolean truncated() {
+        return truncated;
+    }
+
+    /** Indica si el archivo es pcapng. */
+    public boolean isPcapng() {
+        return pcapng;
+    }
+
+    /** Tipo de enlace del archivo (pcap clásico) o de la primera interfaz (pcapng). */
+    public int linkType() {
+        return pcapng ? (interfaces > 0 ? ifLinkType[0] : -1) : linkType;
+    }
+
+    private boolean nextRecord() throws IOException {
+        if (!available(16)) return false;
+        ByteBuffer file = window.file();
+        int at = window.offset(position);
+        long seconds = file.getInt(at) & 0xFFFFFFFFL;
+        long fraction = file.getInt(at + 4) & 0xFFFFFFFFL;
+        int captured = file.getInt(at + 8);
+        int original = file.getInt(at + 12);
+        if (captured < 0 || captured > MAX_RECORD_BYTES || (snapLength > 0 && captured > Math.max(snapLength, 262144))) {
+            throw new IOException("Registro pcap corrupto en la posición " + position + " (longitud " + captured + ")");
+        }
+        if (!available(16L + captured)) return false;
+
+        long timestamp = seconds * 1_000_000_000L + (nanos ? fraction : fraction * 1000);
+        packet.reset(window.network(), window.offset(position) + 16, captured, original, timestamp, linkType, 0);
+        position += 16L + captured;
+        return true;
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (true) {
+            if (position == window.size()) return false;
+            if (!window.ensure(position, 12)) {
+                truncated = true;
+                return false;
+            }
+            // La magia del SHB es simétrica: se reconoce antes de conocer el orden de la sección
+            int type = window.file().getInt(window.offset(position));
+            if (type == PCAPNG_SHB) {
+                readSectionHeader();
+                continue;
+            }
+
+            long length = window.file().getInt(window.offset(position) + 4) & 0xFFFFFFFFL;
+            if (length < 12 || length % 4 != 0 || length > MAX_RECORD_BYTES) {
+                throw new IOException("Bloque pcapng corrupto en la posición " + position + " (longitud " + length + ")");
+            }
+            if (!available(length)) return false;
+
+            long block = position;
+            position += length;
+            switch (type) {
+                case BLOCK_IDB -> readInterface(block, length);
+                case BLOCK_EPB -> {
+                    if (readEnhancedPacket(block, length)) return true;
+                }
+                case BLOCK_SPB -> {
+                    if (readSimplePacket(block, length)) return true;
+                }
+                case BLOCK_PB -> {
+                    if (readObsoletePacket(block, length)) return true;
+                }
+                default -> {
+                    // Bloques sin paquetes (NRB, ISB, DSB, ...)
+                }
+            }
+        }
+    }
+
+    private void readSectionHeader() throws IOException {
+        if (!window.ensure(position, 28)) {
+            truncated = true;
+            position = window.size();
+            return;
+        }
+        ByteBuffer file = window.file();
+        int at = window.offset(position);
+        int byteOrderMagic = file.order(ByteOrder.BIG_ENDIAN).getInt(at + 8);
+        if (byteOrderMagic == PCAPNG_BYTE_ORDER_MAGIC) {
+            window.order(ByteOrder.BIG_ENDIAN);
+        } else if (Integer.reverseBytes(byteOrderMagic) == PCAPNG_BYTE_ORDER_MAGIC) {
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        } else {
+            throw new IOException("Cabecera de sección pcapng no válida en la posición " + position);
+        }
+        long length = window.file().getInt(at + 4) & 0xFFFFFFFFL;
+        if (length < 28 || length % 4 != 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Cabecera de sección pcapng corrupta en la posición " + position);
+        }
+        if (!window.ensure(position, length)) {
+            truncated = true;
+            position = window.size();
+            return;
+        }
+        // Cada sección declara de nuevo sus interfaces
+        interfaces = 0;
+        position += length;
+    }
+
+    private void readInterface(long block, long length) {
+        ByteBuffer file = window.file();
+        int at = window.offset(block);
+        if (interfaces == ifLinkType.length) {
+            int capacity = interfaces * 2;
+            ifLinkType = Arrays.copyOf(ifLinkType, capacity);
+            ifSnapLength = Arrays.copyOf(ifSnapLength, capacity);
+            ifUnitsPerSecond = Arrays.copyOf(ifUnitsPerSecond, capacity);
+            ifOffsetSeconds = Arrays.copyOf(ifOffsetSeconds, capacity);
+        }
+        int id = interfaces++;
+        ifLinkType[id] = file.getShort(at + 8) & 0xFFFF;
+        ifSnapLength[id] = file.getInt(at + 12);
+        ifUnitsPerSecond[id] = 1_000_000L;
+        ifOffsetSeconds[id] = 0;
+
+        // Opciones: código (2), longitud (2), valor con relleno a 4 bytes
+        int option = at + 16;
+        int end = at + (int) length - 4;
+        while (option + 4 <= end) {
+            int code = file.getShort(option) & 0xFFFF;
+            int optionLength = file.getShort(option + 2) & 0xFFFF;
+            if (code == OPTION_END || option + 4 + optionLength > end) break;
+            if (code == OPTION_TSRESOL && optionLength >= 1) {
+                int resolution = file.get(option + 4) & 0xFF;
+                ifUnitsPerSecond[id] = unitsPerSecond(resolution);
+            } else if (code == OPTION_TSOFFSET && optionLength >= 8) {
+                ifOffsetSeconds[id] = file.getLong(option + 4);
+            }
+            option += 4 + ((optionLength + 3) & ~3);
+        }
+    }
+
+    /** if_tsresol: bit alto 0 = potencia de 10, 1 = potencia de 2. 0 si no es representable. */
+    private static long unitsPerSecond(int resolution) {
+        int exponent = resolution & 0x7F;
+        if ((resolution & 0x80) != 0) return exponent < 63 ? 1L << exponent : 0;
+        if (exponent > 18) return 0;
+        long units = 1;
+        for (int i = 0; i < exponent; i++) units *= 10;
+        return units;
+    }
+
+    private boolean readEnhancedPacket(long block, long length) throws IOException {
+        if (length < 32) throw new IOException("Bloque EPB corrupto en la posición " + block);
+        ByteBuffer file = window.file();
+        int at = window.offset(block);
+        int id = file.getInt(at + 8);
+        long units = ((file.getInt(at + 12) & 0xFFFFFFFFL) << 32) | (file.getInt(at + 16) & 0xFFFFFFFFL);
+        int captured = file.getInt(at + 20);
+        int original = file.getInt(at + 24);
+        checkInterface(id, block);
+        if (captured < 0 || 28L + captured + 4 > length) {
+            throw new IOException("Bloque EPB corrupto en la posición " + block + " (longitud capturada " + captured + ")");
+        }
+        packet.reset(window.network(), at + 28, captured, original, timestampNanos(id, units), ifLinkType[id], id);
+        return true;
+    }
+
+    private boolean readSimplePacket(long block, long length) throws IOException {
+        if (length < 16) throw new IOException("Bloque SPB corrupto en la posición " + block);
+        checkInterface(0, block);
+        int at = window.offset(block);
+        int original = window.file().getInt(at + 8);
+        // La longitud capturada se deduce del tamaño del bloque y del snaplen de la interfaz
+        int captured = (int) Math.min(original & 0xFFFFFFFFL, length - 16);
+        if (ifSnapLength[0] > 0) captured = Math.min(captured, ifSnapLength[0]);
+        packet.reset(window.network(), at + 12, captured, original, 0, ifLinkType[0], 0);
+        return true;
+    }
+
+    private boolean readObsoletePacket(long block, long length) throws IOException {
+        if (length < 32) throw new IOException("Bloque PB corrupto en la posición " + block);
+        ByteBuffer file = window.file();
+        int at = window.offset(block);
+        int id = file.getShort(at + 8) & 0xFFFF;
+        long units = ((file.getInt(at + 12) & 0xFFFFFFFFL) << 32) | (file.getInt(at + 16) & 0xFFFFFFFFL);
+        int captured = file.getInt(at + 20);
+        int original = file.getInt(at + 24);
+        checkInterface(id, block);
+        if (captured < 0 || 28L + captured + 4 > length) {
+            throw new IOException("Bloque PB corrupto en la posición " + block + " (longitud capturada " + captured + ")");
+        }
+        packet.reset(window.network(), at + 28, captured, original, timestampNanos(id, units), ifLinkType[id], id);
+        return true;
+    }
+
+    private void checkInterface(int id, long block) throws IOException {
+        if (id < 0 || id >= interfaces) {
+            throw new IOException("Paquete de una interfaz no declarada (" + id + ") en la posición " + block);
+        }
+    }
+
+    private long timestampNanos(int id, long units) {
+        long perSecond = ifUnitsPerSecond[id];
+        if (perSecond <= 0) return 0;
+        long seconds = units / perSecond;
+        long remainder = units % perSecond;
+        long fraction = perSecond == 1_000_000_000L ? remainder
+                : perSecond < 1_000_000_000L && 1_000_000_000L % perSecond == 0 ? remainder * (1_000_000_000L / perSecond)
+                : (long) (remainder * (1e9 / perSecond));
+        return (seconds + ifOffsetSeconds[id]) * 1_000_000_000L + fraction;
+    }
+
+    /** Asegura {@code length} bytes desde la posición actual; marca truncado si el archivo se corta. */
+    private boolean available(long length) throws IOException {
+        if (position == window.size()) return false;
+        if (window.ensure(position, length)) return true;
+        truncated = true;
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window.close();
+    }
+}
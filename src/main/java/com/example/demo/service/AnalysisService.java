@@ -23,6 +23,13 @@ public class AnalysisService {
 
     private final RestTemplate restTemplate = new RestTemplate();
 
+    /** Restaura los CSV comprimidos antes de pedir su análisis */
+    private final TrafficCompactionService compaction;
+
+    public AnalysisService(TrafficCompactionService compaction) {
+        this.compaction = compaction;
+    }
+
     // --- ANÁLISIS (SCORING) ---
 
     public void runAnalysis(String filename, String range) throws Exception {
@@ -31,6 +38,11 @@ public class AnalysisService {
             filename += ".csv";
         }
 
+        // El scorer lee el CSV por su nombre: si se comprimió, se restaura primero
+        if (!filename.contains("..") && !filename.contains("/") && !filename.contains("\\")) {
+            compaction.inflate(filename);
+        }
+
         Map<String, String> body = new HashMap<>();
         body.put("csv_file", filename);
         body.put("range", range != null ? range : "global");
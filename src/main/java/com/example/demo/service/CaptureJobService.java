@@ -0,0 +1,451 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.CaptureJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio CaptureJobService
+ * * Ejecuta las capturas de tráfico en segundo plano. La petición HTTP solo encola la
+ * captura y devuelve su identificador; el script corre en un pool propio, de modo que
+ * una captura de 30 minutos no retiene un hilo de Tomcat ni expira en el proxy:
+ * - Como máximo {@code capture.jobs.max-concurrent} capturas se ejecutan a la vez; el
+ *   resto espera en una cola acotada y, si se llena, la petición se rechaza.
+ * - La salida del script se drena siempre y se guarda en un buffer circular acotado
+ *   ({@code capture.jobs.stream-buffer-lines}) del que leen los suscriptores de
+ *   {@link CaptureStreamService} y la cola de salida del estado.
+ * - Mientras la captura corre se mide periódicamente el tamaño de los PCAP que escribe.
+ * - Las capturas se pueden cancelar; si ya se están ejecutando se termina el script y
+ *   sus descendientes.
+ * * Se conserva un historial acotado de capturas terminadas para consultar su resultado.
+ */
+@Service
+public class CaptureJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptureJobService.class);
+
+    /** Longitud máxima de una línea guardada en la cola de salida */
+    private static final int MAX_LINE_CHARS = 1000;
+
+    /** Espera tras SIGTERM antes de forzar la terminación del script cancelado */
+    private static final long KILL_GRACE_SECONDS = 5;
+
+    /** Script de captura (recibe la duración en segundos como argumento) */
+    private final String scriptPath;
+
+    /** Directorios donde el script deja los PCAP */
+    private final TrafficLayout layout;
+
+    /** Milisegundos entre mediciones del tamaño capturado */
+    @Value("${capture.jobs.progress-interval-ms:1000}")
+    private long progressIntervalMs = 1000;
+
+    private final int logTailLines;
+    private final int bufferLines;
+    private final int historySize;
+    private final ThreadPoolExecutor executor;
+
+    /** Todas las capturas conocidas, en orden de solicitud (guardado por this) */
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+
+    /** Capturas en cola o en ejecución (guardado por this) */
+    private final Set<Job> active = new HashSet<>();
+
+    private ScheduledExecutorService sampler;
+
+    /** Se incrementa con cada línea o cambio de estado; despierta a {@link #awaitOutput} */
+    private final Object outputSignal = new Object();
+    private long outputVersion;
+
+    /**
+     * Fragmento de la salida de una captura.
+     * @param from Secuencia de la primera línea (mayor que la pedida si esas ya salieron del buffer).
+     * @param lines Líneas a partir de 'from'.
+     * @param job Estado de la captura al leer el fragmento.
+     */
+    public record OutputChunk(long from, List<String> lines, CaptureJob job) {}
+
+    /** Estado mutable de una captura; se modifica y se copia bajo su propio monitor. */
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final int duration;
+        final Instant submittedAt = Instant.now();
+        final String[] buffer;
+        long lines;
+        long bytesCaptured;
+        String state = CaptureJob.QUEUED;
+        Instant startedAt;
+        Instant finishedAt;
+        Integer exitCode;
+        String error;
+        boolean cancelRequested;
+        Process process;
+        Future<?> future;
+
+        Job(int duration, int bufferLines) {
+            this.duration = duration;
+            this.buffer = new String[bufferLines];
+        }
+    }
+
+    public CaptureJobService(TrafficLayout layout,
+                             @Value("${script.path}") String scriptPath,
+                             @Value("${capture.jobs.max-concurrent:1}") int maxConcurrent,
+                             @Value("${capture.jobs.queue-capacity:10}") int queueCapacity,
+                             @Value("${capture.jobs.log-tail-lines:50}") int logTailLines,
+                             @Value("${capture.jobs.history:100}") int historySize,
+                             @Value("${capture.jobs.stream-buffer-lines:1000}") int bufferLines) {
+        this.layout = layout;
+        this.scriptPath = scriptPath;
+        this.logTailLines = Math.max(logTailLines, 1);
+        this.bufferLines = Math.max(bufferLines, this.logTailLines);
+        this.historySize = Math.max(historySize, 0);
+
+        int workers = Math.max(maxConcurrent, 1);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueCapacity, 1)),
+                r -> {
+                    Thread t = new Thread(r, "capture-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PostConstruct
+    public void start() {
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "capture-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(progressIntervalMs, 100);
+        sampler.scheduleWithFixedDelay(this::sampleRunning, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sampler != null) sampler.shutdownNow();
+        executor.shutdownNow();
+        synchronized (this) {
+            for (Job job : active) {
+                synchronized (job) {
+                    job.cancelRequested = true;
+                    if (job.process != null) terminate(job.process);
+                }
+            }
+        }
+    }
+
+    // --- OPERACIONES ---
+
+    /**
+     * Encola una captura.
+     * @param duration Duración en segundos.
+     * @return La captura encolada.
+     * @throws IllegalStateException Si el script de captura no existe.
+     * @throws RejectedExecutionException Si la cola de capturas está llena.
+     */
+    public synchronized CaptureJob submit(int duration) {
+        if (!Files.exists(Path.of(scriptPath))) {
+            throw new IllegalStateException("Script no encontrado en la ruta: " + scriptPath);
+        }
+
+        Job job = new Job(duration, bufferLines);
+        synchronized (job) {
+            // Se asigna antes de que el worker pueda terminar la captura y leer 'future'
+            job.future = executor.submit(() -> run(job));
+        }
+        jobs.put(job.id, job);
+        active.add(job);
+        trimHistory();
+        return snapshot(job);
+    }
+
+    /** Estado de una captura, o vacío si no existe o ya salió del historial. */
+    public synchronized Optional<CaptureJob> get(String id) {
+        Job job = jobs.get(id);
+        return job == null ? Optional.empty() : Optional.of(snapshot(job));
+    }
+
+    /** Indica si hay alguna captura en cola o en ejecución. */
+    public synchronized boolean hasActive() {
+        return !active.isEmpty();
+    }
+
+    /**
+     * Capturas conocidas, de la más reciente a la más antigua.
+     * @param state Filtra por fase (null para todas).
+     */
+    public synchronized List<CaptureJob> list(String state) {
+        List<CaptureJob> result = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            CaptureJob copy = snapshot(job);
+            if (state == null || state.equalsIgnoreCase(copy.getState())) result.add(copy);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Cancela una captura. Si está en cola se retira de ella; si se está ejecutando se
+     * envía SIGTERM al script y sus descendientes y, pasado un margen, SIGKILL.
+     * @return Estado de la captura tras la cancelación, o vacío si no existe.
+     */
+    public Optional<CaptureJob> cancel(String id) {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(id);
+        }
+        if (job == null) return Optional.empty();
+
+        boolean dequeued = false;
+        synchronized (job) {
+            if (CaptureJob.QUEUED.equals(job.state) || CaptureJob.RUNNING.equals(job.state)) {
+                job.cancelRequested = true;
+                if (job.process != null) {
+                    terminate(job.process);
+                } else if (CaptureJob.QUEUED.equals(job.state)) {
+                    // Si un worker ya la tomó, run() verá la cancelación y la cerrará
+                    dequeued = executor.remove((Runnable) job.future);
+                }
+            }
+        }
+        // Una captura retirada de la cola no llega a run(): se cierra aquí
+        if (dequeued) finish(job, CaptureJob.CANCELLED, null, null);
+
+        return Optional.of(snapshot(job));
+    }
+
+    /**
+     * Líneas de salida de una captura a partir de una secuencia (0 = primera línea).
+     * @param from Secuencia de la primera línea pedida.
+     * @param max Número máximo de líneas.
+     * @return El fragmento, o vacío si la captura no existe o ya salió del historial.
+     */
+    public Optional<OutputChunk> output(String id, long from, int max) {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(id);
+        }
+        if (job == null) return Optional.empty();
+
+        synchronized (job) {
+            long start = Math.max(from, Math.max(job.lines - job.buffer.length, 0));
+            long end = Math.min(job.lines, start + max);
+            List<String> lines = new ArrayList<>((int) Math.max(end - start, 0));
+            for (long seq = start; seq < end; seq++) lines.add(job.buffer[(int) (seq % job.buffer.length)]);
+            return Optional.of(new OutputChunk(start, lines, snapshot(job)));
+        }
+    }
+
+    /**
+     * Espera hasta que alguna captura emita salida o cambie de estado.
+     * @param seen Versión devuelta por la llamada anterior (0 la primera vez).
+     * @param timeoutMs Espera máxima.
+     * @return Versión actual, para la siguiente llamada.
+     */
+    public long awaitOutput(long seen, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (outputSignal) {
+            long remaining = timeoutMs;
+            while (outputVersion == seen && remaining > 0) {
+                outputSignal.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return outputVersion;
+        }
+    }
+
+    private void signal() {
+        synchronized (outputSignal) {
+            outputVersion++;
+            outputSignal.notifyAll();
+        }
+    }
+
+    // --- EJECUCIÓN ---
+
+    private void run(Job job) {
+        boolean cancelled;
+        synchronized (job) {
+            cancelled = job.cancelRequested;
+            if (!cancelled) {
+                job.state = CaptureJob.RUNNING;
+                job.startedAt = Instant.now();
+            }
+        }
+        signal();
+        if (cancelled) {
+            finish(job, CaptureJob.CANCELLED, null, null);
+            return;
+        }
+
+        Process process;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(scriptPath, String.valueOf(job.duration));
+            // Redirige el error a la salida estándar para capturarlo en un solo flujo
+            pb.redirectErrorStream(true);
+            process = pb.start();
+        } catch (IOException e) {
+            finish(job, CaptureJob.FAILED, null, "Error ejecutando script: " + e.getMessage());
+            return;
+        }
+
+        synchronized (job) {
+            job.process = process;
+            // Cancelación recibida mientras el proceso arrancaba
+            if (job.cancelRequested) terminate(process);
+        }
+
+        try {
+            try (BufferedReader reader = process.inputReader()) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    append(job, line);
+                }
+            }
+            int exitCode = process.waitFor();
+
+            String state;
+            synchronized (job) {
+                state = job.cancelRequested ? CaptureJob.CANCELLED
+                        : exitCode == 0 ? CaptureJob.SUCCEEDED : CaptureJob.FAILED;
+            }
+            finish(job, state, exitCode, null);
+        } catch (IOException e) {
+            terminate(process);
+            finish(job, CaptureJob.FAILED, null, "Error leyendo la salida del script: " + e.getMessage());
+        } catch (InterruptedException e) {
+            // Apagado de la aplicación
+            terminate(process);
+            finish(job, CaptureJob.CANCELLED, null, null);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(Job job, String line) {
+        if (line.length() > MAX_LINE_CHARS) line = line.substring(0, MAX_LINE_CHARS) + "…";
+        synchronized (job) {
+            job.buffer[(int) (job.lines % job.buffer.length)] = line;
+            job.lines++;
+        }
+        signal();
+    }
+
+    private void finish(Job job, String state, Integer exitCode, String error) {
+        sample(job);
+        synchronized (job) {
+            job.state = state;
+            job.exitCode = exitCode;
+            job.error = error;
+            job.finishedAt = Instant.now();
+            job.process = null;
+        }
+        synchronized (this) {
+            active.remove(job);
+            trimHistory();
+        }
+        signal();
+        log.info("Captura {} de {} s terminada: {} (exit={})", job.id, job.duration, state, exitCode);
+    }
+
+    // --- MEDICIÓN DEL TAMAÑO CAPTURADO ---
+
+    private void sampleRunning() {
+        List<Job> running;
+        synchronized (this) {
+            running = new ArrayList<>(active);
+        }
+        boolean changed = false;
+        for (Job job : running) changed |= sample(job);
+        if (changed) signal();
+    }
+
+    /**
+     * Mide los bytes de los PCAP modificados desde el inicio de la captura, en la raíz y
+     * en la partición del día. Con varias capturas simultáneas la medición es compartida.
+     * @return true si el tamaño cambió.
+     */
+    private boolean sample(Job job) {
+        Instant startedAt;
+        synchronized (job) {
+            startedAt = job.startedAt;
+        }
+        if (startedAt == null) return false;
+
+        long total = 0;
+        Set<Path> dirs = new LinkedHashSet<>(List.of(layout.root(),
+                layout.partitionOf("traffic_" + LocalDate.now())));
+        for (Path dir : dirs) {
+            if (!Files.isDirectory(dir)) continue;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.pcap")) {
+                for (Path pcap : stream) {
+                    BasicFileAttributes attrs = Files.readAttributes(pcap, BasicFileAttributes.class);
+                    if (attrs.lastModifiedTime().toInstant().isAfter(startedAt.minusSeconds(1))) total += attrs.size();
+                }
+            } catch (IOException e) {
+                // archivo eliminado o movido durante el recorrido: se mide en la siguiente vuelta
+            }
+        }
+        synchronized (job) {
+            // El tamaño no retrocede si el PCAP se mueve o comprime al terminar
+            if (total <= job.bytesCaptured) return false;
+            job.bytesCaptured = total;
+            return true;
+        }
+    }
+
+    /** Termina el script y sus descendientes: SIGTERM y, pasado el margen, SIGKILL. */
+    private static void terminate(Process process) {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+        process.onExit()
+                .orTimeout(KILL_GRACE_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(t -> {
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                    return process;
+                });
+    }
+
+    /** Descarta las capturas terminadas más antiguas que exceden el historial. */
+    private void trimHistory() {
+        int excess = jobs.size() - active.size() - historySize;
+        for (Iterator<Job> it = jobs.values().iterator(); excess > 0 && it.hasNext(); ) {
+            Job job = it.next();
+            if (!active.contains(job)) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    private CaptureJob snapshot(Job job) {
+        synchronized (job) {
+            int tail = (int) Math.min(job.lines, logTailLines);
+            List<String> logTail = new ArrayList<>(tail);
+            for (long seq = job.lines - tail; seq < job.lines; seq++) {
+                logTail.add(job.buffer[(int) (seq % job.buffer.length)]);
+            }
+            return new CaptureJob(job.id, job.duration, job.state, job.submittedAt, job.startedAt,
+                    job.finishedAt, job.exitCode, logTail, job.lines, job.bytesCaptured, job.error);
+        }
+    }
+}
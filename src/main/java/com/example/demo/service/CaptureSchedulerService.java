@@ -0,0 +1,458 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.CaptureSchedule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Servicio CaptureSchedulerService
+ * * Capturas recurrentes dentro de la aplicación, en lugar de un cron externo que llama a
+ * /api/capture sin saber si la captura anterior terminó. Cada programación se define con
+ * una expresión cron o un intervalo fijo y lanza sus capturas por el mismo camino que
+ * {@code CaptureController} ({@link CaptureJobService#submit(int)}).
+ * * Si al disparar hay otra captura activa (compiten por la interfaz y el disco):
+ * - SKIP: la ejecución se omite.
+ * - QUEUE: la ejecución espera en una cola propia del planificador, una como máximo por
+ *   programación, y se lanza cuando ya no queda ninguna captura activa. No se encola en
+ *   {@link CaptureJobService}: con {@code capture.jobs.max-concurrent} > 1 empezaría de
+ *   inmediato, solapada con la activa.
+ * * Cada disparo se retrasa un jitter aleatorio para que varias programaciones no
+ * coincidan en el mismo segundo. Las definiciones se guardan en
+ * {@code capture.schedule.file} y se restauran al arrancar.
+ */
+@Service
+public class CaptureSchedulerService {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptureSchedulerService.class);
+
+    private final CaptureJobService captures;
+
+    /** Archivo JSON con las definiciones */
+    private final Path file;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /** Programaciones por identificador (guardado por this) */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /** Ejecuciones QUEUE que esperan a que termine la captura activa, en orden de disparo (guardado por this) */
+    private final Deque<Entry> lane = new ArrayDeque<>();
+
+    /** Resultado de lanzar una captura (jobId null si no se lanzó). */
+    private record Launch(String outcome, String jobId) {}
+
+    /** Definición tal como se persiste (sin métricas). */
+    private record Definition(String id, String cron, Long intervalSeconds, Integer duration,
+                              String overlap, long jitterSeconds, Boolean enabled) {}
+
+    /** Programación y su próximo disparo. */
+    private static final class Entry {
+        final CaptureSchedule schedule;
+        ScheduledFuture<?> future;
+        /** Instante planificado sin jitter (base del siguiente intervalo) */
+        Instant planned;
+        /** Instante planificado con jitter */
+        Instant fireAt;
+        /** Cambia al redefinirla: un disparo en curso de la definición anterior no replanifica */
+        int generation;
+        /** Tiene una ejecución en la cola de espera */
+        boolean waiting;
+
+        Entry(CaptureSchedule schedule) {
+            this.schedule = schedule;
+        }
+    }
+
+    public CaptureSchedulerService(CaptureJobService captures,
+                                   @Value("${capture.schedule.file:/var/openvpn/capture-schedules.json}") String file) {
+        this.captures = captures;
+        this.file = Paths.get(file);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "capture-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                drainLane();
+            } catch (RuntimeException e) {
+                log.warn("Error lanzando una captura programada en espera: {}", e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        if (!Files.exists(file)) return;
+        try {
+            List<Definition> definitions = mapper.readValue(file.toFile(), new TypeReference<List<Definition>>() {});
+            synchronized (this) {
+                for (Definition d : definitions) {
+                    CaptureSchedule schedule = fromDefinition(d);
+                    try {
+                        validate(schedule);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Programación de captura {} ignorada: {}", d.id(), e.getMessage());
+                        continue;
+                    }
+                    Entry entry = new Entry(schedule);
+                    entries.put(schedule.getId(), entry);
+                    plan(entry);
+                }
+            }
+            log.info("Programaciones de captura cargadas: {}", entries.size());
+        } catch (JacksonException e) {
+            log.warn("No se pudieron cargar las programaciones de {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    // --- OPERACIONES ---
+
+    /** Programaciones con sus métricas, en orden de creación. */
+    public synchronized List<CaptureSchedule> list() {
+        List<CaptureSchedule> result = new ArrayList<>();
+        for (Entry entry : entries.values()) result.add(snapshot(entry));
+        return result;
+    }
+
+    /** Programación y sus métricas, o vacío si no existe. */
+    public synchronized Optional<CaptureSchedule> get(String id) {
+        Entry entry = entries.get(id);
+        return entry == null ? Optional.empty() : Optional.of(snapshot(entry));
+    }
+
+    /**
+     * Crea una programación y planifica su primer disparo.
+     * @throws IllegalArgumentException Si la definición no es válida.
+     */
+    public synchronized CaptureSchedule create(CaptureSchedule definition) throws IOException {
+        CaptureSchedule schedule = copyDefinition(definition);
+        schedule.setId(UUID.randomUUID().toString());
+        validate(schedule);
+
+        Entry entry = new Entry(schedule);
+        entries.put(schedule.getId(), entry);
+        try {
+            save();
+        } catch (IOException e) {
+            entries.remove(schedule.getId());
+            throw e;
+        }
+        plan(entry);
+        return snapshot(entry);
+    }
+
+    /**
+     * Reemplaza la definición de una programación (conserva sus métricas) y la replanifica.
+     * @return La programación actualizada, o vacío si no existe.
+     * @throws IllegalArgumentException Si la definición no es válida.
+     */
+    public synchronized Optional<CaptureSchedule> update(String id, CaptureSchedule definition) throws IOException {
+        Entry entry = entries.get(id);
+        if (entry == null) return Optional.empty();
+
+        CaptureSchedule updated = copyDefinition(definition);
+        updated.setId(id);
+        validate(updated);
+
+        CaptureSchedule previous = copyDefinition(entry.schedule);
+        applyDefinition(entry.schedule, updated);
+        try {
+            save();
+        } catch (IOException e) {
+            applyDefinition(entry.schedule, previous);
+            throw e;
+        }
+        cancelFuture(entry);
+        leaveLane(entry);
+        entry.generation++;
+        entry.planned = null;
+        plan(entry);
+        return Optional.of(snapshot(entry));
+    }
+
+    /** Elimina una programación. @return false si no existía. */
+    public synchronized boolean delete(String id) throws IOException {
+        Entry entry = entries.remove(id);
+        if (entry == null) return false;
+        cancelFuture(entry);
+        leaveLane(entry);
+        save();
+        return true;
+    }
+
+    // --- PLANIFICACIÓN ---
+
+    /** Planifica el siguiente disparo de la programación (llamar con el monitor tomado). */
+    private void plan(Entry entry) {
+        CaptureSchedule schedule = entry.schedule;
+        if (!Boolean.TRUE.equals(schedule.getEnabled())) {
+            entry.planned = null;
+            entry.fireAt = null;
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant next;
+        if (schedule.getCron() != null) {
+            ZonedDateTime from = ZonedDateTime.ofInstant(entry.planned != null && entry.planned.isAfter(now) ? entry.planned : now, zone);
+            ZonedDateTime at = CronExpression.parse(schedule.getCron()).next(from);
+            if (at == null) {
+                entry.planned = null;
+                entry.fireAt = null;
+                return; // la expresión no vuelve a coincidir
+            }
+            next = at.toInstant();
+        } else {
+            Duration interval = Duration.ofSeconds(schedule.getIntervalSeconds());
+            if (entry.planned == null) {
+                next = now.plus(interval);
+            } else {
+                // Intervalo fijo desde el instante planificado; los disparos perdidos no se recuperan
+                next = entry.planned.plus(interval);
+                while (!next.isAfter(now)) next = next.plus(interval);
+            }
+        }
+
+        long jitterMs = schedule.getJitterSeconds() > 0
+                ? ThreadLocalRandom.current().nextLong(schedule.getJitterSeconds() * 1000 + 1) : 0;
+        entry.planned = next;
+        entry.fireAt = next.plusMillis(jitterMs);
+        long delay = Math.max(Duration.between(now, entry.fireAt).toMillis(), 0);
+        int generation = entry.generation;
+        entry.future = scheduler.schedule(() -> fire(entry, generation), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Disparo: aplica la política de solapamiento, lanza la captura o la deja en espera y
+     * planifica el siguiente. El siguiente disparo se planifica pase lo que pase: un error
+     * en uno no debe cortar la cadena de la programación.
+     */
+    private void fire(Entry entry, int generation) {
+        CaptureSchedule schedule;
+        Instant fireAt;
+        synchronized (this) {
+            // Eliminada o redefinida después de planificar este disparo
+            if (entries.get(entry.schedule.getId()) != entry || entry.generation != generation) return;
+            schedule = entry.schedule;
+            fireAt = entry.fireAt;
+        }
+
+        try {
+            Instant now = Instant.now();
+            long lag = Math.max(Duration.between(fireAt, now).toMillis(), 0);
+
+            Launch launch;
+            synchronized (this) {
+                // Las ejecuciones en espera van primero aunque la captura activa ya haya terminado
+                boolean overlapping = captures.hasActive() || !lane.isEmpty();
+                if (!overlapping) {
+                    launch = launch(schedule);
+                } else if (CaptureSchedule.SKIP.equals(schedule.getOverlap()) || entry.waiting) {
+                    launch = new Launch(CaptureSchedule.SKIPPED, null);
+                } else {
+                    entry.waiting = true;
+                    lane.add(entry);
+                    launch = new Launch(CaptureSchedule.WAITING, null);
+                }
+
+                schedule.setLastRunAt(now);
+                schedule.setLastLagMs(lag);
+                schedule.setMaxLagMs(Math.max(schedule.getMaxLagMs(), lag));
+                schedule.setTotalLagMs(schedule.getTotalLagMs() + lag);
+                record(schedule, launch);
+            }
+            log.info("Programación {}: {} (lag {} ms)", schedule.getId(), launch.outcome(), lag);
+        } catch (RuntimeException e) {
+            log.warn("Programación {}: error en el disparo: {}", schedule.getId(), e.getMessage());
+        } finally {
+            synchronized (this) {
+                if (entries.get(schedule.getId()) == entry && entry.generation == generation) plan(entry);
+            }
+        }
+    }
+
+    /**
+     * Lanza la primera ejecución en espera cuando ya no queda ninguna captura activa.
+     * Solo una por vez: la captura lanzada vuelve a ocupar el carril.
+     */
+    private synchronized void drainLane() {
+        if (lane.isEmpty() || captures.hasActive()) return;
+
+        Entry entry = lane.poll();
+        entry.waiting = false;
+        Launch launch = launch(entry.schedule);
+        record(entry.schedule, launch);
+        log.info("Programación {}: {} tras esperar la captura activa", entry.schedule.getId(), launch.outcome());
+    }
+
+    /** Lanza la captura de una programación (llamar con el monitor tomado). */
+    private Launch launch(CaptureSchedule schedule) {
+        try {
+            return new Launch(CaptureSchedule.STARTED, captures.submit(schedule.getDuration()).getId());
+        } catch (RejectedExecutionException e) {
+            return new Launch(CaptureSchedule.REJECTED, null);
+        } catch (RuntimeException e) {
+            log.warn("Programación {}: no se pudo lanzar la captura: {}", schedule.getId(), e.getMessage());
+            return new Launch(CaptureSchedule.FAILED, null);
+        }
+    }
+
+    /** Registra el resultado de un disparo o de una ejecución en espera (llamar con el monitor tomado). */
+    private static void record(CaptureSchedule schedule, Launch launch) {
+        schedule.setLastOutcome(launch.outcome());
+        if (launch.jobId() != null) {
+            schedule.setLastJobId(launch.jobId());
+            schedule.setRuns(schedule.getRuns() + 1);
+        } else if (!CaptureSchedule.WAITING.equals(launch.outcome())) {
+            schedule.setSkipped(schedule.getSkipped() + 1);
+        }
+    }
+
+    /** Retira la ejecución en espera de una programación eliminada o redefinida. */
+    private void leaveLane(Entry entry) {
+        lane.remove(entry);
+        entry.waiting = false;
+    }
+
+    private static void cancelFuture(Entry entry) {
+        if (entry.future != null) entry.future.cancel(false);
+        entry.future = null;
+    }
+
+    // --- VALIDACIÓN Y PERSISTENCIA ---
+
+    private static void validate(CaptureSchedule schedule) {
+        boolean hasCron = schedule.getCron() != null && !schedule.getCron().isBlank();
+        boolean hasInterval = schedule.getIntervalSeconds() != null;
+        if (hasCron == hasInterval) {
+            throw new IllegalArgumentException("Se requiere 'cron' o 'intervalSeconds' (solo uno)");
+        }
+        if (hasCron) {
+            try {
+                CronExpression.parse(schedule.getCron());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Expresión cron inválida: " + e.getMessage());
+            }
+        } else if (schedule.getIntervalSeconds() < 1) {
+            throw new IllegalArgumentException("'intervalSeconds' debe ser mayor que cero");
+        }
+        if (schedule.getDuration() == null || schedule.getDuration() <= 0) {
+            throw new IllegalArgumentException("'duration' debe ser mayor que cero");
+        }
+        if (schedule.getJitterSeconds() < 0) {
+            throw new IllegalArgumentException("'jitterSeconds' no puede ser negativo");
+        }
+        if (!CaptureSchedule.SKIP.equals(schedule.getOverlap()) && !CaptureSchedule.QUEUE.equals(schedule.getOverlap())) {
+            throw new IllegalArgumentException("'overlap' debe ser SKIP o QUEUE");
+        }
+    }
+
+    /** Copia solo la definición, con valores por defecto (SKIP, habilitada). */
+    private static CaptureSchedule copyDefinition(CaptureSchedule source) {
+        CaptureSchedule copy = new CaptureSchedule();
+        copy.setId(source.getId());
+        copy.setCron(source.getCron() == null || source.getCron().isBlank() ? null : source.getCron().trim());
+        copy.setIntervalSeconds(source.getIntervalSeconds());
+        copy.setDuration(source.getDuration());
+        copy.setOverlap(source.getOverlap() == null ? CaptureSchedule.SKIP : source.getOverlap().toUpperCase(Locale.ROOT));
+        copy.setJitterSeconds(source.getJitterSeconds());
+        copy.setEnabled(source.getEnabled() == null || source.getEnabled());
+        return copy;
+    }
+
+    private static void applyDefinition(CaptureSchedule target, CaptureSchedule definition) {
+        target.setCron(definition.getCron());
+        target.setIntervalSeconds(definition.getIntervalSeconds());
+        target.setDuration(definition.getDuration());
+        target.setOverlap(definition.getOverlap());
+        target.setJitterSeconds(definition.getJitterSeconds());
+        target.setEnabled(definition.getEnabled());
+    }
+
+    private static CaptureSchedule fromDefinition(Definition d) {
+        CaptureSchedule schedule = new CaptureSchedule();
+        schedule.setCron(d.cron());
+        schedule.setIntervalSeconds(d.intervalSeconds());
+        schedule.setDuration(d.duration());
+        schedule.setOverlap(d.overlap());
+        schedule.setJitterSeconds(d.jitterSeconds());
+        schedule.setEnabled(d.enabled());
+        CaptureSchedule copy = copyDefinition(schedule);
+        copy.setId(d.id());
+        return copy;
+    }
+
+    /** Escribe las definiciones en un temporal y lo renombra, para no dejar el archivo a medias. */
+    private void save() throws IOException {
+        List<Definition> definitions = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            CaptureSchedule s = entry.schedule;
+            definitions.add(new Definition(s.getId(), s.getCron(), s.getIntervalSeconds(), s.getDuration(),
+                    s.getOverlap(), s.getJitterSeconds(), s.getEnabled()));
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "capture-schedules-", ".part");
+        try {
+            mapper.writeValue(temp.toFile(), definitions);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (JacksonException e) {
+            throw new IOException("No se pudieron guardar las programaciones: " + e.getMessage(), e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Copia de la programación con el próximo disparo y la espera en cola de la última captura. */
+    private CaptureSchedule snapshot(Entry entry) {
+        CaptureSchedule s = entry.schedule;
+        CaptureSchedule copy = copyDefinition(s);
+        copy.setNextRunAt(entry.fireAt);
+        copy.setLastRunAt(s.getLastRunAt());
+        copy.setLastJobId(s.getLastJobId());
+        copy.setLastOutcome(s.getLastOutcome());
+        copy.setRuns(s.getRuns());
+        copy.setSkipped(s.getSkipped());
+        copy.setLastLagMs(s.getLastLagMs());
+        copy.setMaxLagMs(s.getMaxLagMs());
+        copy.setTotalLagMs(s.getTotalLagMs());
+        if (s.getLastJobId() != null && s.getLastRunAt() != null) {
+            captures.get(s.getLastJobId())
+                    .filter(job -> job.getStartedAt() != null)
+                    .ifPresent(job -> copy.setLastStartDelayMs(
+                            Math.max(Duration.between(job.getSubmittedAt(), job.getStartedAt()).toMillis(), 0)));
+        }
+        return copy;
+    }
+}
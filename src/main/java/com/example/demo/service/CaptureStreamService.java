@@ -0,0 +1,263 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.CaptureJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio CaptureStreamService
+ * * Progreso de las capturas en vivo mediante Server-Sent Events. Todos los paneles que
+ * observan una captura leen del mismo buffer circular de {@link CaptureJobService}
+ * (un único lector drena la salida del script); cada suscriptor solo guarda su
+ * posición, así que la memoria no crece con el número de suscriptores ni con la
+ * duración de la captura.
+ * * Un hilo de despacho detecta las novedades y encarga el envío de cada suscriptor a
+ * un conjunto acotado de hilos, con un solo envío en curso por suscriptor: un cliente
+ * lento no retrasa a los demás, se le omite mientras su envío anterior siga pendiente
+ * (al reanudar recibe todo lo acumulado, o "dropped") y se le desconecta si un envío
+ * tarda más de {@code capture.stream.send-timeout-ms}. A cada suscriptor se le envía:
+ * - "output": líneas nuevas de la salida del script (una por línea de datos; el id del
+ *   evento es la secuencia de la última línea, para reanudar con Last-Event-ID).
+ * - "dropped": líneas que el suscriptor perdió por ir más lento que el buffer.
+ * - "progress": fase, líneas, bytes capturados y segundos transcurridos, cada
+ *   {@code capture.jobs.progress-interval-ms} y en cada cambio de fase.
+ * - "end": estado final de la captura; después se cierra el stream.
+ */
+@Service
+public class CaptureStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(CaptureStreamService.class);
+
+    /** Líneas máximas por evento "output" */
+    private static final int BATCH_LINES = 200;
+
+    private final CaptureJobService captures;
+
+    /** Suscriptores simultáneos permitidos entre todas las capturas */
+    @Value("${capture.stream.max-subscribers:50}")
+    private int maxSubscribers = 50;
+
+    /** Milisegundos entre eventos "progress" */
+    @Value("${capture.jobs.progress-interval-ms:1000}")
+    private long progressIntervalMs = 1000;
+
+    /** Milisegundos que puede tardar un envío antes de dar por perdido al suscriptor */
+    @Value("${capture.stream.send-timeout-ms:10000}")
+    private long sendTimeoutMs = 10000;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private Thread dispatcher;
+
+    /** Hilos de envío: uno por suscriptor como máximo, creados bajo demanda */
+    private ThreadPoolExecutor senders;
+    private volatile boolean running;
+
+    /**
+     * Suscriptor de una captura. Como mucho un hilo de envío escribe en su emitter a la
+     * vez; {@code pendingSince} (0 si no hay envío en curso) publica su posición al siguiente.
+     */
+    private static final class Subscriber {
+        final String jobId;
+        final SseEmitter emitter;
+        long next;
+        String lastState;
+        volatile boolean closed;
+        final AtomicLong pendingSince = new AtomicLong();
+
+        Subscriber(String jobId, SseEmitter emitter, long next) {
+            this.jobId = jobId;
+            this.emitter = emitter;
+            this.next = next;
+        }
+    }
+
+    public CaptureStreamService(CaptureJobService captures) {
+        this.captures = captures;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(maxSubscribers, 1);
+        senders = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "capture-sse-send-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        senders.allowCoreThreadTimeOut(true);
+
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "capture-sse");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) dispatcher.interrupt();
+        if (senders != null) senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) close(subscriber);
+    }
+
+    // --- SUSCRIPCIÓN ---
+
+    /**
+     * Abre un stream de progreso de una captura.
+     * @param id Captura a observar.
+     * @param lastEventId Última secuencia recibida en una conexión anterior (null para
+     *                    empezar por la línea más antigua que conserve el buffer).
+     * @return El emitter, o vacío si la captura no existe.
+     * @throws IllegalStateException Si se alcanzó el máximo de suscriptores.
+     */
+    public Optional<SseEmitter> subscribe(String id, Long lastEventId) {
+        Optional<CaptureJob> job = captures.get(id);
+        if (job.isEmpty()) return Optional.empty();
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Demasiados suscriptores de capturas");
+        }
+
+        // Sin límite de tiempo: el stream termina con la captura o al desconectarse el cliente
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(id, emitter, lastEventId == null ? 0 : lastEventId + 1);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+
+        // Estado inicial antes de registrar al suscriptor: el hilo de despacho aún no escribe en él
+        try {
+            sendProgress(subscriber, job.get());
+        } catch (IOException e) {
+            close(subscriber);
+            return Optional.of(emitter);
+        }
+        subscribers.add(subscriber);
+        return Optional.of(emitter);
+    }
+
+    // --- DESPACHO ---
+
+    private void dispatchLoop() {
+        long version = 0;
+        long nextTick = System.currentTimeMillis() + progressIntervalMs;
+        while (running) {
+            try {
+                version = captures.awaitOutput(version, Math.max(progressIntervalMs, 100));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            boolean tick = now >= nextTick;
+            if (tick) nextTick = now + progressIntervalMs;
+
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.closed) continue;
+                long pending = subscriber.pendingSince.get();
+                if (pending != 0) {
+                    if (now - pending > sendTimeoutMs) abandon(subscriber);
+                    continue; // su envío anterior sigue en curso
+                }
+                subscriber.pendingSince.set(now);
+                try {
+                    senders.execute(() -> send(subscriber, tick));
+                } catch (RejectedExecutionException e) {
+                    return; // deteniéndose
+                }
+            }
+        }
+    }
+
+    /** Hilo de envío: un turno de despacho de un suscriptor. */
+    private void send(Subscriber subscriber, boolean tick) {
+        try {
+            if (!subscriber.closed) dispatch(subscriber, tick);
+        } catch (IOException | RuntimeException e) {
+            // Cliente desconectado
+            close(subscriber);
+        } finally {
+            subscriber.pendingSince.set(0);
+        }
+    }
+
+    /** Envía al suscriptor las líneas pendientes y, si corresponde, el progreso o el fin. */
+    private void dispatch(Subscriber subscriber, boolean tick) throws IOException {
+        CaptureJobService.OutputChunk chunk;
+        do {
+            Optional<CaptureJobService.OutputChunk> read = captures.output(subscriber.jobId, subscriber.next, BATCH_LINES);
+            if (read.isEmpty()) {
+                close(subscriber); // la captura salió del historial
+                return;
+            }
+            chunk = read.get();
+
+            if (chunk.from() > subscriber.next) {
+                subscriber.emitter.send(SseEmitter.event().name("dropped")
+                        .data(Map.of("lines", chunk.from() - subscriber.next)));
+            }
+            if (!chunk.lines().isEmpty()) {
+                long last = chunk.from() + chunk.lines().size() - 1;
+                subscriber.emitter.send(SseEmitter.event().id(String.valueOf(last)).name("output")
+                        .data(String.join("\n", chunk.lines())));
+            }
+            subscriber.next = chunk.from() + chunk.lines().size();
+        } while (chunk.lines().size() == BATCH_LINES);
+
+        CaptureJob job = chunk.job();
+        if (tick || !job.getState().equals(subscriber.lastState)) sendProgress(subscriber, job);
+
+        if (!job.isActive() && subscriber.next >= job.getLines()) {
+            subscriber.emitter.send(SseEmitter.event().name("end").data(job));
+            subscriber.closed = true;
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static void sendProgress(Subscriber subscriber, CaptureJob job) throws IOException {
+        subscriber.lastState = job.getState();
+        subscriber.emitter.send(SseEmitter.event().name("progress").data(Map.of(
+                "state", job.getState(),
+                "lines", job.getLines(),
+                "bytesCaptured", job.getBytesCaptured(),
+                "elapsedSeconds", job.getElapsedSeconds())));
+    }
+
+    /**
+     * Da por perdido a un suscriptor cuyo envío no termina. Solo se le retira: completar
+     * el emitter esperaría al envío bloqueado, que terminará con error cuando el conector
+     * agote su propio plazo de escritura.
+     */
+    private void abandon(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        log.debug("Suscriptor de la captura {} desconectado: envío sin terminar tras {} ms",
+                subscriber.jobId, sendTimeoutMs);
+    }
+
+    private void close(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            log.debug("Stream de captura ya cerrado: {}", e.getMessage());
+        }
+    }
+}
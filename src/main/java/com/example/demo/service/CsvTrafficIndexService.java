@@ -1,95 +1,530 @@
 package com.example.demo.service;
 
+import com.example.demo.domain.TrafficCapture;
 import com.example.demo.domain.TrafficDayStats;
+import com.example.demo.domain.TrafficIndexStatus;
+import com.example.demo.domain.TrafficRangeSummary;
+import com.example.demo.domain.TrafficSeries;
+import com.example.demo.domain.TrafficSeriesPoint;
+import com.example.demo.domain.TrafficVolumeDistribution;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 /**
  * Servicio CsvTrafficIndexService
- * * Administra un índice en memoria de las estadísticas de tráfico diarias.
+ * * Administra un índice en memoria de las estadísticas de tráfico, guardado en formato
+ * columnar ({@link TrafficColumnStore}) con rollups por hora, día, semana ISO y mes.
  * Escanea el sistema de archivos al iniciar la aplicación, analiza los nombres de los
  * archivos CSV mediante expresiones regulares y consolida los datos para permitir
  * consultas rápidas de series temporales y rankings.
+ * * Después del arranque el índice se mantiene al día aplicando deltas (archivos
+ * creados o eliminados) notificados por {@link TrafficDirectoryWatcher}.
+ * * Para acelerar el arranque, los registros ya parseados se guardan en un checkpoint
+ * binario ({@link TrafficIndexCheckpoint}); al iniciar solo se analizan los archivos
+ * que no figuran en él.
+ * * Concurrencia: las consultas nunca bloquean. Leen la versión vigente del índice
+ * ({@link TrafficIndexSnapshot}) desde una referencia atómica y trabajan sobre esa
+ * vista inmutable; los escritores (serializados por el monitor del servicio) acumulan
+ * un lote completo de cambios y publican una versión nueva de una sola vez.
+ * * Arranque: la construcción inicial corre en un hilo de fondo para no retrasar el
+ * contexto de Spring (ni los endpoints de control de la VPN). El parseo se reparte en
+ * bloques entre los núcleos disponibles y cada bloque se publica al terminar, por lo
+ * que las gráficas muestran resultados parciales mientras {@link #status()} reporta
+ * el progreso.
  */
 @Service
-public class CsvTrafficIndexService {
+public class CsvTrafficIndexService implements TrafficDirectoryListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvTrafficIndexService.class);
 
     // --- ESTRUCTURAS DE DATOS ---
 
-    /** * Índice principal organizado por fecha.
-     * Se usa TreeMap para garantizar que las claves (fechas) estén siempre ordenadas cronológicamente.
+    /** * Acumuladores mutables de métricas, uno por {@link TrafficResolution}.
+     * Cada captura se suma a todas las resoluciones a la vez (rollups incrementales).
+     * Solo se modifican bajo el monitor del servicio (lado escritor).
+     */
+    private TrafficColumnStore.Builder[] builders = newBuilders();
+
+    /** Acumulador del detalle por captura (lado escritor) */
+    private TrafficCaptureLog.Builder captureLog = new TrafficCaptureLog.Builder();
+
+    /** Acumulador de los bosquejos de volumen por día (lado escritor) */
+    private TrafficVolumeSketches.Builder volumeSketches = new TrafficVolumeSketches.Builder();
+
+    /** * Versión inmutable publicada a las consultas.
+     * Se reemplaza atómicamente tras cada lote de cambios; nunca se modifica en sitio.
      */
-    private final TreeMap<LocalDate, TrafficDayStats> index = new TreeMap<>();
+    private final AtomicReference<TrafficIndexSnapshot> current =
+            new AtomicReference<>(TrafficIndexSnapshot.EMPTY);
+
+    /** * CSV que ya contribuyen al índice, con los valores extraídos de su nombre.
+     * Evita contar dos veces un archivo y permite descontarlo sin volver a parsearlo.
+     */
+    private final Map<String, CsvEntry> indexedFiles = new HashMap<>();
+
+    /** Valores extraídos del nombre de un CSV */
+    private record CsvEntry(LocalDateTime timestamp, double input, double output) {}
+
+    /** Ubicación de los archivos dentro de traffic.dir (plano o particionado por día) */
+    private final TrafficLayout layout;
+
+    /** Ruta del checkpoint binario del índice (vacío = deshabilitado) */
+    @Value("${traffic.index.checkpoint-file:}")
+    private String checkpointFile;
+
+    /** Marca de agua del árbol ({@link TrafficLayout#fingerprint()}) leída antes del último listado completo */
+    private long listedDirMtime = -1;
 
-    @Value("${traffic.dir}")
-    private String trafficDir;
+    /** La construcción partió de un checkpoint válido y lo reconcilió con el directorio */
+    private boolean checkpointAccepted;
+
+    /** Indica si el índice cambió desde el último checkpoint escrito */
+    private boolean dirty;
+
+    /** Construir el índice en segundo plano (true) o bloqueando el arranque (false) */
+    @Value("${traffic.index.async-build:true}")
+    private boolean asyncBuild;
+
+    /** Archivos parseados por bloque; al cerrar cada bloque se publican resultados parciales */
+    @Value("${traffic.index.build-chunk-size:5000}")
+    private int buildChunkSize = 5000;
+
+    /** Tamaño mínimo de un bloque para repartir el parseo entre varios núcleos */
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    // --- ESTADO DE PREPARACIÓN (READINESS) ---
+
+    /** Arranque al que pertenecen las versiones publicadas (ver {@link TrafficIndexStatus}) */
+    private final long epoch = System.currentTimeMillis();
+
+    private volatile String state = TrafficIndexStatus.WARMING;
+    private volatile Instant startedAt = Instant.now();
+    private volatile Instant readyAt;
+    private volatile String error;
+    private final AtomicLong filesScanned = new AtomicLong();
+    private final AtomicLong filesTotal = new AtomicLong();
+
+    /** Se libera cuando termina la construcción inicial (con o sin éxito) */
+    private final CountDownLatch initialBuild = new CountDownLatch(1);
 
     /** * Patrón Regex para la extracción de metadatos del nombre del archivo.
-     * Captura: 1. Fecha, 2. Valor Input, 3. Valor Output.
-     * Ejemplo: traffic_2023-10-27_10-00-00_(...).csv
+     * Captura: 1. Fecha, 2-4. Hora, minuto y segundo, 5. Valor Input, 6. Valor Output.
+     * La duración de la captura "_(X_minutes)" que hereda del PCAP es opcional.
+     * Ejemplo: traffic_2023-10-27_10-00-00_(10.0_minutes)_(...).csv
      */
     private static final Pattern FILE_PATTERN =
             Pattern.compile(
-                    "traffic_(\\d{4}-\\d{2}-\\d{2})_\\d{2}-\\d{2}-\\d{2}_\\(([\\d.]+)_input\\)_\\(([\\d.]+)_output\\)\\.csv"
+                    "traffic_(\\d{4}-\\d{2}-\\d{2})_(\\d{2})-(\\d{2})-(\\d{2})(?:_\\([\\d.]+_minutes\\))?"
+                            + "_\\(([\\d.]+)_input\\)_\\(([\\d.]+)_output\\)\\.csv"
             );
 
     // --- PROCESO DE INICIALIZACIÓN ---
 
+    public CsvTrafficIndexService(TrafficLayout layout) {
+        this.layout = layout;
+    }
+
     /**
-     * Construye el índice de tráfico inmediatamente después de que el servicio es creado.
-     * * Escanea el directorio configurado y procesa cada archivo CSV detectado.
+     * Lanza la construcción del índice al crear el servicio.
+     * * Por defecto se ejecuta en un hilo de fondo y el método retorna de inmediato.
      */
     @PostConstruct
-    public void buildIndex() throws IOException {
-        Path dir = Paths.get(trafficDir);
-        if (!Files.exists(dir)) return;
+    public void start() {
+        if (!asyncBuild) {
+            buildQuietly();
+            return;
+        }
+        Thread builder = new Thread(this::buildQuietly, "traffic-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void buildQuietly() {
+        try {
+            buildIndex();
+        } catch (Exception e) {
+            state = TrafficIndexStatus.FAILED;
+            error = e.getMessage();
+            log.warn("Error construyendo el índice de tráfico: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Construye el índice de tráfico completo.
+     * * Si existe un checkpoint válido se carga directamente; cuando el directorio no ha
+     * cambiado desde entonces ni siquiera se lista. En caso contrario se reconcilia
+     * parseando solo los archivos nuevos. Un checkpoint de otro directorio o corrupto
+     * provoca una reconstrucción completa.
+     */
+    public synchronized void buildIndex() throws IOException {
+        state = TrafficIndexStatus.WARMING;
+        startedAt = Instant.now();
+        readyAt = null;
+        error = null;
+        filesScanned.set(0);
+        filesTotal.set(0);
+
+        try {
+            build();
+            state = TrafficIndexStatus.READY;
+            readyAt = Instant.now();
+        } finally {
+            initialBuild.countDown();
+        }
+    }
+
+    private void build() throws IOException {
+        builders = newBuilders();
+        captureLog = new TrafficCaptureLog.Builder();
+        volumeSketches = new TrafficVolumeSketches.Builder();
+        indexedFiles.clear();
+        checkpointAccepted = false;
+
+        Path dir = layout.root();
+        if (!Files.exists(dir)) {
+            publish();
+            return;
+        }
+
+        TrafficIndexCheckpoint checkpoint = loadCheckpoint(dir);
+        if (checkpoint != null) {
+            for (int i = 0; i < checkpoint.size(); i++) {
+                CsvEntry entry = new CsvEntry(
+                        LocalDateTime.ofEpochSecond(checkpoint.epochSeconds[i], 0, ZoneOffset.UTC),
+                        checkpoint.inputs[i], checkpoint.outputs[i]);
+                indexedFiles.put(checkpoint.names[i], entry);
+                accumulate(checkpoint.names[i], entry, 1);
+            }
+            listedDirMtime = checkpoint.dirMtime;
+            checkpointAccepted = true;
+            publish();
+            if (layout.fingerprint() == checkpoint.dirMtime) return;
+
+            reconcile(null, null);
+            return;
+        }
+
+        long mtime = layout.fingerprint();
+        applyChanges(listCsvNames(null, null), List.of());
+        listedDirMtime = mtime;
+        saveCheckpoint();
+    }
+
+    /**
+     * Reconcilia el índice contra el contenido actual del directorio.
+     * * Solo se analizan los archivos nuevos y se descuentan los que desaparecieron;
+     * los ya indexados no vuelven a parsearse. Se usa como respaldo cuando se pierden
+     * eventos del sistema de archivos (overflow) o en modo de sondeo (polling).
+     * * Espera a que termine la construcción inicial para no duplicar su trabajo.
+     */
+    @Override
+    public void resync() throws IOException {
+        resync(null, null);
+    }
+
+    /**
+     * Reconciliación inicial del watcher. Si la construcción partió de un checkpoint
+     * válido y el árbol no cambió desde que se validó (misma marca de agua), no hay nada
+     * que listar: se omite, que es justo lo que el checkpoint pretende evitar al arrancar.
+     */
+    @Override
+    public void initialResync() throws IOException {
+        try {
+            initialBuild.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (this) {
+            if (checkpointAccepted && layout.fingerprint() == listedDirMtime) {
+                log.info("Checkpoint del índice vigente; se omite la reconciliación inicial");
+                return;
+            }
+        }
+        resync();
+    }
+
+    /**
+     * Reconciliación acotada a los archivos fechados en [from, to] (y los que no tienen
+     * fecha). En el layout particionado solo se listan la raíz y las particiones del rango.
+     * @param from Fecha inicial (inclusive), o null sin límite.
+     * @param to Fecha final (inclusive), o null sin límite.
+     */
+    @Override
+    public void resync(LocalDate from, LocalDate to) throws IOException {
+        try {
+            initialBuild.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        reconcile(from, to);
+
+        if (TrafficIndexStatus.FAILED.equals(state)) {
+            state = TrafficIndexStatus.READY;
+            readyAt = Instant.now();
+            error = null;
+        }
+    }
+
+    private synchronized void reconcile(LocalDate from, LocalDate to) throws IOException {
+        boolean full = from == null && to == null;
+        long mtime = layout.fingerprint();
+        Set<String> present = listCsvNames(from, to);
+
+        List<String> removed = indexedFiles.keySet().stream()
+                .filter(name -> !present.contains(name) && TrafficLayout.covers(name, from, to))
+                .toList();
+
+        present.removeAll(indexedFiles.keySet());
+        applyChanges(present, removed);
+
+        // Un listado parcial no valida la marca de agua de todo el árbol
+        if (!full) return;
+        boolean changed = mtime != listedDirMtime;
+        listedDirMtime = mtime;
+        if (dirty || changed) saveCheckpoint();
+    }
+
+    /**
+     * Aplica un lote de cambios del directorio al índice.
+     * * Las operaciones son idempotentes: crear un archivo ya indexado o eliminar uno
+     * que nunca se indexó no altera los totales. Los nombres que no son CSV se ignoran.
+     *
+     * @param created Nombres de archivos CSV que aparecieron en el directorio.
+     * @param deleted Nombres de archivos CSV que ya no existen.
+     */
+    @Override
+    public synchronized void applyChanges(Collection<String> created, Collection<String> deleted) {
+        boolean changed = false;
+        for (String name : deleted) {
+            CsvEntry entry = indexedFiles.remove(name);
+            if (entry != null) {
+                accumulate(name, entry, -1);
+                changed = true;
+            }
+        }
+        changed |= ingest(created);
+
+        if (changed) {
+            dirty = true;
+            publish();
+        }
+    }
+
+    /**
+     * Parsea e incorpora archivos nuevos por bloques.
+     * * Los nombres de cada bloque se parsean en paralelo (el parseo no toca estado
+     * compartido) y luego se acumulan en orden bajo el monitor. Al cerrar cada bloque
+     * intermedio se publica una versión parcial; el último lo publica quien llama.
+     * @return true si se incorporó al menos un archivo.
+     */
+    private boolean ingest(Collection<String> names) {
+        List<String> pending = names.stream()
+                .filter(name -> name.endsWith(".csv") && !indexedFiles.containsKey(name))
+                .distinct()
+                .toList();
+        filesTotal.addAndGet(pending.size());
+
+        boolean changed = false;
+        int chunk = Math.max(buildChunkSize, 1);
+        for (int from = 0; from < pending.size(); from += chunk) {
+            List<String> slice = pending.subList(from, Math.min(from + chunk, pending.size()));
+            Stream<String> stream = slice.size() >= PARALLEL_THRESHOLD ? slice.parallelStream() : slice.stream();
+            List<CsvEntry> parsed = stream.map(CsvTrafficIndexService::parse).toList();
+
+            for (int i = 0; i < slice.size(); i++) {
+                CsvEntry entry = parsed.get(i);
+                if (entry == null) continue;
+
+                indexedFiles.put(slice.get(i), entry);
+                accumulate(slice.get(i), entry, 1);
+                changed = true;
+            }
+            filesScanned.addAndGet(slice.size());
+
+            if (changed && from + chunk < pending.size()) publish();
+        }
+        return changed;
+    }
+
+    /**
+     * Publica una nueva versión del índice a partir del estado del escritor.
+     * * Debe invocarse con el monitor del servicio tomado; las consultas en curso
+     * conservan la versión anterior hasta que terminan.
+     */
+    private void publish() {
+        TrafficColumnStore[] rollups = new TrafficColumnStore[builders.length];
+        for (int i = 0; i < builders.length; i++) rollups[i] = builders[i].build();
+
+        TrafficIndexSnapshot previous = current.get();
+        current.set(new TrafficIndexSnapshot(previous.version + 1, Instant.now(), rollups,
+                captureLog.build(), volumeSketches.build()));
+    }
+
+    private static TrafficColumnStore.Builder[] newBuilders() {
+        TrafficResolution[] resolutions = TrafficResolution.values();
+        TrafficColumnStore.Builder[] result = new TrafficColumnStore.Builder[resolutions.length];
+        for (TrafficResolution r : resolutions) result[r.ordinal()] = new TrafficColumnStore.Builder(r);
+        return result;
+    }
+
+    // --- CHECKPOINT ---
+
+    /**
+     * Carga el checkpoint si corresponde al directorio configurado.
+     * @return El checkpoint válido o null si no existe, es de otro directorio o está corrupto.
+     */
+    private TrafficIndexCheckpoint loadCheckpoint(Path dir) {
+        if (checkpointFile == null || checkpointFile.isBlank()) return null;
+
+        try {
+            TrafficIndexCheckpoint checkpoint = TrafficIndexCheckpoint.read(Paths.get(checkpointFile));
+            if (checkpoint == null) return null;
+
+            if (!checkpoint.fingerprint.equals(dir.toAbsolutePath().toString())) {
+                log.info("Checkpoint del índice pertenece a otro directorio; se reconstruye");
+                return null;
+            }
+            return checkpoint;
+        } catch (IOException e) {
+            log.warn("Checkpoint del índice inválido ({}); se reconstruye", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Escribe el estado actual del índice en el checkpoint.
+     * * Se invoca tras cada listado completo y al apagar la aplicación. La marca de agua
+     * guardada es la del último listado, de modo que los deltas aplicados después
+     * siempre obligan a reconciliar en el siguiente arranque.
+     */
+    @PreDestroy
+    public synchronized void saveCheckpoint() {
+        if (checkpointFile == null || checkpointFile.isBlank() || listedDirMtime < 0) return;
+
+        int n = indexedFiles.size();
+        String[] names = new String[n];
+        long[] seconds = new long[n];
+        double[] inputs = new double[n];
+        double[] outputs = new double[n];
+
+        int i = 0;
+        for (Map.Entry<String, CsvEntry> e : indexedFiles.entrySet()) {
+            names[i] = e.getKey();
+            seconds[i] = e.getValue().timestamp().toEpochSecond(ZoneOffset.UTC);
+            inputs[i] = e.getValue().input();
+            outputs[i] = e.getValue().output();
+            i++;
+        }
 
-        try (Stream<Path> stream = Files.list(dir)) {
-            stream
-                    .filter(p -> p.getFileName().toString().endsWith(".csv"))
-                    .forEach(this::processFile);
+        try {
+            new TrafficIndexCheckpoint(layout.root().toAbsolutePath().toString(),
+                    listedDirMtime, names, seconds, inputs, outputs).write(Paths.get(checkpointFile));
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("No se pudo escribir el checkpoint del índice en {}: {}", checkpointFile, e.getMessage());
         }
     }
 
     /**
-     * Analiza un archivo individual y acumula sus valores en el índice diario.
-     * * Si la fecha ya existe en el índice, suma el tráfico y aumenta el contador de capturas.
-     * @param path Ruta del archivo CSV a procesar.
+     * Lista los nombres de los CSV cubiertos por el rango (raíz y particiones).
+     * @return Conjunto mutable con los nombres (vacío si el directorio no existe).
      */
-    private void processFile(Path path) {
-        String name = path.getFileName().toString();
+    private Set<String> listCsvNames(LocalDate from, LocalDate to) throws IOException {
+        Set<String> names = layout.list(from, to);
+        names.removeIf(name -> !name.endsWith(".csv"));
+        return names;
+    }
+
+    /**
+     * Extrae fecha y volúmenes del nombre de un archivo CSV.
+     * @param name Nombre del archivo CSV a procesar.
+     * @return Los valores extraídos, o null si el nombre no coincide con el patrón.
+     */
+    private static CsvEntry parse(String name) {
         Matcher m = FILE_PATTERN.matcher(name);
 
-        if (!m.matches()) return;
+        if (!m.matches()) return null;
+
+        LocalDateTime timestamp = LocalDate.parse(m.group(1)).atTime(
+                Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)));
 
-        LocalDate date = LocalDate.parse(m.group(1));
-        double input = Double.parseDouble(m.group(2));
-        double output = Double.parseDouble(m.group(3));
+        return new CsvEntry(
+                timestamp,
+                Double.parseDouble(m.group(5)),
+                Double.parseDouble(m.group(6)));
+    }
+
+    /**
+     * Acumula (o descuenta) los valores de un archivo en el intervalo correspondiente
+     * de cada resolución y en el detalle por captura.
+     * @param name Nombre del archivo.
+     * @param entry Valores del archivo.
+     * @param sign 1 para sumar el archivo, -1 para restarlo.
+     */
+    private void accumulate(String name, CsvEntry entry, int sign) {
+        for (TrafficColumnStore.Builder b : builders) {
+            b.add(b.resolution().slotOf(entry.timestamp()), entry.input() * sign, entry.output() * sign, sign);
+        }
 
-        // Operación atómica para actualizar o crear el registro diario
-        index.compute(date, (k, v) -> {
-            if (v == null)
-                return new TrafficDayStats(k, input, output, 1);
+        if (sign > 0) captureLog.add(name, entry.timestamp(), entry.input(), entry.output());
+        else captureLog.remove(name);
 
-            v.setTotalInput(v.getTotalInput() + input);
-            v.setTotalOutput(v.getTotalOutput() + output);
-            v.setCaptures(v.getCaptures() + 1);
-            return v;
-        });
+        volumeSketches.add(TrafficResolution.DAY.slotOf(entry.timestamp()), entry.input() + entry.output(), sign);
     }
 
-    // --- MÉTODOS DE CONSULTA ---
+    // --- MÉTODOS DE CONSULTA (SIN BLOQUEOS) ---
+
+    /**
+     * Estado de preparación del índice: fase, archivos analizados y tiempo estimado
+     * restante mientras se construye.
+     * @return Instantánea del progreso de construcción.
+     */
+    public TrafficIndexStatus status() {
+        long scanned = filesScanned.get();
+        long total = filesTotal.get();
+        String currentState = state;
+
+        Long eta = null;
+        if (TrafficIndexStatus.WARMING.equals(currentState) && scanned > 0 && total >= scanned) {
+            long elapsedMillis = Duration.between(startedAt, Instant.now()).toMillis();
+            eta = (total - scanned) * elapsedMillis / scanned / 1000;
+        }
+
+        TrafficIndexSnapshot snapshot = current.get();
+        return new TrafficIndexStatus(currentState, startedAt, readyAt, scanned, total, eta,
+                epoch, snapshot.version, snapshot.publishedAt, error);
+    }
+
+    /**
+     * Versión vigente del índice; aumenta cada vez que se publica un lote de cambios.
+     * @return Número de versión monotónicamente creciente.
+     */
+    public long version() {
+        return current.get().version;
+    }
 
     /**
      * Obtiene una serie temporal de los últimos N días registrados.
@@ -97,15 +532,11 @@ public class CsvTrafficIndexService {
      * @return Lista de estadísticas ordenadas por fecha.
      */
     public List<TrafficDayStats> lastDays(int days) {
-        if (index.isEmpty()) return List.of();
-
-        LocalDate to = index.lastKey();
-        LocalDate from = to.minusDays(days - 1);
+        TrafficColumnStore store = current.get().days();
+        if (store.isEmpty() || days <= 0) return List.of();
 
-        return index.subMap(from, true, to, true)
-                .values()
-                .stream()
-                .toList();
+        int to = store.lastSlot();
+        return store.slice(to - days + 1, to);
     }
 
     /**
@@ -115,33 +546,119 @@ public class CsvTrafficIndexService {
      * @return Lista de estadísticas en el rango dado.
      */
     public List<TrafficDayStats> between(LocalDate from, LocalDate to) {
-        if (index.isEmpty()) return List.of();
+        return current.get().days().slice((int) from.toEpochDay(), (int) to.toEpochDay());
+    }
 
-        return index.subMap(from, true, to, true)
-                .values()
-                .stream()
-                .toList();
+    /**
+     * Totales y promedios de un rango de fechas, calculados en tiempo constante
+     * a partir de las sumas acumuladas.
+     * @param from Fecha inicial (inclusive).
+     * @param to Fecha final (inclusive).
+     * @return Resumen agregado del periodo.
+     */
+    public TrafficRangeSummary summary(LocalDate from, LocalDate to) {
+        return current.get().days().summary(from, to);
     }
 
     /**
-     * Calcula los días con mayor volumen de tráfico total (Input + Output).
-     * * Utiliza una PriorityQueue (Max-Heap) para ordenar por consumo de forma eficiente.
-     * @param limit Número máximo de resultados (Top N).
-     * @return Lista de los días más activos.
+     * Percentiles del volumen por captura en un rango de fechas, obtenidos al fusionar
+     * los bosquejos diarios (sin recorrer las capturas individuales).
+     * @param from Fecha inicial (inclusive).
+     * @param to Fecha final (inclusive).
+     * @return Distribución aproximada del periodo.
      */
-    public List<TrafficDayStats> topDays(int limit) {
-        PriorityQueue<TrafficDayStats> pq = new PriorityQueue<>(
-                Comparator.comparingDouble(
-                        (TrafficDayStats d) -> d.getTotalInput() + d.getTotalOutput()
-                ).reversed()
-        );
+    public TrafficVolumeDistribution volumeDistribution(LocalDate from, LocalDate to) {
+        TrafficVolumeSketches.Histogram h = current.get().volumes
+                .merge((int) from.toEpochDay(), (int) to.toEpochDay());
+        return distribution(from, to, h);
+    }
 
-        pq.addAll(index.values());
+    /**
+     * Percentiles del volumen por captura de cada día con actividad dentro del rango.
+     * @param from Fecha inicial (inclusive).
+     * @param to Fecha final (inclusive).
+     * @return Una distribución por día, en orden cronológico.
+     */
+    public List<TrafficVolumeDistribution> dailyVolumeDistribution(LocalDate from, LocalDate to) {
+        TrafficVolumeSketches volumes = current.get().volumes;
 
-        List<TrafficDayStats> result = new ArrayList<>();
-        for (int i = 0; i < limit && !pq.isEmpty(); i++) {
-            result.add(pq.poll());
+        List<TrafficVolumeDistribution> result = new ArrayList<>();
+        for (int day : volumes.daysBetween((int) from.toEpochDay(), (int) to.toEpochDay())) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            result.add(distribution(date, date, volumes.merge(day, day)));
         }
         return result;
     }
-}
\ No newline at end of file
+
+    private static TrafficVolumeDistribution distribution(LocalDate from, LocalDate to,
+                                                          TrafficVolumeSketches.Histogram h) {
+        return new TrafficVolumeDistribution(from, to, h.count(),
+                h.quantile(0.50), h.quantile(0.90), h.quantile(0.99), h.max());
+    }
+
+    /**
+     * Serie temporal entre dos instantes a la resolución indicada o, si no se indica,
+     * a la más fina que no supere el presupuesto de puntos.
+     * @param from Inicio del periodo (inclusive).
+     * @param to Fin del periodo (inclusive).
+     * @param step Resolución deseada, o null para elegirla automáticamente.
+     * @param maxPoints Presupuesto de puntos para la selección automática.
+     * @return Serie con los intervalos que tienen actividad.
+     */
+    public TrafficSeries series(LocalDateTime from, LocalDateTime to, TrafficResolution step, int maxPoints) {
+        TrafficResolution resolution = step != null ? step : TrafficResolution.fitting(from, to, maxPoints);
+        TrafficColumnStore store = current.get().rollup(resolution);
+
+        return new TrafficSeries(resolution.name(), from, to,
+                store.series(resolution.slotOf(from), resolution.slotOf(to)));
+    }
+
+    /**
+     * Capturas individuales cuyo instante cae dentro de la ventana indicada.
+     * * Se resuelve con búsqueda binaria sobre el detalle ordenado por tiempo.
+     * @param from Inicio de la ventana (inclusive).
+     * @param to Fin de la ventana (inclusive).
+     * @param limit Número máximo de capturas a devolver.
+     * @return Capturas en orden cronológico.
+     */
+    public List<TrafficCapture> captures(LocalDateTime from, LocalDateTime to, int limit) {
+        return current.get().captures.between(from, to, limit);
+    }
+
+    /**
+     * Ranking de días dentro de un rango según la métrica indicada.
+     * * El costo depende de N (O(N log N) sobre una sparse table), no del tamaño del rango
+     * ni del histórico.
+     * @param from Fecha inicial (inclusive); null para no acotar.
+     * @param to Fecha final (inclusive); null para no acotar.
+     * @param metric Métrica de ordenamiento.
+     * @param limit Número máximo de resultados (Top N).
+     * @return Días ordenados de mayor a menor valor de la métrica.
+     */
+    public List<TrafficDayStats> topDays(LocalDate from, LocalDate to, TrafficMetric metric, int limit) {
+        TrafficColumnStore store = current.get().days();
+        if (store.isEmpty()) return List.of();
+
+        int fromSlot = from != null ? (int) from.toEpochDay() : store.firstSlot();
+        int toSlot = to != null ? (int) to.toEpochDay() : store.lastSlot();
+        return store.topDays(fromSlot, toSlot, metric, limit);
+    }
+
+    /**
+     * Ranking de horas dentro de un rango de días según la métrica indicada.
+     * @param from Fecha inicial (inclusive, desde las 00:00); null para no acotar.
+     * @param to Fecha final (inclusive, hasta las 23:00); null para no acotar.
+     * @param metric Métrica de ordenamiento.
+     * @param limit Número máximo de resultados (Top N).
+     * @return Horas ordenadas de mayor a menor valor de la métrica.
+     */
+    public List<TrafficSeriesPoint> topHours(LocalDate from, LocalDate to, TrafficMetric metric, int limit) {
+        TrafficResolution hour = TrafficResolution.HOUR;
+        TrafficColumnStore store = current.get().rollup(hour);
+        if (store.isEmpty()) return List.of();
+
+        int fromSlot = from != null ? hour.slotOf(from.atStartOfDay()) : store.firstSlot();
+        int toSlot = to != null ? hour.slotOf(to.atTime(23, 0)) : store.lastSlot();
+        return store.topPoints(fromSlot, toSlot, metric, limit);
+    }
+}
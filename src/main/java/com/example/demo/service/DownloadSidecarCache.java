@@ -0,0 +1,218 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Servicio DownloadSidecarCache
+ * * Caché en disco de versiones gzip ("sidecars") de los reportes descargados, para
+ * que las descargas repetidas por el enlace de la VPN viajen comprimidas sin volver a
+ * comprimir en cada petición.
+ * * La clave de cada sidecar incluye el nombre, el tamaño y la fecha de modificación
+ * del original: si el archivo cambia, su sidecar anterior deja de coincidir y termina
+ * saliendo por antigüedad. El tamaño total se acota con una política LRU.
+ * * Vive fuera de {@code traffic.dir} para no generar eventos en el índice ni en el
+ * inventario. Solo se tocan archivos con la forma propia de la caché ("*.sidecar.gz" y
+ * los temporales "sidecar-*.part"): si el directorio configurado fuera otro, el resto
+ * de su contenido no se carga ni se elimina.
+ */
+@Service
+public class DownloadSidecarCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadSidecarCache.class);
+
+    private static final String SUFFIX = ".sidecar.gz";
+
+    /** Temporales de una escritura en curso */
+    private static final String TEMP_PREFIX = "sidecar-";
+    private static final String TEMP_SUFFIX = ".part";
+
+    private final Path dir;
+    private final long maxBytes;
+
+    /** Sidecars por nombre de archivo, en orden de acceso (guardado por this) */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Sidecars que alguna petición está escribiendo (guardado por this) */
+    private final Set<String> writing = new HashSet<>();
+
+    private long totalBytes;
+
+    public DownloadSidecarCache(@Value("${traffic.download.sidecar-dir:/var/openvpn/download-cache}") String dir,
+                                @Value("${traffic.download.sidecar-max-mb:512}") long maxMb) {
+        this.dir = Paths.get(dir);
+        this.maxBytes = Math.max(maxMb, 0) * 1024 * 1024;
+    }
+
+    /** Carga los sidecars existentes, del menos al más recientemente usado. */
+    @PostConstruct
+    public synchronized void load() {
+        if (!Files.isDirectory(dir)) return;
+
+        record Found(String file, long size, FileTime used) {}
+        List<Found> found = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) stream::iterator) {
+                String file = p.getFileName().toString();
+                if (file.startsWith(TEMP_PREFIX) && file.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(p); // temporal de una escritura interrumpida
+                    continue;
+                }
+                if (!file.endsWith(SUFFIX) || !Files.isRegularFile(p)) continue;
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                found.add(new Found(file, attrs.size(), attrs.lastModifiedTime()));
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo cargar la caché de descargas {}: {}", dir, e.getMessage());
+            return;
+        }
+        found.sort(Comparator.comparing(Found::used));
+        for (Found f : found) {
+            entries.put(f.file(), f.size());
+            totalBytes += f.size();
+        }
+        evict();
+    }
+
+    /**
+     * Abre el sidecar vigente de un archivo.
+     * * Se devuelve el canal ya abierto y no la ruta: un desalojo concurrente elimina la
+     * entrada del directorio, pero el contenido sigue accesible por el canal hasta que
+     * se cierra, así que una descarga en curso nunca pierde su cuerpo.
+     * @param name Nombre lógico del archivo.
+     * @param version Versión del original (tamaño y fecha de modificación).
+     * @return Canal de lectura del sidecar (lo cierra quien llama), o null si no existe.
+     */
+    public FileChannel open(String name, String version) {
+        String file = fileName(name, version);
+        synchronized (this) {
+            if (entries.get(file) == null) return null;
+        }
+        Path path = dir.resolve(file);
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                // La fecha de modificación conserva el orden LRU entre reinicios
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // desalojado justo después de abrirlo: el canal sigue siendo válido
+            }
+            return channel;
+        } catch (IOException e) {
+            forget(file);
+            return null;
+        }
+    }
+
+    /**
+     * Empieza a escribir el sidecar de un archivo.
+     * @return Escritor del sidecar, o null si ya hay otra petición escribiéndolo o la
+     *         caché está deshabilitada (en ese caso se comprime sin guardar).
+     */
+    public Writer begin(String name, String version) {
+        if (maxBytes == 0) return null;
+
+        String file = fileName(name, version);
+        synchronized (this) {
+            if (entries.containsKey(file) || !writing.add(file)) return null;
+        }
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, TEMP_PREFIX, TEMP_SUFFIX);
+            return new Writer(file, temp, Files.newOutputStream(temp));
+        } catch (IOException e) {
+            synchronized (this) {
+                writing.remove(file);
+            }
+            log.warn("No se pudo crear un sidecar en {}: {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Sidecar en escritura: se publica con {@link #commit()} o se descarta con {@link #abort()}. */
+    public final class Writer {
+
+        private final String file;
+        private final Path temp;
+        private final OutputStream out;
+
+        private Writer(String file, Path temp, OutputStream out) {
+            this.file = file;
+            this.temp = temp;
+            this.out = out;
+        }
+
+        /** Flujo donde se escribe el contenido ya comprimido. */
+        public OutputStream stream() {
+            return out;
+        }
+
+        /** Publica el sidecar completo y aplica el límite de tamaño. */
+        public void commit() {
+            try {
+                out.close();
+                Path target = dir.resolve(file);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                long size = Files.size(target);
+                synchronized (DownloadSidecarCache.this) {
+                    writing.remove(file);
+                    Long previous = entries.put(file, size);
+                    totalBytes += size - (previous == null ? 0 : previous);
+                    evict();
+                }
+            } catch (IOException e) {
+                log.warn("No se pudo guardar el sidecar {}: {}", file, e.getMessage());
+                abort();
+            }
+        }
+
+        /** Descarta el sidecar (descarga interrumpida o error de escritura). */
+        public void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // el temporal se elimina en el siguiente arranque
+            }
+            synchronized (DownloadSidecarCache.this) {
+                writing.remove(file);
+            }
+        }
+    }
+
+    /** Elimina los sidecars menos usados hasta respetar el límite. */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                log.warn("No se pudo eliminar el sidecar {}: {}", eldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void forget(String file) {
+        Long size = entries.remove(file);
+        if (size != null) totalBytes -= size;
+    }
+
+    private static String fileName(String name, String version) {
+        return name + "." + version + SUFFIX;
+    }
+}
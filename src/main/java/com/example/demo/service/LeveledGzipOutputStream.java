@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Flujo gzip con nivel de compresión configurable ({@link GZIPOutputStream} siempre usa
+ * el nivel por defecto).
+ */
+public final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+    /**
+     * @param out Flujo de destino.
+     * @param size Tamaño del buffer de salida.
+     * @param level Nivel de compresión (1 = más rápido, 9 = más compacto).
+     */
+    public LeveledGzipOutputStream(OutputStream out, int size, int level) throws IOException {
+        super(out, size);
+        def.setLevel(level);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.example.demo.pcap.FlowAggregator;
+import com.example.demo.pcap.FlowCsvWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Servicio PcapFlowService
+ * * Convierte un PCAP en su reporte CSV de flujos dentro de la JVM, sin lanzar el script
+ * de Python: {@link FlowAggregator} agrupa los paquetes en flujos bidireccionales y
+ * {@link FlowCsvWriter} escribe una fila por flujo.
+ * * El reporte se crea junto al PCAP con el nombre que esperan el inventario y el índice:
+ * nombre base del PCAP + "_(X_input)_(Y_output).csv", con los volúmenes de entrada y
+ * salida del servidor VPN en MB. Se escribe en un temporal ".part" y se renombra de forma
+ * atómica al terminar, así que nunca se indexa un reporte a medias.
+ * * reg.server-ip debe ser una IP literal (IPv4 en notación decimal con puntos o IPv6) y
+ * se interpreta en la primera conversión, sin consultar DNS: con reg.engine=python este
+ * servicio no se usa y un valor que solo entiende el script no impide el arranque.
+ */
+@Service
+public class PcapFlowService {
+
+    private static final Logger log = LoggerFactory.getLogger(PcapFlowService.class);
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    /** IP del servidor VPN tal como está configurada */
+    private final String serverIpText;
+
+    /** IP del servidor VPN ya interpretada: separa el volumen de entrada del de salida */
+    private volatile InetAddress serverIp;
+    private volatile boolean serverIpParsed;
+
+    private final FlowAggregator aggregator;
+
+    /** Resultado de una conversión. */
+    public record Conversion(Path csv, FlowAggregator.Result result, double inputMb, double outputMb) {}
+
+    public PcapFlowService(@Value("${reg.server-ip:10.0.0.8}") String serverIp,
+                           @Value("${traffic.flows.idle-timeout-seconds:15}") long idleTimeoutSeconds,
+                           @Value("${traffic.flows.active-timeout-seconds:1800}") long activeTimeoutSeconds,
+                           @Value("${traffic.flows.fin-timeout-seconds:2}") long finTimeoutSeconds,
+                           @Value("${traffic.flows.max-flows:2000000}") int maxFlows) {
+        this.serverIpText = serverIp == null ? "" : serverIp.trim();
+        this.aggregator = new FlowAggregator(idleTimeoutSeconds, activeTimeoutSeconds, finTimeoutSeconds, maxFlows);
+    }
+
+    /**
+     * Genera el reporte de flujos de un PCAP sin comprimir.
+     * @param pcap Ruta del PCAP (ya restaurado si estaba comprimido).
+     * @param cancelled Se consulta durante la lectura para interrumpir la conversión.
+     * @return Ruta del CSV creado y las métricas de la conversión.
+     * @throws java.util.concurrent.CancellationException Si se canceló (no queda ningún archivo).
+     */
+    public Conversion convert(Path pcap, BooleanSupplier cancelled) throws IOException {
+        String name = pcap.getFileName().toString();
+        String base = name.endsWith(".pcap") ? name.substring(0, name.length() - ".pcap".length()) : name;
+        Path part = pcap.resolveSibling(base + ".csv" + TrafficLayout.PARTIAL_SUFFIX);
+
+        long started = System.nanoTime();
+        FlowAggregator.Result result;
+        FlowCsvWriter writer;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), 1 << 16);
+             FlowCsvWriter csv = new FlowCsvWriter(out, serverIp())) {
+            writer = csv;
+            result = aggregator.aggregate(pcap, csv, cancelled);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+
+        double inputMb = round(writer.inputBytes() / BYTES_PER_MB);
+        double outputMb = round(writer.outputBytes() / BYTES_PER_MB);
+        Path csv = pcap.resolveSibling(String.format(Locale.ROOT, "%s_(%.2f_input)_(%.2f_output).csv",
+                base, inputMb, outputMb));
+        Files.move(part, csv, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        long elapsedMs = Math.max((System.nanoTime() - started) / 1_000_000, 1);
+        log.info("{}: {} paquetes, {} flujos en {} ms ({} paquetes/s){}", name, result.packets(), result.flows(),
+                elapsedMs, result.packets() * 1000 / elapsedMs, result.truncated() ? " (captura truncada)" : "");
+        return new Conversion(csv, result, inputMb, outputMb);
+    }
+
+    /** IP del servidor, interpretada una sola vez; null si no está configurada. */
+    private InetAddress serverIp() throws IOException {
+        if (!serverIpParsed) {
+            synchronized (this) {
+                if (!serverIpParsed) {
+                    serverIp = serverIpText.isEmpty() ? null : literalAddress(serverIpText);
+                    serverIpParsed = true;
+                }
+            }
+        }
+        return serverIp;
+    }
+
+    /**
+     * Convierte una IP literal en {@link InetAddress} sin resolución de nombres.
+     * * IPv4 solo en la forma de cuatro octetos decimales sin ceros a la izquierda (se
+     * rechazan "10.8" o "010.0.0.8", que {@link InetAddress#getByName} aceptaría con otro
+     * significado). IPv6 con o sin corchetes; {@link InetAddress#getByName} trata como
+     * literal cualquier texto con ':' y nunca consulta DNS para él.
+     * @throws IOException Si el texto no es una IP literal (p. ej. un nombre de host).
+     */
+    static InetAddress literalAddress(String text) throws IOException {
+        String[] octets = text.split("\\.", -1);
+        if (octets.length == 4 && text.chars().allMatch(c -> c == '.' || (c >= '0' && c <= '9'))) {
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                String octet = octets[i];
+                if (octet.isEmpty() || octet.length() > 3 || (octet.length() > 1 && octet.charAt(0) == '0')
+                        || Integer.parseInt(octet) > 255) {
+                    throw notLiteral(text);
+                }
+                bytes[i] = (byte) Integer.parseInt(octet);
+            }
+            return InetAddress.getByAddress(bytes);
+        }
+        String v6 = text.startsWith("[") && text.endsWith("]") ? text.substring(1, text.length() - 1) : text;
+        if (v6.indexOf(':') >= 0 && v6.chars().allMatch(c -> c == ':' || c == '.' || Character.digit(c, 16) >= 0)) {
+            try {
+                return InetAddress.getByName(v6);
+            } catch (IOException e) {
+                throw notLiteral(text);
+            }
+        }
+        throw notLiteral(text);
+    }
+
+    private static IOException notLiteral(String text) {
+        return new IOException("reg.server-ip no es una IP literal: " + text);
+    }
+
+    private static double round(double mb) {
+        return Math.round(mb * 100) / 100.0;
+    }
+}
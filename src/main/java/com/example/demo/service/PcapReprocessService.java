@@ -0,0 +1,352 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.ReprocessJob;
+import com.example.demo.pcap.FlowAggregator;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio PcapReprocessService
+ * * Cola administrada de re-procesamientos de PCAP. Cada petición de reparación se
+ * convierte en un trabajo que ejecuta el script de procesamiento en un pool de workers
+ * acotado, en lugar de lanzar un proceso por petición sin control:
+ * - Como máximo {@code reg.jobs.max-parallel} scripts se ejecutan a la vez; el resto
+ *   espera en una cola acotada y, si se llena, la petición se rechaza.
+ * - Un PCAP con un trabajo en cola o en ejecución no se vuelve a encolar: se devuelve
+ *   el trabajo existente.
+ * - La salida del script se drena siempre (el proceso no se bloquea con el pipe lleno)
+ *   y solo se conservan sus últimas líneas.
+ * - Los trabajos se pueden cancelar; si ya se están ejecutando se termina el proceso
+ *   y sus descendientes.
+ * * Se conserva un historial acotado de trabajos terminados para consultar su resultado.
+ * * Con {@code reg.engine=java} el PCAP se convierte dentro de la JVM
+ * ({@link PcapFlowService}) en lugar de ejecutar el script; la cola, la de-duplicación,
+ * la cancelación y el historial son los mismos.
+ */
+@Service
+public class PcapReprocessService {
+
+    private static final Logger log = LoggerFactory.getLogger(PcapReprocessService.class);
+
+    /** Longitud máxima de una línea guardada en la cola de salida */
+    private static final int MAX_LINE_CHARS = 1000;
+
+    /** Espera tras SIGTERM antes de forzar la terminación del script cancelado */
+    private static final long KILL_GRACE_SECONDS = 5;
+
+    /** Script Python de procesamiento (el mismo que usa el flujo de captura) */
+    private final String scriptPath;
+
+    /** IP del servidor VPN que recibe el script como segundo argumento */
+    private final String serverIp;
+
+    /** Restaura los PCAP comprimidos antes de pasarlos al script */
+    private final TrafficCompactionService compaction;
+
+    /** Conversión PCAP → CSV en la JVM (reg.engine=java) */
+    private final PcapFlowService flows;
+
+    /** Motor de conversión: "python" (script) o "java" (PcapFlowService) */
+    private final boolean javaEngine;
+
+    private final int logTailLines;
+    private final int historySize;
+    private final ThreadPoolExecutor executor;
+
+    /** Todos los trabajos conocidos, en orden de encolado (guardado por this) */
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+
+    /** Trabajo activo (en cola o en ejecución) de cada PCAP (guardado por this) */
+    private final Map<String, Job> activeByPcap = new HashMap<>();
+
+    /** Resultado de encolar un PCAP: el trabajo y si se creó o ya existía. */
+    public record Submission(ReprocessJob job, boolean created) {}
+
+    /** Estado mutable de un trabajo; se modifica y se copia bajo su propio monitor. */
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String pcap;
+        final Instant submittedAt = Instant.now();
+        final ArrayDeque<String> tail = new ArrayDeque<>();
+        String state = ReprocessJob.QUEUED;
+        Instant startedAt;
+        Instant finishedAt;
+        Integer exitCode;
+        String error;
+        boolean cancelRequested;
+        Process process;
+        Future<?> future;
+
+        Job(String pcap) {
+            this.pcap = pcap;
+        }
+    }
+
+    public PcapReprocessService(TrafficCompactionService compaction,
+                                PcapFlowService flows,
+                                @Value("${reg.engine:python}") String engine,
+                                @Value("${reg.script.path}") String scriptPath,
+                                @Value("${reg.server-ip:10.0.0.8}") String serverIp,
+                                @Value("${reg.jobs.max-parallel:2}") int maxParallel,
+                                @Value("${reg.jobs.queue-capacity:500}") int queueCapacity,
+                                @Value("${reg.jobs.log-tail-lines:50}") int logTailLines,
+                                @Value("${reg.jobs.history:200}") int historySize) {
+        this.compaction = compaction;
+        this.flows = flows;
+        this.javaEngine = "java".equalsIgnoreCase(engine.trim());
+        this.scriptPath = scriptPath;
+        this.serverIp = serverIp;
+        this.logTailLines = Math.max(logTailLines, 1);
+        this.historySize = Math.max(historySize, 0);
+
+        int workers = Math.max(maxParallel, 1);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueCapacity, 1)),
+                r -> {
+                    Thread t = new Thread(r, "pcap-reprocess-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        synchronized (this) {
+            for (Job job : activeByPcap.values()) {
+                synchronized (job) {
+                    job.cancelRequested = true;
+                    if (job.process != null) terminate(job.process);
+                }
+            }
+        }
+    }
+
+    // --- OPERACIONES ---
+
+    /**
+     * Encola el re-procesamiento de un PCAP, salvo que ya tenga un trabajo activo.
+     * * La ubicación del archivo se resuelve al ejecutarse el trabajo.
+     * @param pcap Nombre del PCAP (clave de de-duplicación).
+     * @return El trabajo nuevo, o el que ya estaba en cola o en ejecución.
+     * @throws RejectedExecutionException Si la cola de trabajos está llena.
+     */
+    public synchronized Submission submit(String pcap) {
+        Job existing = activeByPcap.get(pcap);
+        if (existing != null) return new Submission(snapshot(existing), false);
+
+        Job job = new Job(pcap);
+        synchronized (job) {
+            // Se asigna antes de que el worker pueda terminar el trabajo y leer 'future'
+            job.future = executor.submit(() -> run(job));
+        }
+        jobs.put(job.id, job);
+        activeByPcap.put(pcap, job);
+        trimHistory();
+        return new Submission(snapshot(job), true);
+    }
+
+    /** Estado de un trabajo, o vacío si no existe o ya salió del historial. */
+    public synchronized Optional<ReprocessJob> get(String id) {
+        Job job = jobs.get(id);
+        return job == null ? Optional.empty() : Optional.of(snapshot(job));
+    }
+
+    /**
+     * Trabajos conocidos, del más reciente al más antiguo.
+     * @param state Filtra por fase (null para todas).
+     */
+    public synchronized List<ReprocessJob> list(String state) {
+        List<ReprocessJob> result = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            ReprocessJob copy = snapshot(job);
+            if (state == null || state.equalsIgnoreCase(copy.getState())) result.add(copy);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Cancela un trabajo. Si está en cola se retira de ella; si se está ejecutando se
+     * envía SIGTERM al script y sus descendientes y, pasado un margen, SIGKILL.
+     * @return Estado del trabajo tras la cancelación, o vacío si no existe.
+     */
+    public Optional<ReprocessJob> cancel(String id) {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(id);
+        }
+        if (job == null) return Optional.empty();
+
+        boolean dequeued = false;
+        synchronized (job) {
+            if (ReprocessJob.QUEUED.equals(job.state) || ReprocessJob.RUNNING.equals(job.state)) {
+                job.cancelRequested = true;
+                if (job.process != null) {
+                    terminate(job.process);
+                } else if (ReprocessJob.QUEUED.equals(job.state)) {
+                    // Si un worker ya lo tomó, run() verá la cancelación y lo cerrará
+                    dequeued = executor.remove((Runnable) job.future);
+                }
+            }
+        }
+        // Un trabajo retirado de la cola no llega a run(): se cierra aquí
+        if (dequeued) finish(job, ReprocessJob.CANCELLED, null, null);
+
+        return Optional.of(snapshot(job));
+    }
+
+    // --- EJECUCIÓN ---
+
+    private void run(Job job) {
+        boolean cancelled;
+        synchronized (job) {
+            cancelled = job.cancelRequested;
+            if (!cancelled) {
+                job.state = ReprocessJob.RUNNING;
+                job.startedAt = Instant.now();
+            }
+        }
+        if (cancelled) {
+            finish(job, ReprocessJob.CANCELLED, null, null);
+            return;
+        }
+        if (javaEngine) {
+            convert(job);
+            return;
+        }
+
+        Process process;
+        try {
+            // El script lee el PCAP por su ruta: se resuelve de nuevo (pudo comprimirse o
+            // migrarse mientras el trabajo estaba en cola) y, si está comprimido, se restaura
+            Path pcapPath = compaction.inflate(job.pcap);
+            ProcessBuilder pb = new ProcessBuilder("python3", scriptPath, pcapPath.toString(), serverIp);
+            pb.redirectErrorStream(true);
+            process = pb.start();
+        } catch (IOException e) {
+            finish(job, ReprocessJob.FAILED, null, "Error ejecutando script: " + e.getMessage());
+            return;
+        }
+
+        synchronized (job) {
+            job.process = process;
+            // Cancelación recibida mientras el proceso arrancaba
+            if (job.cancelRequested) terminate(process);
+        }
+
+        try {
+            // Drenar la salida hasta EOF evita que el script se bloquee escribiendo
+            try (BufferedReader reader = process.inputReader()) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    append(job, line);
+                }
+            }
+            int exitCode = process.waitFor();
+
+            String state;
+            synchronized (job) {
+                state = job.cancelRequested ? ReprocessJob.CANCELLED
+                        : exitCode == 0 ? ReprocessJob.SUCCEEDED : ReprocessJob.FAILED;
+            }
+            finish(job, state, exitCode, null);
+        } catch (IOException e) {
+            terminate(process);
+            finish(job, ReprocessJob.FAILED, null, "Error leyendo la salida del script: " + e.getMessage());
+        } catch (InterruptedException e) {
+            // Apagado de la aplicación
+            terminate(process);
+            finish(job, ReprocessJob.CANCELLED, null, null);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Conversión en la JVM: mismo ciclo de vida que el script, con el resumen como salida. */
+    private void convert(Job job) {
+        try {
+            PcapFlowService.Conversion conversion = flows.convert(compaction.inflate(job.pcap), () -> {
+                synchronized (job) {
+                    return job.cancelRequested;
+                }
+            });
+            FlowAggregator.Result result = conversion.result();
+            append(job, String.format(Locale.ROOT, "%d paquetes (%d no IP), %d flujos%s",
+                    result.packets(), result.ignoredPackets(), result.flows(),
+                    result.truncated() ? "; captura truncada" : ""));
+            append(job, "CSV: " + conversion.csv().getFileName());
+            finish(job, ReprocessJob.SUCCEEDED, 0, null);
+        } catch (CancellationException e) {
+            finish(job, ReprocessJob.CANCELLED, null, null);
+        } catch (IOException | RuntimeException e) {
+            finish(job, ReprocessJob.FAILED, null, "Error convirtiendo el PCAP: " + e.getMessage());
+        }
+    }
+
+    private void append(Job job, String line) {
+        if (line.length() > MAX_LINE_CHARS) line = line.substring(0, MAX_LINE_CHARS) + "…";
+        synchronized (job) {
+            if (job.tail.size() == logTailLines) job.tail.removeFirst();
+            job.tail.addLast(line);
+        }
+    }
+
+    private void finish(Job job, String state, Integer exitCode, String error) {
+        synchronized (job) {
+            job.state = state;
+            job.exitCode = exitCode;
+            job.error = error;
+            job.finishedAt = Instant.now();
+            job.process = null;
+        }
+        synchronized (this) {
+            activeByPcap.remove(job.pcap, job);
+            trimHistory();
+        }
+        log.info("Re-procesamiento de {} terminado: {} (exit={})", job.pcap, state, exitCode);
+    }
+
+    /** Termina el script y sus descendientes: SIGTERM y, pasado el margen, SIGKILL. */
+    private static void terminate(Process process) {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+        process.onExit()
+                .orTimeout(KILL_GRACE_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(t -> {
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                    return process;
+                });
+    }
+
+    /** Descarta los trabajos terminados más antiguos que exceden el historial. */
+    private void trimHistory() {
+        int excess = jobs.size() - activeByPcap.size() - historySize;
+        for (Iterator<Job> it = jobs.values().iterator(); excess > 0 && it.hasNext(); ) {
+            Job job = it.next();
+            if (activeByPcap.get(job.pcap) != job) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    private static ReprocessJob snapshot(Job job) {
+        synchronized (job) {
+            return new ReprocessJob(job.id, job.pcap, job.state, job.submittedAt, job.startedAt,
+                    job.finishedAt, job.exitCode, List.copyOf(job.tail), job.error);
+        }
+    }
+}
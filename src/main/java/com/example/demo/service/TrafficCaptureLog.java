@@ -0,0 +1,149 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.TrafficCapture;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Registro inmutable de capturas individuales ordenadas por tiempo.
+ * * Complementa a los agregados de {@link TrafficColumnStore}: conserva una fila por
+ * archivo CSV (instante, input, output y nombre) en arreglos paralelos ordenados, de
+ * modo que el detalle de un día o de una ventana de tiempo se responde con dos
+ * búsquedas binarias y una copia del tramo, sin volver a listar el directorio.
+ * * Los nombres no se duplican: la columna {@code files} referencia las mismas
+ * instancias de String que ya mantiene el índice.
+ */
+final class TrafficCaptureLog {
+
+    static final TrafficCaptureLog EMPTY =
+            new TrafficCaptureLog(new long[0], new double[0], new double[0], new String[0]);
+
+    // --- COLUMNAS (ordenadas por epochSecond y luego por nombre) ---
+
+    /** Instante de la captura (hora local del nombre, expresada como segundos UTC) */
+    private final long[] epochSeconds;
+    private final double[] input;
+    private final double[] output;
+    private final String[] files;
+
+    private TrafficCaptureLog(long[] epochSeconds, double[] input, double[] output, String[] files) {
+        this.epochSeconds = epochSeconds;
+        this.input = input;
+        this.output = output;
+        this.files = files;
+    }
+
+    int size() {
+        return files.length;
+    }
+
+    // --- CONSULTAS ---
+
+    /**
+     * Capturas cuyo instante está dentro de [from, to], en orden cronológico.
+     * @param limit Número máximo de filas a devolver.
+     */
+    List<TrafficCapture> between(LocalDateTime from, LocalDateTime to, int limit) {
+        int lo = lowerBound(from.toEpochSecond(ZoneOffset.UTC));
+        int hi = lowerBound(to.toEpochSecond(ZoneOffset.UTC) + 1);
+        int end = lo + Math.max(Math.min(hi - lo, limit), 0);
+
+        List<TrafficCapture> result = new ArrayList<>(end - lo);
+        for (int i = lo; i < end; i++) {
+            result.add(new TrafficCapture(
+                    LocalDateTime.ofEpochSecond(epochSeconds[i], 0, ZoneOffset.UTC),
+                    input[i], output[i], files[i]));
+        }
+        return result;
+    }
+
+    /** Primera posición cuyo instante es mayor o igual que {@code second}. */
+    private int lowerBound(long second) {
+        int lo = 0;
+        int hi = epochSeconds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochSeconds[mid] < second) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // --- CONSTRUCTOR INCREMENTAL ---
+
+    /**
+     * Acumula altas y bajas sobre la última versión publicada y genera la siguiente
+     * mediante una mezcla lineal (merge): las altas pendientes se ordenan entre sí y se
+     * intercalan con las filas existentes, omitiendo las dadas de baja. El costo de
+     * cada publicación es O(n + k log k) para k cambios.
+     */
+    static final class Builder {
+
+        private TrafficCaptureLog base = EMPTY;
+        private final List<Row> added = new ArrayList<>();
+        private final Set<String> removed = new HashSet<>();
+
+        private record Row(long epochSecond, double input, double output, String file) {}
+
+        private static final Comparator<Row> ORDER =
+                Comparator.comparingLong(Row::epochSecond).thenComparing(Row::file);
+
+        void add(String file, LocalDateTime timestamp, double in, double out) {
+            // Las bajas solo filtran filas de la versión base, así que un archivo dado de
+            // baja y vuelto a crear en el mismo lote conserva ambas marcas
+            added.add(new Row(timestamp.toEpochSecond(ZoneOffset.UTC), in, out, file));
+        }
+
+        void remove(String file) {
+            if (added.removeIf(r -> r.file().equals(file))) return;
+            removed.add(file);
+        }
+
+        TrafficCaptureLog build() {
+            if (added.isEmpty() && removed.isEmpty()) return base;
+
+            added.sort(ORDER);
+            int capacity = base.size() + added.size();
+            long[] seconds = new long[capacity];
+            double[] in = new double[capacity];
+            double[] out = new double[capacity];
+            String[] names = new String[capacity];
+
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < base.size() || j < added.size()) {
+                boolean takeBase = j >= added.size()
+                        || (i < base.size() && compare(base, i, added.get(j)) <= 0);
+                if (takeBase) {
+                    if (!removed.contains(base.files[i])) {
+                        seconds[n] = base.epochSeconds[i];
+                        in[n] = base.input[i];
+                        out[n] = base.output[i];
+                        names[n++] = base.files[i];
+                    }
+                    i++;
+                } else {
+                    Row row = added.get(j++);
+                    seconds[n] = row.epochSecond();
+                    in[n] = row.input();
+                    out[n] = row.output();
+                    names[n++] = row.file();
+                }
+            }
+
+            base = new TrafficCaptureLog(
+                    Arrays.copyOf(seconds, n), Arrays.copyOf(in, n), Arrays.copyOf(out, n), Arrays.copyOf(names, n));
+            added.clear();
+            removed.clear();
+            return base;
+        }
+
+        private static int compare(TrafficCaptureLog log, int i, Row row) {
+            int cmp = Long.compare(log.epochSeconds[i], row.epochSecond());
+            return cmp != 0 ? cmp : log.files[i].compareTo(row.file());
+        }
+    }
+}
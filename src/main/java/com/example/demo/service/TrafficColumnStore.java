@@ -0,0 +1,366 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.TrafficDayStats;
+import com.example.demo.domain.TrafficRangeSummary;
+import com.example.demo.domain.TrafficSeriesPoint;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Almacén columnar e inmutable de métricas de tráfico.
+ * * Cada posición ("slot") corresponde a un intervalo de la {@link TrafficResolution}
+ * del almacén (para DAY, el epoch-day); los valores se guardan en arreglos primitivos
+ * densos (capturas, input, output) junto con sumas acumuladas (prefix sums). Así los
+ * totales y promedios de cualquier rango se obtienen en O(1) y las series son recorridos
+ * lineales sobre arreglos, sin objetos intermedios por día.
+ * * Para los rankings por rango se construye, bajo demanda y una sola vez por instancia,
+ * una sparse table de máximos por métrica.
+ * * Las instancias se crean con {@link Builder}, que admite sumar y restar capturas.
+ */
+final class TrafficColumnStore {
+
+    /** Resolución de los slots de este almacén */
+    private final TrafficResolution resolution;
+
+    // --- COLUMNAS ---
+
+    /** Slot de la posición 0 de los arreglos */
+    private final int base;
+
+    private final int[] captures;
+    private final double[] input;
+    private final double[] output;
+
+    // --- SUMAS ACUMULADAS (longitud n + 1; prefix[i] = suma de [0, i)) ---
+
+    private final long[] capturesPrefix;
+    private final double[] inputPrefix;
+    private final double[] outputPrefix;
+
+    /** Número de slots con al menos una captura */
+    private final int[] activePrefix;
+
+    // --- ÍNDICES PARA TOP-N (PEREZOSOS) ---
+
+    /** * Sparse table por métrica: table[k][i] = posición del máximo en [i, i + 2^k).
+     * Se calcula en la primera consulta; la referencia atómica la publica de forma segura
+     * entre hilos lectores.
+     */
+    private final AtomicReferenceArray<int[][]> sparseTables =
+            new AtomicReferenceArray<>(TrafficMetric.values().length);
+
+    private TrafficColumnStore(TrafficResolution resolution, int base,
+                               int[] captures, double[] input, double[] output) {
+        int n = captures.length;
+        this.resolution = resolution;
+        this.base = base;
+        this.captures = captures;
+        this.input = input;
+        this.output = output;
+        this.capturesPrefix = new long[n + 1];
+        this.inputPrefix = new double[n + 1];
+        this.outputPrefix = new double[n + 1];
+        this.activePrefix = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            capturesPrefix[i + 1] = capturesPrefix[i] + captures[i];
+            inputPrefix[i + 1] = inputPrefix[i] + input[i];
+            outputPrefix[i + 1] = outputPrefix[i] + output[i];
+            activePrefix[i + 1] = activePrefix[i] + (captures[i] > 0 ? 1 : 0);
+        }
+    }
+
+    /** Almacén vacío de la resolución dada. */
+    static TrafficColumnStore empty(TrafficResolution resolution) {
+        return new Builder(resolution).build();
+    }
+
+    // --- METADATOS ---
+
+    TrafficResolution resolution() {
+        return resolution;
+    }
+
+    boolean isEmpty() {
+        return captures.length == 0;
+    }
+
+    /** Primer slot con datos (solo válido si no está vacío) */
+    int firstSlot() {
+        return base;
+    }
+
+    /** Último slot con datos (solo válido si no está vacío) */
+    int lastSlot() {
+        return base + captures.length - 1;
+    }
+
+    // --- CONSULTAS ---
+
+    /**
+     * Devuelve los días con capturas dentro del rango de slots (ambos inclusive).
+     * Solo tiene sentido en el almacén de resolución DAY.
+     * @return Lista ordenada cronológicamente; vacía si el rango no intersecta los datos.
+     */
+    List<TrafficDayStats> slice(int fromSlot, int toSlot) {
+        int from = Math.max(fromSlot, base) - base;
+        int to = Math.min(toSlot, lastSlot()) - base;
+        if (isEmpty() || from > to) return List.of();
+
+        List<TrafficDayStats> result = new ArrayList<>(activePrefix[to + 1] - activePrefix[from]);
+        for (int i = from; i <= to; i++) {
+            if (captures[i] > 0) result.add(dayAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Devuelve los intervalos con capturas dentro del rango de slots (ambos inclusive),
+     * identificados por su instante de inicio.
+     * @return Lista ordenada cronológicamente; vacía si el rango no intersecta los datos.
+     */
+    List<TrafficSeriesPoint> series(int fromSlot, int toSlot) {
+        int from = Math.max(fromSlot, base) - base;
+        int to = Math.min(toSlot, lastSlot()) - base;
+        if (isEmpty() || from > to) return List.of();
+
+        List<TrafficSeriesPoint> result = new ArrayList<>(activePrefix[to + 1] - activePrefix[from]);
+        for (int i = from; i <= to; i++) {
+            if (captures[i] > 0) {
+                result.add(new TrafficSeriesPoint(resolution.startOf(base + i), input[i], output[i], captures[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Totales y promedios de un rango de días en O(1) usando las sumas acumuladas.
+     * Solo tiene sentido en el almacén de resolución DAY.
+     */
+    TrafficRangeSummary summary(LocalDate fromDate, LocalDate toDate) {
+        int from = Math.max((int) fromDate.toEpochDay(), base) - base;
+        int to = Math.min((int) toDate.toEpochDay(), lastSlot()) - base;
+        if (isEmpty() || from > to) {
+            return new TrafficRangeSummary(fromDate, toDate, 0, 0, 0, 0);
+        }
+
+        return new TrafficRangeSummary(
+                fromDate,
+                toDate,
+                activePrefix[to + 1] - activePrefix[from],
+                capturesPrefix[to + 1] - capturesPrefix[from],
+                inputPrefix[to + 1] - inputPrefix[from],
+                outputPrefix[to + 1] - outputPrefix[from]);
+    }
+
+    /**
+     * Los N días con mayor valor de la métrica dentro del rango de slots, de mayor a menor.
+     * Solo tiene sentido en el almacén de resolución DAY.
+     */
+    List<TrafficDayStats> topDays(int fromSlot, int toSlot, TrafficMetric metric, int limit) {
+        int[] positions = topPositions(fromSlot, toSlot, metric, limit);
+        List<TrafficDayStats> result = new ArrayList<>(positions.length);
+        for (int i : positions) result.add(dayAt(i));
+        return result;
+    }
+
+    /**
+     * Los N intervalos con mayor valor de la métrica dentro del rango de slots, de mayor a menor.
+     */
+    List<TrafficSeriesPoint> topPoints(int fromSlot, int toSlot, TrafficMetric metric, int limit) {
+        int[] positions = topPositions(fromSlot, toSlot, metric, limit);
+        List<TrafficSeriesPoint> result = new ArrayList<>(positions.length);
+        for (int i : positions) {
+            result.add(new TrafficSeriesPoint(resolution.startOf(base + i), input[i], output[i], captures[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Selección Top-N sobre un rango en O(N log N), independiente del tamaño del rango.
+     * * Se parte del máximo del rango (consulta O(1) en la sparse table); cada vez que se
+     * extrae un máximo, su intervalo se divide en dos mitades cuyos máximos entran a una
+     * cola de prioridad (que nunca supera 2N + 1 elementos). Los slots sin capturas se
+     * descartan.
+     */
+    private int[] topPositions(int fromSlot, int toSlot, TrafficMetric metric, int limit) {
+        int from = Math.max(fromSlot, base) - base;
+        int to = Math.min(toSlot, lastSlot()) - base;
+        if (isEmpty() || limit <= 0 || from > to) return new int[0];
+
+        int[][] table = sparseTable(metric);
+
+        // Cada elemento: {inicio, fin, posición del máximo}
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = Double.compare(value(metric, b[2]), value(metric, a[2]));
+            return cmp != 0 ? cmp : Integer.compare(a[2], b[2]);
+        });
+        queue.add(new int[]{from, to, argMax(table, metric, from, to)});
+
+        int[] result = new int[Math.min(limit, to - from + 1)];
+        int size = 0;
+        while (size < result.length && !queue.isEmpty()) {
+            int[] range = queue.poll();
+            int m = range[2];
+            if (captures[m] > 0) result[size++] = m;
+
+            if (range[0] < m) queue.add(new int[]{range[0], m - 1, argMax(table, metric, range[0], m - 1)});
+            if (m < range[1]) queue.add(new int[]{m + 1, range[1], argMax(table, metric, m + 1, range[1])});
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private double value(TrafficMetric metric, int i) {
+        return switch (metric) {
+            case INPUT -> input[i];
+            case OUTPUT -> output[i];
+            case TOTAL -> input[i] + output[i];
+            case CAPTURES -> captures[i];
+        };
+    }
+
+    /** Posición del máximo en [from, to] (en caso de empate, la más antigua). */
+    private int argMax(int[][] table, TrafficMetric metric, int from, int to) {
+        int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+        return better(metric, table[k][from], table[k][to - (1 << k) + 1]);
+    }
+
+    private int better(TrafficMetric metric, int a, int b) {
+        double va = value(metric, a);
+        double vb = value(metric, b);
+        return va > vb || (va == vb && a <= b) ? a : b;
+    }
+
+    /** Obtiene (o construye una única vez) la sparse table de la métrica. */
+    private int[][] sparseTable(TrafficMetric metric) {
+        int[][] table = sparseTables.get(metric.ordinal());
+        if (table != null) return table;
+
+        int n = captures.length;
+        int levels = 32 - Integer.numberOfLeadingZeros(n);
+        table = new int[levels][];
+        table[0] = new int[n];
+        for (int i = 0; i < n; i++) table[0][i] = i;
+
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] prev = table[k - 1];
+            int[] level = new int[n - (1 << k) + 1];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = better(metric, prev[i], prev[i + half]);
+            }
+            table[k] = level;
+        }
+
+        // Si otro hilo la construyó a la vez, se conserva la primera publicada
+        return sparseTables.compareAndSet(metric.ordinal(), null, table)
+                ? table
+                : sparseTables.get(metric.ordinal());
+    }
+
+    private TrafficDayStats dayAt(int i) {
+        return new TrafficDayStats(LocalDate.ofEpochDay(base + i), input[i], output[i], captures[i]);
+    }
+
+    // --- CONSTRUCTOR INCREMENTAL ---
+
+    /**
+     * Acumulador mutable de métricas por slot.
+     * * Mantiene arreglos densos que crecen en ambas direcciones según llegan slots
+     * anteriores o posteriores; {@link #build()} recorta los extremos vacíos y
+     * calcula las sumas acumuladas.
+     */
+    static final class Builder {
+
+        private final TrafficResolution resolution;
+        private int base;
+        private int[] captures = new int[0];
+        private double[] input = new double[0];
+        private double[] output = new double[0];
+
+        Builder(TrafficResolution resolution) {
+            this.resolution = resolution;
+        }
+
+        TrafficResolution resolution() {
+            return resolution;
+        }
+
+        /**
+         * Suma (o resta, con valores negativos) una captura al slot indicado.
+         * @param slot Slot de la captura en la resolución del constructor.
+         * @param in Volumen de entrada.
+         * @param out Volumen de salida.
+         * @param count +1 al agregar una captura, -1 al quitarla.
+         */
+        void add(int slot, double in, double out, int count) {
+            int i = ensure(slot);
+            captures[i] += count;
+            if (captures[i] <= 0) {
+                // Evita residuos de coma flotante en días que se quedaron sin capturas
+                captures[i] = 0;
+                input[i] = 0;
+                output[i] = 0;
+            } else {
+                input[i] += in;
+                output[i] += out;
+            }
+        }
+
+        /** Garantiza que el slot esté dentro de los arreglos y devuelve su posición. */
+        private int ensure(int slot) {
+            int n = captures.length;
+            if (n == 0) {
+                base = slot;
+                grow(0, 16);
+                return 0;
+            }
+            if (slot < base) {
+                int shift = Math.max(base - slot, n);
+                grow(shift, n + shift);
+                base -= shift;
+            } else if (slot - base >= n) {
+                grow(0, Math.max(slot - base + 1, n * 2));
+            }
+            return slot - base;
+        }
+
+        private void grow(int offset, int newLength) {
+            captures = copy(captures, offset, newLength);
+            input = copy(input, offset, newLength);
+            output = copy(output, offset, newLength);
+        }
+
+        private static int[] copy(int[] src, int offset, int length) {
+            int[] dst = new int[length];
+            System.arraycopy(src, 0, dst, offset, src.length);
+            return dst;
+        }
+
+        private static double[] copy(double[] src, int offset, int length) {
+            double[] dst = new double[length];
+            System.arraycopy(src, 0, dst, offset, src.length);
+            return dst;
+        }
+
+        /** Genera una instancia inmutable con los slots vacíos de los extremos recortados. */
+        TrafficColumnStore build() {
+            int lo = 0;
+            int hi = captures.length - 1;
+            while (lo <= hi && captures[lo] == 0) lo++;
+            while (hi >= lo && captures[hi] == 0) hi--;
+
+            return new TrafficColumnStore(
+                    resolution,
+                    base + lo,
+                    Arrays.copyOfRange(captures, lo, hi + 1),
+                    Arrays.copyOfRange(input, lo, hi + 1),
+                    Arrays.copyOfRange(output, lo, hi + 1));
+        }
+    }
+}
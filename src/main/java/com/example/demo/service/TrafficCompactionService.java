@@ -0,0 +1,405 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.TrafficCompactionStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Servicio TrafficCompactionService
+ * * Compresión por niveles del directorio de tráfico: los CSV y PCAP que no se han
+ * modificado en {@code traffic.compaction.min-age-days} se comprimen con gzip
+ * ("nombre.csv" → "nombre.csv.gz") en segundo plano.
+ * * El resto de la aplicación sigue usando el nombre lógico: {@link TrafficLayout}
+ * resuelve la versión comprimida, {@link #open(Path)} la descomprime en streaming al
+ * leerla y {@link #inflate(String)} la restaura en disco cuando un script externo
+ * necesita el archivo original.
+ * * Cada archivo se comprime en un temporal ".gz.part" que se sincroniza a disco y se
+ * renombra de forma atómica antes de borrar el original; la versión comprimida conserva
+ * la fecha de modificación, así que el orden del inventario y los plazos de
+ * procesamiento no cambian.
+ * * La compresión y la restauración de un mismo archivo se excluyen con un cerrojo por
+ * nombre lógico, no con el monitor del servicio: comprimir un PCAP de varios GB no
+ * bloquea la restauración de los demás archivos.
+ */
+@Service
+public class TrafficCompactionService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficCompactionService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TrafficLayout layout;
+
+    /** Compresión periódica (si está deshabilitada solo se ejecuta bajo demanda) */
+    @Value("${traffic.compaction.enabled:false}")
+    private boolean enabled;
+
+    /** Días sin modificación a partir de los cuales un archivo se comprime */
+    @Value("${traffic.compaction.min-age-days:7}")
+    private long minAgeDays = 7;
+
+    /** Minutos entre ejecuciones periódicas */
+    @Value("${traffic.compaction.interval-minutes:60}")
+    private long intervalMinutes = 60;
+
+    /** Nivel de compresión de gzip (1 = más rápido, 9 = más compacto) */
+    @Value("${traffic.compaction.level:6}")
+    private int level = 6;
+
+    /** Extensiones a comprimir */
+    @Value("${traffic.compaction.types:pcap,csv}")
+    private Set<String> types = Set.of("pcap", "csv");
+
+    /** Hilo de la compresión: ejecuciones periódicas y las pedidas por la API */
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Archivos restaurados recientemente, con el instante hasta el que no se vuelven a
+     * comprimir (un script externo puede estar leyéndolos).
+     */
+    private final Map<String, Instant> pinned = new ConcurrentHashMap<>();
+
+    /**
+     * Cerrojo por nombre lógico entre {@link #inflate(String)} y la compresión. Crece con
+     * los nombres distintos que se han comprimido o restaurado (un objeto por archivo).
+     */
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    // --- MÉTRICAS ---
+
+    private final AtomicLong filesCompressed = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+    private final AtomicLong filesInflated = new AtomicLong();
+    private final AtomicLong bytesDecompressed = new AtomicLong();
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    private volatile Instant lastRunStartedAt;
+    private volatile Instant lastRunFinishedAt;
+    private volatile long lastRunFiles;
+    private volatile String lastRunError;
+
+    public TrafficCompactionService(TrafficLayout layout) {
+        this.layout = layout;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "traffic-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!enabled) return;
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact(Duration.ofDays(minAgeDays));
+            } catch (Exception e) {
+                log.warn("Error comprimiendo archivos de tráfico: {}", e.getMessage());
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    // --- LECTURA TRANSPARENTE ---
+
+    /**
+     * Abre un archivo del directorio de tráfico para lectura, descomprimiéndolo en
+     * streaming si está comprimido.
+     * @param path Ruta devuelta por {@link TrafficLayout#resolve(String)}.
+     */
+    public InputStream open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (!TrafficLayout.isCompressed(path)) return in;
+        return new MeteredInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+    }
+
+    /**
+     * Restaura en disco la versión original de un archivo comprimido, para los scripts
+     * externos que leen el archivo por su ruta. El archivo restaurado no se vuelve a
+     * comprimir hasta que cumpla de nuevo la antigüedad mínima desde ahora.
+     * @param name Nombre lógico del archivo.
+     * @return Ruta del archivo original (sin cambios si no estaba comprimido).
+     */
+    public Path inflate(String name) throws IOException {
+        synchronized (lockFor(name)) {
+            // Bajo el cerrojo: una compresión en curso de este archivo termina antes y
+            // las siguientes ven la marca y lo saltan
+            pinned.put(name, Instant.now().plus(Duration.ofDays(minAgeDays)));
+
+            Path path = layout.resolve(name);
+            if (!TrafficLayout.isCompressed(path)) return path;
+
+            Path plain = path.resolveSibling(name);
+            Path part = path.resolveSibling(name + TrafficLayout.PARTIAL_SUFFIX);
+            FileTime mtime = Files.getLastModifiedTime(path);
+            try (InputStream in = open(path)) {
+                write(in, part);
+            } catch (IOException e) {
+                Files.deleteIfExists(part);
+                throw e;
+            }
+            Files.setLastModifiedTime(part, mtime);
+            Files.move(part, plain, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(path);
+
+            filesInflated.incrementAndGet();
+            log.info("Restaurado {} desde su versión comprimida", name);
+            return plain;
+        }
+    }
+
+    // --- COMPRESIÓN ---
+
+    /**
+     * Comprime los archivos sin modificar desde hace al menos {@code minAge}.
+     * @param minAge Antigüedad mínima de la última modificación.
+     * @return Número de archivos comprimidos.
+     * @throws IllegalStateException Si ya hay una compresión en curso.
+     */
+    public int compact(Duration minAge) throws IOException {
+        claim();
+        try {
+            return run(minAge);
+        } catch (IOException | RuntimeException e) {
+            lastRunError = e.getMessage();
+            throw e;
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Lanza una compresión en el hilo de la compactación, sin esperar a que termine. Su
+     * progreso y resultado se consultan con {@link #stats()}.
+     * @param minAge Antigüedad mínima de la última modificación.
+     * @throws IllegalStateException Si ya hay una compresión en curso.
+     */
+    public void submit(Duration minAge) {
+        claim();
+        try {
+            scheduler.execute(() -> {
+                try {
+                    run(minAge);
+                } catch (Exception e) {
+                    lastRunError = e.getMessage();
+                    log.warn("Error comprimiendo archivos de tráfico: {}", e.getMessage());
+                } finally {
+                    finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finish();
+            throw new IllegalStateException("El servicio de compresión se está deteniendo");
+        }
+    }
+
+    /** Reserva la ejecución y reinicia las métricas de la última ejecución. */
+    private void claim() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una compresión en curso");
+        }
+        lastRunStartedAt = Instant.now();
+        lastRunFinishedAt = null;
+        lastRunFiles = 0;
+        lastRunError = null;
+    }
+
+    private void finish() {
+        lastRunFinishedAt = Instant.now();
+        running.set(false);
+    }
+
+    private int run(Duration minAge) throws IOException {
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(minAge);
+        pinned.values().removeIf(until -> until.isBefore(now));
+
+        // Los archivos fechados después del corte no pueden ser tan antiguos: esas
+        // particiones ni se abren
+        LocalDate lastDay = LocalDate.now().minusDays(minAge.toDays());
+        int compressed = 0;
+        for (Map.Entry<String, Path> e : layout.locate(null, lastDay).entrySet()) {
+            String name = e.getKey();
+            Path path = e.getValue();
+            if (TrafficLayout.isCompressed(path) || !types.contains(extensionOf(name))) continue;
+
+            try {
+                if (compress(name, path, cutoff)) {
+                    lastRunFiles = ++compressed;
+                }
+            } catch (NoSuchFileException ignored) {
+                // eliminado o movido durante el recorrido
+            }
+            if (Thread.currentThread().isInterrupted()) break;
+        }
+        if (compressed > 0) {
+            log.info("Compresión de tráfico: {} archivos comprimidos, {} bytes recuperados en total",
+                    compressed, bytesBefore.get() - bytesAfter.get());
+        }
+        return compressed;
+    }
+
+    /**
+     * Comprime un archivo si sigue siendo más antiguo que el corte y no está restaurado
+     * para un script. La marca se comprueba bajo el mismo cerrojo que toma
+     * {@link #inflate(String)}, así que nunca se borra un archivo que acaba de entregar.
+     */
+    private boolean compress(String name, Path file, Instant cutoff) throws IOException {
+        synchronized (lockFor(name)) {
+            if (pinned.containsKey(name)) return false;
+            return compressLocked(file, cutoff);
+        }
+    }
+
+    private boolean compressLocked(Path file, Instant cutoff) throws IOException {
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!before.isRegularFile() || before.lastModifiedTime().toInstant().isAfter(cutoff)) return false;
+
+        String fileName = file.getFileName().toString();
+        Path gz = file.resolveSibling(fileName + TrafficLayout.COMPRESSED_SUFFIX);
+        Path part = file.resolveSibling(fileName + TrafficLayout.COMPRESSED_SUFFIX + TrafficLayout.PARTIAL_SUFFIX);
+
+        if (Files.exists(gz)) {
+            // Una ejecución interrumpida tras el renombrado dejó ambos: la versión
+            // comprimida está completa si conserva la misma fecha de modificación
+            if (Files.getLastModifiedTime(gz).equals(before.lastModifiedTime())) {
+                Files.delete(file);
+                return true;
+            }
+            log.warn("No se comprimió {}: ya existe {}", fileName, gz.getFileName());
+            return false;
+        }
+
+        try {
+            try (InputStream in = Files.newInputStream(file);
+                 FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream raw = Channels.newOutputStream(channel);
+                GZIPOutputStream out = new LeveledGzipOutputStream(raw, BUFFER_SIZE, level);
+                in.transferTo(out);
+                out.finish();
+                out.flush();
+                channel.force(true);
+            }
+
+            // Si el archivo cambió mientras se comprimía, se conserva el original
+            BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+            if (after.size() != before.size() || !after.lastModifiedTime().equals(before.lastModifiedTime())) {
+                Files.delete(part);
+                return false;
+            }
+
+            Files.setLastModifiedTime(part, before.lastModifiedTime());
+            Files.move(part, gz, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.delete(file);
+
+        filesCompressed.incrementAndGet();
+        bytesBefore.addAndGet(before.size());
+        bytesAfter.addAndGet(Files.size(gz));
+        return true;
+    }
+
+    // --- MÉTRICAS ---
+
+    /** Métricas de compresión y descompresión desde el arranque. */
+    public TrafficCompactionStats stats() {
+        TrafficCompactionStats stats = new TrafficCompactionStats();
+        stats.setEnabled(enabled);
+        stats.setRunning(running.get());
+        stats.setMinAgeDays(minAgeDays);
+        stats.setLastRunStartedAt(lastRunStartedAt);
+        stats.setLastRunFinishedAt(lastRunFinishedAt);
+        stats.setLastRunFiles(lastRunFiles);
+        stats.setLastRunError(lastRunError);
+        stats.setFilesCompressed(filesCompressed.get());
+        stats.setBytesBefore(bytesBefore.get());
+        stats.setBytesAfter(bytesAfter.get());
+        stats.setFilesInflated(filesInflated.get());
+        stats.setBytesDecompressed(bytesDecompressed.get());
+        stats.setDecompressSeconds(decompressNanos.get() / 1e9);
+        return stats;
+    }
+
+    /** Antigüedad mínima configurada para comprimir. */
+    public Duration minAge() {
+        return Duration.ofDays(minAgeDays);
+    }
+
+    private Object lockFor(String name) {
+        return locks.computeIfAbsent(name, k -> new Object());
+    }
+
+    private static void write(InputStream in, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            in.transferTo(out);
+            channel.force(true);
+        }
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1);
+    }
+
+    /** Flujo descomprimido que contabiliza los bytes entregados y el tiempo invertido. */
+    private final class MeteredInputStream extends FilterInputStream {
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            decompressNanos.addAndGet(System.nanoTime() - start);
+            if (b >= 0) bytesDecompressed.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(buffer, offset, length);
+            decompressNanos.addAndGet(System.nanoTime() - start);
+            if (n > 0) bytesDecompressed.addAndGet(n);
+            return n;
+        }
+    }
+}
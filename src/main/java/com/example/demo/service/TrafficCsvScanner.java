@@ -0,0 +1,577 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Servicio TrafficCsvScanner
+ * * Proyección de columnas y filtrado de filas de un reporte CSV en el servidor, para
+ * descargar solo las columnas o las filas (p. ej. de una IP) que interesan de un
+ * archivo de varios GB.
+ * * El archivo se recorre por ventanas mapeadas en memoria ({@code traffic.download.scan-window-mb})
+ * y cada fila se divide en campos a nivel de bytes: las condiciones se evalúan sobre los
+ * bytes del campo y las filas que coinciden se copian tal cual a la salida, sin crear
+ * un String por fila. Solo la cabecera se decodifica, para resolver los nombres de columna.
+ * * Los reportes comprimidos por la compactación no se pueden mapear: se recorren con el
+ * mismo analizador sobre un buffer que se rellena desde la descompresión en streaming.
+ */
+@Service
+public class TrafficCsvScanner {
+
+    private static final int OUTPUT_BUFFER = 64 * 1024;
+    private static final int STREAM_BUFFER = 1024 * 1024;
+
+    /** Longitud máxima de una fila (protege de archivos sin saltos de línea) */
+    private static final int MAX_ROW_BYTES = 16 * 1024 * 1024;
+
+    private final TrafficCompactionService compaction;
+
+    /** Tamaño de cada ventana mapeada del archivo */
+    @Value("${traffic.download.scan-window-mb:64}")
+    private int windowMb = 64;
+
+    public TrafficCsvScanner(TrafficCompactionService compaction) {
+        this.compaction = compaction;
+    }
+
+    // --- CONSULTA ---
+
+    /** Operadores de comparación de una condición. */
+    private enum Op { EQ, NE, IN, GT, GE, LT, LE }
+
+    /** Condición sobre una columna; los valores se guardan como bytes para comparar sin decodificar. */
+    private record Condition(String column, Op op, byte[][] values, double number) {}
+
+    /**
+     * Consulta sobre un reporte: columnas a conservar (en el orden pedido) y condiciones
+     * que deben cumplirse todas.
+     * * Cada condición tiene la forma {@code columna:operador:valor}, con los operadores
+     * eq, ne, in (valores separados por '|'), gt, ge, lt y le. Las comparaciones de orden
+     * son numéricas si el campo y el valor son números y lexicográficas si no (válido
+     * para fechas ISO).
+     * * Los campos entre comillas se comparan por su valor: sin las comillas que los rodean
+     * y con cada comilla escapada ("") reducida a una. El valor de la condición se escribe
+     * sin escapar (a"b coincide con el campo "a""b").
+     */
+    public static final class Query {
+
+        private final List<String> columns;
+        private final List<Condition> conditions;
+
+        private Query(List<String> columns, List<Condition> conditions) {
+            this.columns = columns;
+            this.conditions = conditions;
+        }
+
+        /**
+         * @param columns Columnas a conservar (null o vacío = todas).
+         * @param where Condiciones "columna:operador:valor" (null o vacío = todas las filas).
+         * @throws IllegalArgumentException Si alguna condición está mal formada.
+         */
+        public static Query of(List<String> columns, List<String> where) {
+            List<String> projection = new ArrayList<>();
+            if (columns != null) {
+                for (String c : columns) {
+                    if (c != null && !c.isBlank()) projection.add(c.trim());
+                }
+            }
+
+            List<Condition> conditions = new ArrayList<>();
+            if (where != null) {
+                for (String w : where) {
+                    if (w == null || w.isBlank()) continue;
+                    String[] parts = w.split(":", 3);
+                    if (parts.length < 3 || parts[0].isBlank()) {
+                        throw new IllegalArgumentException("Condición inválida (columna:operador:valor): " + w);
+                    }
+                    Op op;
+                    try {
+                        op = Op.valueOf(parts[1].trim().toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Operador desconocido: " + parts[1]);
+                    }
+                    String[] raw = op == Op.IN ? parts[2].split("\\|") : new String[]{parts[2]};
+                    byte[][] values = new byte[raw.length][];
+                    for (int i = 0; i < raw.length; i++) values[i] = raw[i].getBytes(StandardCharsets.UTF_8);
+                    conditions.add(new Condition(parts[0].trim(), op, values, parseNumber(ByteBuffer.wrap(values[0]), 0, values[0].length)));
+                }
+            }
+            return new Query(List.copyOf(projection), List.copyOf(conditions));
+        }
+
+        /** Indica si la consulta no proyecta ni filtra (se envía el archivo tal cual). */
+        public boolean isEmpty() {
+            return columns.isEmpty() && conditions.isEmpty();
+        }
+
+        /** Representación canónica, usada para distinguir el ETag de cada consulta. */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.join(",", columns));
+            for (Condition c : conditions) {
+                sb.append(';').append(c.column()).append(':').append(c.op());
+                for (byte[] v : c.values()) sb.append(':').append(new String(v, StandardCharsets.UTF_8));
+            }
+            return sb.toString();
+        }
+    }
+
+    // --- RECORRIDO ---
+
+    /**
+     * Abre un reporte y resuelve las columnas de la consulta contra su cabecera, antes de
+     * escribir nada en la salida.
+     * @throws IllegalArgumentException Si la consulta nombra una columna que no existe.
+     */
+    public Scan open(Path file, Query query) throws IOException {
+        Source source = TrafficLayout.isCompressed(file)
+                ? new StreamSource(compaction.open(file))
+                : new MappedSource(FileChannel.open(file), (long) Math.max(windowMb, 1) * 1024 * 1024);
+        try {
+            return new Scan(source, query);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /** Recorrido preparado de un reporte: se escribe con {@link #writeTo(OutputStream)}. */
+    public static final class Scan implements Closeable {
+
+        private final Source source;
+
+        /** Índice en la fila de cada columna de salida (null = todas, en su orden) */
+        private final int[] projection;
+
+        /** Índice de la columna de cada condición */
+        private final int[] conditionColumns;
+        private final Condition[] conditions;
+
+        /** Inicio y fin (exclusivo) de cada campo de la fila actual en la ventana */
+        private int[] starts = new int[32];
+        private int[] ends = new int[32];
+        private int fieldCount;
+
+        /** Posición de la fila siguiente dentro de la ventana actual */
+        private int position;
+
+        private final byte[] out = new byte[OUTPUT_BUFFER];
+        private int outLength;
+
+        /** Valor de un campo con comillas escapadas, ya reducidas (ver {@link #unescape}) */
+        private byte[] unescaped = new byte[256];
+
+        private Scan(Source source, Query query) throws IOException {
+            this.source = source;
+
+            int next = nextRow();
+            if (next < 0) throw new IllegalArgumentException("El reporte está vacío");
+
+            Map<String, Integer> header = new HashMap<>();
+            ByteBuffer buffer = source.window();
+            for (int i = 0; i < fieldCount; i++) {
+                String name = new String(fieldBytes(buffer, i), StandardCharsets.UTF_8).trim();
+                if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1);
+                header.putIfAbsent(name, i);
+            }
+
+            this.projection = query.columns.isEmpty() ? null : new int[query.columns.size()];
+            for (int i = 0; projection != null && i < projection.length; i++) {
+                projection[i] = column(header, query.columns.get(i));
+            }
+            this.conditions = query.conditions.toArray(new Condition[0]);
+            this.conditionColumns = new int[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                conditionColumns[i] = column(header, conditions[i].column());
+            }
+        }
+
+        private static int column(Map<String, Integer> header, String name) {
+            Integer index = header.get(name);
+            if (index == null) throw new IllegalArgumentException("Columna desconocida: " + name);
+            return index;
+        }
+
+        /**
+         * Escribe la cabecera y las filas que cumplen la consulta, proyectadas.
+         * @return Número de filas de datos escritas.
+         */
+        public long writeTo(OutputStream target) throws IOException {
+            emitRow(target); // cabecera, ya leída al abrir
+            long matched = 0;
+            while (nextRow() >= 0) {
+                if (matches()) {
+                    emitRow(target);
+                    matched++;
+                }
+            }
+            target.write(out, 0, outLength);
+            outLength = 0;
+            target.flush();
+            return matched;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        // --- ANÁLISIS DE FILAS ---
+
+        /**
+         * Delimita los campos de la fila siguiente (respetando comillas dobles) y avanza.
+         * @return Posición de inicio de la fila en la ventana, o -1 al terminar el archivo.
+         */
+        private int nextRow() throws IOException {
+            while (true) {
+                ByteBuffer buffer = source.window();
+                int limit = buffer.limit();
+                int start = position;
+                fieldCount = 0;
+
+                int fieldStart = start;
+                boolean quoted = false;
+                for (int i = start; i < limit; i++) {
+                    byte c = buffer.get(i);
+                    if (c == '"') {
+                        quoted = !quoted; // "" dentro de comillas alterna dos veces
+                    } else if (!quoted && c == ',') {
+                        addField(fieldStart, i);
+                        fieldStart = i + 1;
+                    } else if (!quoted && c == '\n') {
+                        addField(fieldStart, i > fieldStart && buffer.get(i - 1) == '\r' ? i - 1 : i);
+                        position = i + 1;
+                        return start;
+                    }
+                }
+
+                if (source.atEnd()) {
+                    if (start == limit) return -1;
+                    addField(fieldStart, limit); // última fila sin salto de línea
+                    position = limit;
+                    return start;
+                }
+                // Fila incompleta: la siguiente ventana empieza en ella
+                source.advance(start);
+                position = 0;
+            }
+        }
+
+        private void addField(int start, int end) {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            fieldCount++;
+        }
+
+        private boolean matches() {
+            ByteBuffer buffer = source.window();
+            for (int i = 0; i < conditions.length; i++) {
+                Condition condition = conditions[i];
+                int column = conditionColumns[i];
+
+                // Campo sin las comillas que lo rodean; una columna ausente cuenta como vacía
+                ByteBuffer field = buffer;
+                int from = 0;
+                int to = 0;
+                if (column < fieldCount) {
+                    from = starts[column];
+                    to = ends[column];
+                    if (to - from >= 2 && buffer.get(from) == '"' && buffer.get(to - 1) == '"') {
+                        from++;
+                        to--;
+                        if (contains(buffer, from, to, (byte) '"')) {
+                            // Comillas escapadas: se compara el valor real, no los bytes crudos
+                            to = unescape(buffer, from, to);
+                            from = 0;
+                            field = ByteBuffer.wrap(unescaped, 0, to);
+                        }
+                    }
+                }
+                if (!test(condition, field, from, to)) return false;
+            }
+            return true;
+        }
+
+        private static boolean test(Condition condition, ByteBuffer buffer, int from, int to) {
+            return switch (condition.op()) {
+                case EQ -> equalsBytes(buffer, from, to, condition.values()[0]);
+                case NE -> !equalsBytes(buffer, from, to, condition.values()[0]);
+                case IN -> Arrays.stream(condition.values()).anyMatch(v -> equalsBytes(buffer, from, to, v));
+                case GT -> compare(buffer, from, to, condition) > 0;
+                case GE -> compare(buffer, from, to, condition) >= 0;
+                case LT -> compare(buffer, from, to, condition) < 0;
+                case LE -> compare(buffer, from, to, condition) <= 0;
+            };
+        }
+
+        /** Compara el campo con el valor: numéricamente si ambos son números, por bytes si no. */
+        private static int compare(ByteBuffer buffer, int from, int to, Condition condition) {
+            if (!Double.isNaN(condition.number())) {
+                double field = parseNumber(buffer, from, to);
+                if (!Double.isNaN(field)) return Double.compare(field, condition.number());
+            }
+            byte[] value = condition.values()[0];
+            int length = Math.min(to - from, value.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (buffer.get(from + i) & 0xFF) - (value[i] & 0xFF);
+                if (diff != 0) return diff;
+            }
+            return (to - from) - value.length;
+        }
+
+        private static boolean equalsBytes(ByteBuffer buffer, int from, int to, byte[] value) {
+            if (to - from != value.length) return false;
+            for (int i = 0; i < value.length; i++) {
+                if (buffer.get(from + i) != value[i]) return false;
+            }
+            return true;
+        }
+
+        private static boolean contains(ByteBuffer buffer, int from, int to, byte b) {
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) == b) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Copia el interior de un campo entre comillas a {@link #unescaped} reduciendo cada
+         * "" a una comilla.
+         * @return Longitud del valor resultante.
+         */
+        private int unescape(ByteBuffer buffer, int from, int to) {
+            if (unescaped.length < to - from) unescaped = new byte[Math.max(to - from, unescaped.length * 2)];
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                byte c = buffer.get(i);
+                unescaped[length++] = c;
+                if (c == '"' && i + 1 < to && buffer.get(i + 1) == '"') i++;
+            }
+            return length;
+        }
+
+        private byte[] fieldBytes(ByteBuffer buffer, int index) {
+            int from = starts[index];
+            int to = ends[index];
+            if (to - from >= 2 && buffer.get(from) == '"' && buffer.get(to - 1) == '"') {
+                return Arrays.copyOf(unescaped, unescape(buffer, from + 1, to - 1));
+            }
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            return bytes;
+        }
+
+        // --- SALIDA ---
+
+        /** Copia a la salida los campos proyectados de la fila actual, con sus bytes originales. */
+        private void emitRow(OutputStream target) throws IOException {
+            ByteBuffer buffer = source.window();
+            int columns = projection == null ? fieldCount : projection.length;
+            for (int i = 0; i < columns; i++) {
+                if (i > 0) emitByte(target, (byte) ',');
+                int index = projection == null ? i : projection[i];
+                if (index < fieldCount) emit(target, buffer, starts[index], ends[index]);
+            }
+            emitByte(target, (byte) '\n');
+        }
+
+        private void emit(OutputStream target, ByteBuffer buffer, int from, int to) throws IOException {
+            while (from < to) {
+                if (outLength == out.length) {
+                    target.write(out, 0, outLength);
+                    outLength = 0;
+                }
+                int length = Math.min(to - from, out.length - outLength);
+                buffer.get(from, out, outLength, length);
+                outLength += length;
+                from += length;
+            }
+        }
+
+        private void emitByte(OutputStream target, byte b) throws IOException {
+            if (outLength == out.length) {
+                target.write(out, 0, outLength);
+                outLength = 0;
+            }
+            out[outLength++] = b;
+        }
+    }
+
+    /**
+     * Número decimal (signo, parte entera, fracción y exponente opcionales) leído de los
+     * bytes del campo, o NaN si no lo es.
+     */
+    private static double parseNumber(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) i++;
+        boolean negative = from < to && buffer.get(from) == '-';
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        for (; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c >= '0' && c <= '9') {
+                if (digits >= 18) return Double.NaN; // fuera de la precisión de long
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+                if (fraction) scale--;
+                anyDigit = true;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) return Double.NaN;
+
+        if (i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            int exponent = 0;
+            boolean negativeExponent = false;
+            i++;
+            if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) negativeExponent = buffer.get(i++) == '-';
+            int start = i;
+            for (; i < to && buffer.get(i) >= '0' && buffer.get(i) <= '9' && exponent < 1000; i++) {
+                exponent = exponent * 10 + (buffer.get(i) - '0');
+            }
+            if (i == start) return Double.NaN;
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != to) return Double.NaN;
+
+        double value = scale == 0 ? mantissa : mantissa * Math.pow(10, scale);
+        return negative ? -value : value;
+    }
+
+    // --- ORÍGENES DE DATOS ---
+
+    /** Ventana deslizante sobre el contenido del reporte. */
+    private interface Source extends Closeable {
+
+        /** Ventana actual (posiciones absolutas desde 0 hasta limit). */
+        ByteBuffer window();
+
+        /** Indica si la ventana actual llega al final del archivo. */
+        boolean atEnd();
+
+        /** Avanza para que la nueva ventana empiece en {@code keepFrom} de la actual. */
+        void advance(int keepFrom) throws IOException;
+    }
+
+    /** Archivo sin comprimir: ventanas mapeadas con {@link FileChannel#map}. */
+    private static final class MappedSource implements Source {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long windowSize;
+        private long offset;
+        private ByteBuffer window;
+
+        MappedSource(FileChannel channel, long windowSize) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.windowSize = windowSize;
+            map(0, windowSize);
+        }
+
+        private void map(long from, long length) throws IOException {
+            offset = from;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(length, size - from));
+        }
+
+        @Override
+        public ByteBuffer window() {
+            return window;
+        }
+
+        @Override
+        public boolean atEnd() {
+            return offset + window.limit() >= size;
+        }
+
+        @Override
+        public void advance(int keepFrom) throws IOException {
+            long length = windowSize;
+            if (keepFrom == 0) {
+                // Una sola fila ocupa toda la ventana: se amplía
+                if (window.limit() >= MAX_ROW_BYTES) throw new IOException("Fila demasiado larga en el reporte");
+                length = Math.max((long) window.limit() * 2, windowSize);
+            }
+            map(offset + keepFrom, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /** Archivo comprimido: buffer en el heap que se rellena desde la descompresión. */
+    private static final class StreamSource implements Source {
+
+        private final InputStream in;
+        private ByteBuffer window = ByteBuffer.allocate(STREAM_BUFFER).limit(0);
+        private boolean eof;
+
+        StreamSource(InputStream in) throws IOException {
+            this.in = in;
+            fill();
+        }
+
+        private void fill() throws IOException {
+            byte[] array = window.array();
+            int length = window.limit();
+            while (length < array.length && !eof) {
+                int n = in.read(array, length, array.length - length);
+                if (n < 0) eof = true;
+                else length += n;
+            }
+            window.limit(length);
+        }
+
+        @Override
+        public ByteBuffer window() {
+            return window;
+        }
+
+        @Override
+        public boolean atEnd() {
+            return eof;
+        }
+
+        @Override
+        public void advance(int keepFrom) throws IOException {
+            byte[] array = window.array();
+            int remaining = window.limit() - keepFrom;
+            if (keepFrom == 0) {
+                if (array.length >= MAX_ROW_BYTES) throw new IOException("Fila demasiado larga en el reporte");
+                window = ByteBuffer.wrap(Arrays.copyOf(array, array.length * 2)).limit(remaining);
+            } else {
+                System.arraycopy(array, keepFrom, array, 0, remaining);
+                window.limit(remaining);
+            }
+            fill();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
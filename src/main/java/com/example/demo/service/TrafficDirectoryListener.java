@@ -0,0 +1,47 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Componente que mantiene estado derivado del directorio de tráfico y recibe los
+ * cambios detectados por {@link TrafficDirectoryWatcher}.
+ * * Los nombres llegan sin filtrar (PCAP y CSV); cada implementación ignora los que
+ * no le corresponden.
+ */
+public interface TrafficDirectoryListener {
+
+    /**
+     * Aplica un lote de cambios ya consolidado.
+     * @param present Archivos creados, renombrados o modificados que existen en disco.
+     * @param gone Archivos eliminados o renombrados que ya no existen.
+     */
+    void applyChanges(Collection<String> present, Collection<String> gone);
+
+    /**
+     * Reconciliación completa contra el contenido actual del directorio. Se invoca si la
+     * cola de eventos se desborda, en modo de sondeo y, salvo que {@link #initialResync()}
+     * la omita, al arrancar la vigilancia.
+     */
+    void resync() throws IOException;
+
+    /**
+     * Reconciliación al arrancar la vigilancia, para cubrir los archivos que aparecieron
+     * entre la construcción del estado y el registro del watcher. Por defecto es una
+     * reconciliación completa; un componente que ya validó su estado contra el
+     * directorio puede omitirla.
+     */
+    default void initialResync() throws IOException {
+        resync();
+    }
+
+    /**
+     * Reconciliación acotada a los archivos fechados en [from, to] y a los que no
+     * tienen fecha en el nombre (ver {@link TrafficLayout#covers}). Por defecto hace
+     * una reconciliación completa.
+     */
+    default void resync(LocalDate from, LocalDate to) throws IOException {
+        resync();
+    }
+}
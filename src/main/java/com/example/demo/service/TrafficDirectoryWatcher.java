@@ -0,0 +1,329 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Servicio TrafficDirectoryWatcher
+ * * Mantiene el índice de tráfico y el inventario de capturas sincronizados con el
+ * directorio sin re-escanear todo el contenido en cada cambio.
+ * * Utiliza un {@link WatchService} nativo (inotify en Linux) y, si no está disponible
+ * o el directorio aún no existe, recurre a un sondeo periódico. Los eventos se
+ * acumulan en una cola acotada que fusiona (coalesce) las notificaciones repetidas
+ * de un mismo archivo; un hilo aplicador consume la cola por lotes y traslada a cada
+ * {@link TrafficDirectoryListener} únicamente los archivos creados, modificados,
+ * eliminados o renombrados.
+ * * Con el layout particionado ({@link TrafficLayout}) se vigilan también los
+ * directorios de año, mes y día, registrando los nuevos conforme aparecen; el sondeo
+ * de respaldo revisa en cada ciclo solo la raíz y las particiones recientes.
+ */
+@Service
+public class TrafficDirectoryWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficDirectoryWatcher.class);
+
+    // --- CONFIGURACIÓN ---
+
+    /** Permite desactivar la actualización en vivo (el índice queda fijo tras el arranque) */
+    @Value("${traffic.watch.enabled:true}")
+    private boolean enabled;
+
+    /** Estrategia de vigilancia: auto (nativa con respaldo), native o poll */
+    @Value("${traffic.watch.mode:auto}")
+    private String mode;
+
+    /** Intervalo del sondeo de respaldo en milisegundos */
+    @Value("${traffic.watch.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    /** Número máximo de archivos distintos pendientes antes de forzar una reconciliación */
+    @Value("${traffic.watch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /** Ventana de espera para agrupar ráfagas de eventos en un solo lote */
+    @Value("${traffic.watch.debounce-ms:500}")
+    private long debounceMs;
+
+    /**
+     * En modo de sondeo con layout particionado, cada cuántos ciclos se reconcilia el
+     * árbol completo; en los demás solo la raíz y las particiones de ayer y hoy.
+     */
+    @Value("${traffic.watch.full-resync-every:12}")
+    private int fullResyncEvery;
+
+    // --- DEPENDENCIAS Y ESTADO ---
+
+    /** Componentes que derivan estado del directorio (índice de tráfico, inventario) */
+    private final List<TrafficDirectoryListener> listeners;
+
+    /** Ubicación de los archivos dentro de traffic.dir (plano o particionado por día) */
+    private final TrafficLayout layout;
+
+    /** * Cola acotada de nombres pendientes.
+     * Un LinkedHashSet fusiona eventos repetidos del mismo archivo conservando el orden de llegada.
+     */
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    /** Se activa cuando la cola se desborda o el kernel reporta OVERFLOW */
+    private boolean resyncRequested;
+
+    /** Reconciliación inicial pendiente ({@link TrafficDirectoryListener#initialResync()}) */
+    private boolean initialResyncRequested;
+
+    /** Reconciliación acotada a las particiones recientes (sondeo del layout particionado) */
+    private boolean recentResyncRequested;
+
+    private volatile boolean running;
+    private WatchService watchService;
+    private final List<Thread> threads = new ArrayList<>();
+
+    public TrafficDirectoryWatcher(List<TrafficDirectoryListener> listeners, TrafficLayout layout) {
+        this.listeners = listeners;
+        this.layout = layout;
+    }
+
+    // --- CICLO DE VIDA ---
+
+    /**
+     * Arranca la vigilancia del directorio de tráfico.
+     * * Tras registrar el watcher se solicita una reconciliación inicial para cubrir los
+     * archivos que pudieron aparecer entre la construcción del índice y el registro; cada
+     * componente decide si la necesita (el índice la omite si su checkpoint sigue vigente).
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+
+        Path dir = layout.root();
+        boolean nativeWatch = !"poll".equalsIgnoreCase(mode) && registerNative(dir);
+
+        if (nativeWatch) {
+            startThread("traffic-watcher", this::watchLoop);
+        } else {
+            if ("native".equalsIgnoreCase(mode)) {
+                log.warn("WatchService no disponible para {}; se usa sondeo periódico", dir);
+            }
+            startThread("traffic-poller", this::pollLoop);
+        }
+        startThread("traffic-watch-applier", this::applyLoop);
+
+        synchronized (pending) {
+            initialResyncRequested = true;
+            pending.notifyAll();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (watchService != null) {
+            try { watchService.close(); } catch (IOException ignored) {}
+        }
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void startThread(String name, Runnable task) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        threads.add(t);
+        t.start();
+    }
+
+    private boolean registerNative(Path dir) {
+        if (!Files.isDirectory(dir)) return false;
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            register(dir);
+            for (Path partition : layout.directories()) register(partition);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("No se pudo registrar WatchService en {}: {}", dir, e.getMessage());
+            watchService = null;
+            return false;
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        // MODIFY refleja el crecimiento de un PCAP mientras se captura
+        dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    }
+
+    /**
+     * Registra un directorio de partición recién creado y los que contenga. Los archivos
+     * que llegaron antes del registro se recuperan con una reconciliación.
+     */
+    private void registerTree(Path dir) {
+        try (Stream<Path> stream = Files.walk(dir, 2)) {
+            for (Path p : (Iterable<Path>) stream::iterator) {
+                if (Files.isDirectory(p)) register(p);
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo vigilar la partición {}: {}", dir, e.getMessage());
+        }
+        requestResync();
+    }
+
+    // --- PRODUCTORES DE EVENTOS ---
+
+    /**
+     * Bucle del WatchService: traduce los eventos del kernel a nombres pendientes.
+     * * Los renombrados llegan como DELETE + CREATE, por lo que no requieren tratamiento especial.
+     */
+    private void watchLoop() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path watched = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    requestResync();
+                    continue;
+                }
+                // Un archivo comprimido (o descomprimido) cambia de nombre en disco pero no
+                // de nombre lógico: la existencia se resuelve al aplicar el lote
+                String name = TrafficLayout.logicalName(event.context().toString());
+                if (name.endsWith(".csv") || name.endsWith(".pcap")) {
+                    enqueue(name);
+                } else if (layout.partitioned() && event.kind() == ENTRY_CREATE
+                        && Files.isDirectory(watched.resolve(name))) {
+                    registerTree(watched.resolve(name));
+                }
+            }
+
+            if (!key.reset()) {
+                if (!watched.equals(layout.root())) {
+                    // Partición eliminada: sus archivos desaparecieron del árbol
+                    requestResync();
+                    continue;
+                }
+                // El directorio fue eliminado o dejó de ser accesible: se pasa a sondeo
+                log.warn("El directorio {} dejó de estar vigilado; se usa sondeo periódico", watched);
+                requestResync();
+                pollLoop();
+                return;
+            }
+        }
+    }
+
+    /** Modo de respaldo: reconciliación periódica (solo se parsean los archivos nuevos). */
+    private void pollLoop() {
+        long ticks = 0;
+        while (running) {
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!layout.partitioned() || ++ticks % Math.max(fullResyncEvery, 1) == 0) {
+                requestResync();
+            } else {
+                synchronized (pending) {
+                    recentResyncRequested = true;
+                    pending.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void enqueue(String name) {
+        synchronized (pending) {
+            if (resyncRequested) return; // la reconciliación ya cubrirá este archivo
+
+            pending.add(name);
+            if (pending.size() > queueCapacity) {
+                // Cola desbordada: se descartan los nombres y se reconcilia el directorio completo
+                pending.clear();
+                resyncRequested = true;
+            }
+            pending.notifyAll();
+        }
+    }
+
+    private void requestResync() {
+        synchronized (pending) {
+            pending.clear();
+            resyncRequested = true;
+            pending.notifyAll();
+        }
+    }
+
+    // --- CONSUMIDOR ---
+
+    /**
+     * Bucle aplicador: espera eventos, deja pasar la ventana de debounce y aplica el
+     * lote acumulado. El estado final de cada archivo se decide consultando el disco,
+     * de modo que una secuencia CREATE → DELETE del mismo nombre se anula sola.
+     */
+    private void applyLoop() {
+        while (running) {
+            List<String> batch;
+            boolean resync;
+            try {
+                synchronized (pending) {
+                    while (pending.isEmpty() && !resyncRequested && !initialResyncRequested && !recentResyncRequested) {
+                        pending.wait();
+                    }
+                }
+                Thread.sleep(debounceMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            boolean initial;
+            boolean recent;
+            synchronized (pending) {
+                batch = new ArrayList<>(pending);
+                resync = resyncRequested;
+                initial = initialResyncRequested && !resync;
+                recent = recentResyncRequested && !resync;
+                pending.clear();
+                resyncRequested = false;
+                initialResyncRequested = false;
+                recentResyncRequested = false;
+            }
+
+            List<String> present = new ArrayList<>();
+            List<String> gone = new ArrayList<>();
+            if (!resync) {
+                for (String name : batch) {
+                    (Files.exists(layout.resolve(name)) ? present : gone).add(name);
+                }
+            }
+            LocalDate today = LocalDate.now();
+
+            for (TrafficDirectoryListener listener : listeners) {
+                try {
+                    if (resync) {
+                        listener.resync();
+                        continue;
+                    }
+                    // La reconciliación inicial puede omitirse: los eventos del lote se aplican igual
+                    if (initial) listener.initialResync();
+                    if (recent) listener.resync(today.minusDays(1), today);
+                    else if (!batch.isEmpty()) listener.applyChanges(present, gone);
+                } catch (Exception e) {
+                    log.warn("Error aplicando cambios del directorio en {}: {}",
+                            listener.getClass().getSimpleName(), e.getMessage());
+                }
+            }
+        }
+    }
+}
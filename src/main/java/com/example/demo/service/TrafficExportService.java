@@ -0,0 +1,273 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Servicio TrafficExportService
+ * * Exporta varios reportes en un ZIP escrito directamente sobre la respuesta, sin
+ * archivos temporales ni el archivo completo en memoria.
+ * * Un hilo lector por exportación lee los archivos por adelantado en un conjunto
+ * acotado de buffers ({@code traffic.export.read-ahead-chunks} × 64 KB) mientras el hilo
+ * de la petición comprime y escribe, de modo que la lectura del disco se solapa con la
+ * compresión y el envío sin que el heap crezca con el tamaño de la exportación.
+ * * Los archivos ya comprimidos por la compactación (".gz") se guardan sin volver a
+ * comprimir (método STORED) con su nombre en disco; el resto se comprime con DEFLATE.
+ */
+@Service
+public class TrafficExportService {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final TrafficLayout layout;
+
+    /** Número máximo de archivos por exportación */
+    @Value("${traffic.export.max-files:20000}")
+    private int maxFiles = 20000;
+
+    /** Buffers de lectura adelantada por exportación */
+    @Value("${traffic.export.read-ahead-chunks:8}")
+    private int readAheadChunks = 8;
+
+    /** Nivel de compresión de las entradas DEFLATE */
+    @Value("${traffic.export.level:6}")
+    private int level = 6;
+
+    /** Exportaciones simultáneas permitidas */
+    private final Semaphore permits;
+
+    private final ExecutorService readers;
+
+    /** Archivo a exportar: nombre lógico y ubicación en disco. */
+    public record ExportFile(String name, Path path) {}
+
+    /** Elemento de la cola entre el lector y el escritor. */
+    private record Chunk(Kind kind, byte[] buffer, int length, ZipEntry entry, IOException error) {}
+
+    private enum Kind { ENTRY, SKIP, DATA, END, ERROR }
+
+    public TrafficExportService(TrafficLayout layout,
+                                @Value("${traffic.export.max-concurrent:2}") int maxConcurrent) {
+        this.layout = layout;
+        this.permits = new Semaphore(Math.max(maxConcurrent, 1));
+
+        AtomicInteger counter = new AtomicInteger();
+        this.readers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "zip-export-reader-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // --- SELECCIÓN DE ARCHIVOS ---
+
+    /**
+     * Reportes CSV fechados dentro de [from, to], ordenados por nombre (cronológico).
+     * @throws IllegalArgumentException Si el rango es inválido o excede el máximo de archivos.
+     */
+    public List<ExportFile> byRange(LocalDate from, LocalDate to) throws IOException {
+        if (from.isAfter(to)) throw new IllegalArgumentException("'from' es posterior a 'to'");
+
+        List<ExportFile> files = new ArrayList<>();
+        for (Map.Entry<String, Path> e : layout.locate(from, to).entrySet()) {
+            String name = e.getKey();
+            if (name.endsWith(".csv") && TrafficLayout.dateOf(name) != null) {
+                files.add(new ExportFile(name, e.getValue()));
+            }
+        }
+        files.sort(Comparator.comparing(ExportFile::name));
+        checkSize(files.size());
+        return files;
+    }
+
+    /**
+     * Archivos indicados por nombre (CSV o PCAP), sin duplicados y en el orden recibido.
+     * @throws IllegalArgumentException Si algún nombre no es válido o se excede el máximo.
+     * @throws NoSuchFileException Si algún archivo no existe.
+     */
+    public List<ExportFile> byNames(Collection<String> names) throws NoSuchFileException {
+        checkSize(names.size());
+
+        List<ExportFile> files = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            if (name == null || name.isBlank() || name.contains("..") || name.contains("/") || name.contains("\\")
+                    || !(name.endsWith(".csv") || name.endsWith(".pcap"))) {
+                throw new IllegalArgumentException("Nombre de archivo inválido: " + name);
+            }
+            Path path = layout.resolve(name);
+            if (!Files.isRegularFile(path)) throw new NoSuchFileException(name);
+            files.add(new ExportFile(name, path));
+        }
+        return files;
+    }
+
+    private void checkSize(int count) {
+        if (count > maxFiles) {
+            throw new IllegalArgumentException("La exportación excede el máximo de " + maxFiles + " archivos");
+        }
+    }
+
+    // --- ESCRITURA ---
+
+    /**
+     * Reserva una de las exportaciones simultáneas permitidas.
+     * @return false si ya se alcanzó el máximo (la petición debe rechazarse).
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /** Libera la reserva obtenida con {@link #tryAcquire()}. */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Escribe el ZIP con los archivos indicados. Un archivo eliminado durante la
+     * exportación se omite.
+     * @param files Archivos a incluir.
+     * @param out Flujo de la respuesta (no se cierra).
+     */
+    public void write(List<ExportFile> files, OutputStream out) throws IOException {
+        int chunks = Math.max(readAheadChunks, 2);
+        BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(chunks);
+        for (int i = 0; i < chunks; i++) free.add(new byte[CHUNK_SIZE]);
+        // Capacidad de sobra para los marcadores: el límite real lo imponen los buffers
+        BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(chunks + 4);
+
+        Future<?> reader = readers.submit(() -> produce(files, free, filled));
+        try {
+            BufferedOutputStream buffered = new BufferedOutputStream(out, CHUNK_SIZE);
+            ZipOutputStream zip = new ZipOutputStream(buffered);
+            zip.setLevel(level);
+
+            for (int i = 0; i < files.size(); i++) {
+                Chunk header = filled.take();
+                if (header.kind() == Kind.ERROR) throw header.error();
+                if (header.kind() == Kind.SKIP) continue;
+
+                zip.putNextEntry(header.entry());
+                for (Chunk c = filled.take(); c.kind() != Kind.END; c = filled.take()) {
+                    if (c.kind() == Kind.ERROR) throw c.error();
+                    zip.write(c.buffer(), 0, c.length());
+                    free.put(c.buffer());
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+            buffered.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Exportación interrumpida");
+        } finally {
+            // Si el cliente se desconectó, el lector puede estar esperando un buffer libre
+            reader.cancel(true);
+        }
+    }
+
+    /**
+     * Hilo lector: encabezado de cada entrada seguido de sus fragmentos.
+     * * El archivo se abre antes de anunciar la entrada, así que uno eliminado o
+     * compactado entre la selección y la lectura se omite en lugar de abortar el ZIP. Una
+     * vez abierto, el canal conserva el contenido aunque la compactación lo reemplace.
+     */
+    private void produce(List<ExportFile> files, BlockingQueue<byte[]> free, BlockingQueue<Chunk> filled) {
+        try {
+            for (ExportFile file : files) {
+                FileChannel channel;
+                try {
+                    channel = FileChannel.open(file.path(), StandardOpenOption.READ);
+                } catch (NoSuchFileException e) {
+                    filled.put(new Chunk(Kind.SKIP, null, 0, null, null));
+                    continue;
+                }
+                try (channel) {
+                    ZipEntry entry;
+                    try {
+                        entry = entryFor(file, channel);
+                    } catch (NoSuchFileException e) {
+                        filled.put(new Chunk(Kind.SKIP, null, 0, null, null));
+                        continue;
+                    }
+                    filled.put(new Chunk(Kind.ENTRY, null, 0, entry, null));
+
+                    // Las entradas STORED se verifican contra la primera lectura: si el archivo
+                    // cambió entre ambas, la entrada quedaría corrupta
+                    CRC32 crc = entry.getMethod() == ZipEntry.STORED ? new CRC32() : null;
+                    long size = 0;
+                    InputStream in = Channels.newInputStream(channel.position(0));
+                    while (true) {
+                        byte[] buffer = free.take();
+                        int n = in.readNBytes(buffer, 0, buffer.length);
+                        if (n == 0) {
+                            free.put(buffer);
+                            break;
+                        }
+                        if (crc != null) crc.update(buffer, 0, n);
+                        size += n;
+                        filled.put(new Chunk(Kind.DATA, buffer, n, null, null));
+                    }
+                    if (crc != null && (size != entry.getSize() || crc.getValue() != entry.getCrc())) {
+                        throw new IOException("El archivo " + file.name() + " cambió durante la exportación");
+                    }
+                }
+                filled.put(new Chunk(Kind.END, null, 0, null, null));
+            }
+        } catch (InterruptedException e) {
+            // exportación cancelada
+        } catch (IOException e) {
+            try {
+                filled.put(new Chunk(Kind.ERROR, null, 0, null, e));
+            } catch (InterruptedException ignored) {
+                // exportación cancelada
+            }
+        }
+    }
+
+    /**
+     * Entrada del ZIP para un archivo. Los comprimidos van en modo STORED, que exige
+     * conocer su tamaño y CRC antes de escribirlos: se calculan con una primera lectura
+     * del canal ya abierto en el hilo lector.
+     */
+    private static ZipEntry entryFor(ExportFile file, FileChannel channel) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file.path(), BasicFileAttributes.class);
+        boolean compressed = TrafficLayout.isCompressed(file.path());
+
+        ZipEntry entry = new ZipEntry(compressed ? file.path().getFileName().toString() : file.name());
+        entry.setLastModifiedTime(attrs.lastModifiedTime());
+        if (!compressed) return entry;
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        for (long position = 0; ; ) {
+            int n = channel.read(buffer.clear(), position);
+            if (n < 0) break;
+            crc.update(buffer.flip());
+            position += n;
+            size += n;
+        }
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+}
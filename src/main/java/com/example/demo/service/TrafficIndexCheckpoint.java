@@ -0,0 +1,141 @@
+package com.example.demo.service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint binario del índice de tráfico.
+ * * Persiste en disco los registros por archivo ya parseados (nombre, instante, input, output)
+ * para que el arranque no tenga que volver a aplicar la expresión regular sobre todo
+ * el directorio.
+ *
+ * <p>Formato (big-endian, {@link DataOutputStream}):</p>
+ * <pre>
+ *   int    MAGIC ("TIDX")
+ *   short  VERSION
+ *   UTF    huella del directorio (ruta absoluta)
+ *   long   mtime del directorio en el último listado completo (marca de agua)
+ *   int    número de registros N
+ *   N x { UTF nombre, long epochSecond (hora local del nombre), double input, double output }
+ *   long   CRC32 de todo lo anterior
+ * </pre>
+ */
+final class TrafficIndexCheckpoint {
+
+    private static final int MAGIC = 0x54494458;
+    /** 3: el índice acepta nombres con "_(X_minutes)"; un checkpoint anterior los omitía */
+    private static final short VERSION = 3;
+
+    /** Ruta absoluta del directorio indexado; un checkpoint de otro directorio se descarta */
+    final String fingerprint;
+
+    /** mtime del directorio observado antes del último listado completo */
+    final long dirMtime;
+
+    // --- REGISTROS (ARREGLOS PARALELOS) ---
+
+    final String[] names;
+    final long[] epochSeconds;
+    final double[] inputs;
+    final double[] outputs;
+
+    TrafficIndexCheckpoint(String fingerprint, long dirMtime,
+                           String[] names, long[] epochSeconds, double[] inputs, double[] outputs) {
+        this.fingerprint = fingerprint;
+        this.dirMtime = dirMtime;
+        this.names = names;
+        this.epochSeconds = epochSeconds;
+        this.inputs = inputs;
+        this.outputs = outputs;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    // --- LECTURA / ESCRITURA ---
+
+    /**
+     * Lee un checkpoint desde disco.
+     * @param file Archivo del checkpoint.
+     * @return El checkpoint leído, o null si el archivo no existe.
+     * @throws IOException Si el archivo está corrupto, truncado o tiene otra versión de formato.
+     */
+    static TrafficIndexCheckpoint read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+
+        CRC32 crc = new CRC32();
+        try (DataInputStream raw = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+
+            if (in.readInt() != MAGIC) throw new IOException("Cabecera de checkpoint inválida");
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException("Versión de checkpoint no soportada: " + version);
+
+            String fingerprint = in.readUTF();
+            long dirMtime = in.readLong();
+            int n = in.readInt();
+            if (n < 0) throw new IOException("Número de registros inválido: " + n);
+
+            String[] names = new String[n];
+            long[] seconds = new long[n];
+            double[] inputs = new double[n];
+            double[] outputs = new double[n];
+            for (int i = 0; i < n; i++) {
+                names[i] = in.readUTF();
+                seconds[i] = in.readLong();
+                inputs[i] = in.readDouble();
+                outputs[i] = in.readDouble();
+            }
+
+            long expected = crc.getValue();
+            if (raw.readLong() != expected) throw new IOException("CRC de checkpoint no coincide");
+
+            return new TrafficIndexCheckpoint(fingerprint, dirMtime, names, seconds, inputs, outputs);
+        } catch (EOFException e) {
+            throw new IOException("Checkpoint truncado", e);
+        }
+    }
+
+    /**
+     * Escribe el checkpoint de forma atómica (archivo temporal + rename) para que un
+     * apagado a mitad de escritura nunca deje un archivo parcial en su lugar.
+     * @param file Destino del checkpoint.
+     */
+    void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream raw = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeLong(dirMtime);
+                out.writeInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeUTF(names[i]);
+                    out.writeLong(epochSeconds[i]);
+                    out.writeDouble(inputs[i]);
+                    out.writeDouble(outputs[i]);
+                }
+                // El CRC se escribe directamente, sin pasar por el stream verificado
+                raw.writeLong(crc.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Versión inmutable y consistente del índice de tráfico.
+ * * Agrupa todas las estructuras de consulta generadas por un mismo lote de cambios.
+ * Se publica mediante una referencia atómica: las consultas toman la instancia vigente
+ * una sola vez y trabajan sobre ella sin bloqueos, mientras los escritores preparan la
+ * siguiente versión por separado (copy-on-write).
+ */
+final class TrafficIndexSnapshot {
+
+    static final TrafficIndexSnapshot EMPTY = new TrafficIndexSnapshot(0, Instant.EPOCH,
+            Arrays.stream(TrafficResolution.values())
+                    .map(TrafficColumnStore::empty)
+                    .toArray(TrafficColumnStore[]::new),
+            TrafficCaptureLog.EMPTY, TrafficVolumeSketches.EMPTY);
+
+    /** Número de versión, estrictamente creciente con cada publicación */
+    final long version;
+
+    /** Momento en que se publicó esta versión */
+    final Instant publishedAt;
+
+    /** Rollups por resolución, indexados por {@link TrafficResolution#ordinal()} */
+    private final TrafficColumnStore[] rollups;
+
+    /** Detalle por captura, ordenado por tiempo */
+    final TrafficCaptureLog captures;
+
+    /** Bosquejos diarios del volumen por captura */
+    final TrafficVolumeSketches volumes;
+
+    TrafficIndexSnapshot(long version, Instant publishedAt, TrafficColumnStore[] rollups,
+                         TrafficCaptureLog captures, TrafficVolumeSketches volumes) {
+        this.version = version;
+        this.publishedAt = publishedAt;
+        this.rollups = rollups;
+        this.captures = captures;
+        this.volumes = volumes;
+    }
+
+    /** Métricas agregadas a la resolución indicada. */
+    TrafficColumnStore rollup(TrafficResolution resolution) {
+        return rollups[resolution.ordinal()];
+    }
+
+    /** Métricas por día (atajo de {@code rollup(DAY)}). */
+    TrafficColumnStore days() {
+        return rollup(TrafficResolution.DAY);
+    }
+}
@@ -0,0 +1,678 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.PcapInfo;
+import com.example.demo.domain.PcapPage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servicio TrafficInventoryService
+ * * Mantiene en memoria el inventario de capturas (.pcap) y reportes (.csv) del
+ * directorio de tráfico, con sus atributos (tamaño y fecha de modificación) ya leídos.
+ * * El directorio se recorre una sola vez y después se actualiza de forma incremental
+ * con los eventos de {@link TrafficDirectoryWatcher}; la relación PCAP → CSV se
+ * resuelve con una búsqueda por prefijo sobre los nombres ordenados, en lugar de
+ * listar el directorio por cada PCAP.
+ * * El estado de procesamiento de cada PCAP ("true", "pending" o "false") también se
+ * mantiene aquí y no se calcula en cada listado: se actualiza cuando aparece o
+ * desaparece su CSV o cambia el PCAP, y un rastreador en segundo plano marca como
+ * "false" los PCAP cuyo plazo vence sin CSV (opcionalmente encolándolos para
+ * re-procesamiento).
+ */
+@Service
+public class TrafficInventoryService implements TrafficDirectoryListener {
+
+    /** Minutos de captura embebidos en el nombre: "nombre_(X_minutes).pcap" */
+    private static final Pattern MINUTES_PATTERN = Pattern.compile("\\((\\d+(?:\\.\\d+)?)_minutes\\)");
+
+    /** Estados de procesamiento de un PCAP, guardados como un byte en su entrada */
+    private static final byte PENDING = 0;
+    private static final byte DONE = 1;
+    private static final byte FAILED = 2;
+
+    /** Valor expuesto de cada estado (indexado por el byte) */
+    private static final String[] STATUS_NAMES = {"pending", "true", "false"};
+
+    /** Plazo de los PCAP sin duración en el nombre: permanecen "pending" */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficInventoryService.class);
+
+    /** Ubicación de los archivos dentro de traffic.dir (plano o particionado por día) */
+    private final TrafficLayout layout;
+
+    /** Cola de re-procesamiento, para encolar los PCAP que vencen sin CSV */
+    private final PcapReprocessService reprocess;
+
+    /**
+     * Sin vigilancia del directorio no llegan eventos: en ese caso cada consulta
+     * compara la marca de agua del árbol y re-escanea si cambió.
+     */
+    @Value("${traffic.watch.enabled:true}")
+    private boolean watchEnabled = true;
+
+    /** Intervalo del rastreador que vence los plazos de los PCAP pendientes */
+    @Value("${traffic.status.check-interval-ms:5000}")
+    private long checkIntervalMs = 5000;
+
+    /** Encolar automáticamente el re-procesamiento de los PCAP que vencen sin CSV */
+    @Value("${traffic.status.auto-repair:false}")
+    private boolean autoRepair;
+
+    private ScheduledExecutorService tracker;
+
+    // --- ESTADO (LADO ESCRITOR, PROTEGIDO POR EL MONITOR) ---
+
+    /** Atributos cacheados por nombre de archivo (.pcap y .csv) */
+    private final Map<String, FileEntry> files = new HashMap<>();
+
+    /** Nombres de los CSV en orden lexicográfico (vínculo PCAP → CSV) */
+    private final NavigableSet<String> csvNames = new TreeSet<>();
+
+    /** PCAP por nombre base (sin ".pcap"), para ubicar los afectados por un CSV */
+    private final NavigableMap<String, String> pcapsByBase = new TreeMap<>();
+
+    /** Plazos de los PCAP pendientes en orden de vencimiento, uno por PCAP */
+    private final NavigableSet<Deadline> deadlines = new TreeSet<>();
+
+    /** Plazo en cola de cada PCAP, para reemplazarlo cuando cambia (MODIFY, vínculo) */
+    private final Map<String, Deadline> queuedDeadlines = new HashMap<>();
+
+    /**
+     * PCAP que pasaron a "false" al recalcular su estado (ya vencidos al aparecer o al
+     * perder su CSV) y no por el rastreador; este los encola en el siguiente ciclo
+     * junto con los que vence él mismo. Solo se llena con traffic.status.auto-repair.
+     */
+    private final List<String> failedOnTrack = new ArrayList<>();
+
+    private boolean scanned;
+
+    /** Marca de agua del árbol ({@link TrafficLayout#fingerprint()}) en el último escaneo completo */
+    private volatile long scannedDirMtime = -1;
+
+    /** Vista ordenada para las consultas; se regenera bajo demanda tras cada cambio */
+    private volatile Inventory view;
+
+    public TrafficInventoryService(TrafficLayout layout, PcapReprocessService reprocess) {
+        this.layout = layout;
+        this.reprocess = reprocess;
+    }
+
+    @PostConstruct
+    public void start() {
+        tracker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pcap-status-tracker");
+            t.setDaemon(true);
+            return t;
+        });
+        tracker.scheduleWithFixedDelay(this::expireDeadlines, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tracker != null) tracker.shutdownNow();
+    }
+
+    /**
+     * Metadatos de un archivo del directorio de tráfico.
+     * * En los PCAP incluye su estado de procesamiento: el CSV vinculado (la misma
+     * instancia de String que la entrada del CSV), el estado y el plazo en epoch-millis
+     * para que aparezca el CSV. En los CSV esos campos no se usan.
+     */
+    private record FileEntry(String name, long size, Instant lastModified, String csv, byte status, long deadline) {
+
+        FileEntry(String name, long size, Instant lastModified) {
+            this(name, size, lastModified, null, PENDING, NO_DEADLINE);
+        }
+
+        FileEntry withStatus(String csv, byte status, long deadline) {
+            return new FileEntry(name, size, lastModified, csv, status, deadline);
+        }
+    }
+
+    /** Plazo de un PCAP pendiente; el nombre desempata los plazos iguales. */
+    private record Deadline(long at, String pcap) implements Comparable<Deadline> {
+        @Override
+        public int compareTo(Deadline o) {
+            int c = Long.compare(at, o.at);
+            return c != 0 ? c : pcap.compareTo(o.pcap);
+        }
+    }
+
+    /** Criterios de ordenamiento del inventario; el nombre desempata para que el orden sea total. */
+    public enum SortKey {
+
+        /** Fecha de modificación */
+        MTIME(Comparator.comparing(FileEntry::lastModified).thenComparing(FileEntry::name)),
+
+        /** Nombre del archivo */
+        NAME(Comparator.comparing(FileEntry::name)),
+
+        /** Tamaño en bytes */
+        SIZE(Comparator.comparingLong(FileEntry::size).thenComparing(FileEntry::name));
+
+        private final Comparator<FileEntry> order;
+
+        SortKey(Comparator<FileEntry> order) {
+            this.order = order;
+        }
+    }
+
+    /**
+     * Consulta sobre el inventario. Los filtros nulos no se aplican.
+     * @param status Estado del CSV: "true", "pending" o "false".
+     * @param from Fecha mínima de modificación (inclusive, zona del servidor).
+     * @param to Fecha máxima de modificación (inclusive, zona del servidor).
+     * @param prefix Prefijo del nombre del archivo.
+     * @param minSize Tamaño mínimo en bytes.
+     * @param sort Criterio de ordenamiento.
+     * @param descending Orden descendente.
+     * @param cursor Cursor devuelto por la página anterior.
+     * @param limit Número máximo de elementos.
+     */
+    public record InventoryQuery(String status, LocalDate from, LocalDate to, String prefix, Long minSize,
+                                 SortKey sort, boolean descending, String cursor, int limit) {
+
+        /** Listado completo con el orden original: del más reciente al más antiguo. */
+        public static final InventoryQuery ALL =
+                new InventoryQuery(null, null, null, null, null, SortKey.MTIME, true, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Vista inmutable del inventario.
+     * * Cada criterio de ordenamiento se materializa la primera vez que se usa y se
+     * conserva hasta el siguiente cambio del directorio.
+     */
+    private static final class Inventory {
+
+        private final List<FileEntry> pcaps;
+        private final List<FileEntry> csvs;
+
+        /** Elementos listados (PCAPs, o CSVs en modo fallback) ordenados por cada SortKey */
+        private final AtomicReferenceArray<List<FileEntry>> sorted =
+                new AtomicReferenceArray<>(SortKey.values().length);
+
+        private Inventory(List<FileEntry> pcaps, List<FileEntry> csvs) {
+            this.pcaps = pcaps;
+            this.csvs = csvs;
+        }
+
+        static Inventory of(Collection<FileEntry> entries) {
+            List<FileEntry> pcaps = new ArrayList<>();
+            List<FileEntry> csvs = new ArrayList<>();
+            for (FileEntry e : entries) {
+                if (isPcap(e.name())) pcaps.add(e);
+                else csvs.add(e);
+            }
+            return new Inventory(pcaps, csvs);
+        }
+
+        /** Modo fallback: no hay PCAPs y se listan los CSV directamente. */
+        boolean csvOnly() {
+            return pcaps.isEmpty();
+        }
+
+        /** Elementos listados en orden ascendente según el criterio. */
+        List<FileEntry> sorted(SortKey key) {
+            List<FileEntry> list = sorted.get(key.ordinal());
+            if (list == null) {
+                List<FileEntry> copy = new ArrayList<>(csvOnly() ? csvs : pcaps);
+                copy.sort(key.order);
+                list = List.copyOf(copy);
+                sorted.compareAndSet(key.ordinal(), null, list);
+            }
+            return list;
+        }
+
+        /** Describe un elemento con el estado ya calculado; no consulta el disco ni otros archivos. */
+        PcapInfo describe(FileEntry e) {
+            if (csvOnly()) return new PcapInfo(e.name(), e.lastModified(), e.size(), "true", e.name());
+            return new PcapInfo(e.name(), e.lastModified(), e.size(), STATUS_NAMES[e.status()], e.csv());
+        }
+    }
+
+    // --- CONSULTAS ---
+
+    /**
+     * Lista el contenido del directorio de tráfico.
+     * * Si hay archivos .pcap se listan con su estado de procesamiento; si no hay
+     * ninguno se listan los .csv directamente (modo fallback), con estado "true" y
+     * csvFile apuntando al mismo archivo.
+     *
+     * @return Archivos ordenados del más reciente al más antiguo.
+     * @throws IOException Si el directorio no se puede leer.
+     */
+    public List<PcapInfo> listing() throws IOException {
+        return page(InventoryQuery.ALL).getItems();
+    }
+
+    /**
+     * Página del inventario según filtros, orden y cursor.
+     * * Los filtros que coinciden con el criterio de orden (fechas con MTIME, prefijo
+     * con NAME, tamaño mínimo con SIZE) acotan por búsqueda binaria el tramo a recorrer;
+     * el cursor se ubica también por búsqueda binaria, así que una página cuesta
+     * O(log n + elementos recorridos).
+     *
+     * @param query Filtros, orden, cursor y tamaño de página.
+     * @return Página con el cursor de la siguiente (null si se recorrió todo).
+     * @throws IOException Si el directorio no se puede leer.
+     * @throws IllegalArgumentException Si el cursor no es válido para la consulta.
+     */
+    public PcapPage page(InventoryQuery query) throws IOException {
+        Inventory inventory = inventory();
+        List<FileEntry> sorted = inventory.sorted(query.sort());
+        Comparator<FileEntry> order = query.sort().order;
+        ZoneId zone = ZoneId.systemDefault();
+
+        // Tramo [lo, hi) del arreglo ascendente que puede cumplir los filtros
+        int lo = 0;
+        int hi = sorted.size();
+        switch (query.sort()) {
+            case MTIME -> {
+                if (query.from() != null) {
+                    lo = lowerBound(sorted, probe("", 0, query.from().atStartOfDay(zone).toInstant()), order);
+                }
+                if (query.to() != null) {
+                    hi = lowerBound(sorted, probe("", 0, query.to().plusDays(1).atStartOfDay(zone).toInstant()), order);
+                }
+            }
+            case NAME -> {
+                if (query.prefix() != null) {
+                    lo = lowerBound(sorted, probe(query.prefix(), 0, Instant.EPOCH), order);
+                    hi = lowerBound(sorted, probe(query.prefix() + Character.MAX_VALUE, 0, Instant.EPOCH), order);
+                }
+            }
+            case SIZE -> {
+                if (query.minSize() != null) {
+                    lo = lowerBound(sorted, probe("", query.minSize(), Instant.EPOCH), order);
+                }
+            }
+        }
+
+        if (query.cursor() != null) {
+            FileEntry last = decodeCursor(query);
+            int i = Collections.binarySearch(sorted, last, order);
+            int insertion = i >= 0 ? i : -i - 1;
+            if (query.descending()) hi = Math.min(hi, insertion);
+            else lo = Math.max(lo, i >= 0 ? i + 1 : insertion);
+        }
+
+        Instant fromInstant = query.from() == null ? null : query.from().atStartOfDay(zone).toInstant();
+        Instant toInstant = query.to() == null ? null : query.to().plusDays(1).atStartOfDay(zone).toInstant();
+
+        List<PcapInfo> items = new ArrayList<>();
+        FileEntry lastTaken = null;
+        int remaining = hi - lo;
+        for (int k = 0; k < remaining && items.size() < query.limit(); k++) {
+            FileEntry e = sorted.get(query.descending() ? hi - 1 - k : lo + k);
+
+            if (fromInstant != null && e.lastModified().isBefore(fromInstant)) continue;
+            if (toInstant != null && !e.lastModified().isBefore(toInstant)) continue;
+            if (query.prefix() != null && !e.name().startsWith(query.prefix())) continue;
+            if (query.minSize() != null && e.size() < query.minSize()) continue;
+
+            PcapInfo info = inventory.describe(e);
+            if (query.status() != null && !query.status().equals(info.getCsvStatus())) continue;
+
+            items.add(info);
+            lastTaken = e;
+        }
+
+        boolean more = items.size() == query.limit() && lastTaken != null
+                && lastTaken != sorted.get(query.descending() ? lo : hi - 1);
+        return new PcapPage(items, more ? encodeCursor(query, lastTaken) : null);
+    }
+
+    private static FileEntry probe(String name, long size, Instant lastModified) {
+        return new FileEntry(name, size, lastModified);
+    }
+
+    /** Primera posición cuyo elemento es mayor o igual que {@code key}. */
+    private static int lowerBound(List<FileEntry> sorted, FileEntry key, Comparator<FileEntry> order) {
+        int i = Collections.binarySearch(sorted, key, order);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    // --- CURSORES ---
+
+    /*
+     * El cursor codifica (Base64 URL) el criterio y sentido del orden junto con la clave
+     * completa del último elemento entregado: "sort|a|d", epochSecond, nanos, tamaño y nombre.
+     */
+
+    private static String encodeCursor(InventoryQuery query, FileEntry last) {
+        String raw = String.join("\n",
+                query.sort().name(),
+                query.descending() ? "d" : "a",
+                Long.toString(last.lastModified().getEpochSecond()),
+                Integer.toString(last.lastModified().getNano()),
+                Long.toString(last.size()),
+                last.name());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FileEntry decodeCursor(InventoryQuery query) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(query.cursor()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 6);
+            if (parts.length != 6
+                    || !parts[0].equals(query.sort().name())
+                    || !parts[1].equals(query.descending() ? "d" : "a")) {
+                throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+            }
+            Instant lastModified = Instant.ofEpochSecond(Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+            return new FileEntry(parts[5], Long.parseLong(parts[4]), lastModified);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    private Inventory inventory() throws IOException {
+        Inventory current = view;
+        if (current != null && (watchEnabled || dirMtime() == scannedDirMtime)) return current;
+
+        synchronized (this) {
+            if (!scanned || (!watchEnabled && dirMtime() != scannedDirMtime)) rescan();
+            if (view == null) view = Inventory.of(files.values());
+            return view;
+        }
+    }
+
+    // --- ACTUALIZACIÓN ---
+
+    @Override
+    public synchronized void resync() throws IOException {
+        if (Files.isDirectory(layout.root())) rescan();
+    }
+
+    /** Re-lee solo los archivos cubiertos por el rango (raíz y particiones del rango). */
+    @Override
+    public synchronized void resync(LocalDate from, LocalDate to) throws IOException {
+        if (!scanned) {
+            resync();
+            return;
+        }
+
+        Map<String, Path> present = layout.locate(from, to);
+        List<String> removed = new ArrayList<>();
+        for (String name : files.keySet()) {
+            if (!present.containsKey(name) && TrafficLayout.covers(name, from, to)) removed.add(name);
+        }
+        removed.forEach(this::remove);
+
+        long now = System.currentTimeMillis();
+        present.forEach((name, path) -> {
+            if (!isTracked(name)) return;
+            FileEntry entry = read(name, path);
+            if (entry != null) put(entry, now);
+        });
+        view = null;
+    }
+
+    /**
+     * Actualiza solo los archivos afectados, releyendo sus atributos (un PCAP en curso
+     * cambia de tamaño con cada evento de modificación).
+     */
+    @Override
+    public synchronized void applyChanges(Collection<String> present, Collection<String> gone) {
+        if (!scanned) return; // el primer escaneo completo ya los verá
+
+        boolean changed = false;
+        for (String name : gone) {
+            changed |= remove(name);
+        }
+        long now = System.currentTimeMillis();
+        for (String name : present) {
+            if (!isTracked(name)) continue;
+
+            FileEntry entry = read(name, layout.resolve(name));
+            if (entry != null) put(entry, now);
+            else remove(name);
+            changed = true;
+        }
+        if (changed) view = null;
+    }
+
+    /** Recorre el árbol una sola vez (particiones en paralelo) leyendo los atributos de cada archivo. */
+    private void rescan() throws IOException {
+        long mtime = dirMtime();
+        // Estado anterior de los PCAP, para distinguir los que pasan a "false" en este
+        // escaneo (el primero no tiene estado anterior: no encola el histórico)
+        Map<String, FileEntry> previous = scanned ? new HashMap<>(files) : null;
+
+        List<FileEntry> fresh = new ArrayList<>();
+        for (Map.Entry<String, Path> e : layout.locate(null, null).entrySet()) {
+            if (!isTracked(e.getKey())) continue;
+
+            FileEntry entry = read(e.getKey(), e.getValue());
+            if (entry != null) fresh.add(entry);
+        }
+
+        files.clear();
+        csvNames.clear();
+        pcapsByBase.clear();
+        deadlines.clear();
+        queuedDeadlines.clear();
+
+        // Primero los CSV, para que cada PCAP se vincule una sola vez al agregarse
+        long now = System.currentTimeMillis();
+        for (FileEntry e : fresh) {
+            if (!isPcap(e.name())) {
+                files.put(e.name(), e);
+                csvNames.add(e.name());
+            }
+        }
+        for (FileEntry e : fresh) {
+            if (!isPcap(e.name())) continue;
+            pcapsByBase.put(baseOf(e.name()), e.name());
+            FileEntry before = previous == null ? null : previous.get(e.name());
+            files.put(e.name(), track(e, before, now));
+        }
+
+        scanned = true;
+        scannedDirMtime = mtime;
+        view = null;
+    }
+
+    // --- ESTADO DE PROCESAMIENTO ---
+
+    /** Agrega o reemplaza un archivo y actualiza el estado de los PCAP afectados. */
+    private void put(FileEntry entry, long now) {
+        String name = entry.name();
+        if (isPcap(name)) {
+            pcapsByBase.put(baseOf(name), name);
+            files.put(name, track(entry, files.get(name), now));
+        } else {
+            boolean added = files.put(name, entry) == null;
+            if (added) {
+                csvNames.add(name);
+                relink(name, now);
+            }
+        }
+    }
+
+    /** Quita un archivo y actualiza el estado de los PCAP afectados. */
+    private boolean remove(String name) {
+        if (files.remove(name) == null) return false;
+
+        if (isPcap(name)) {
+            pcapsByBase.remove(baseOf(name), name);
+            reschedule(name, NO_DEADLINE);
+        } else {
+            csvNames.remove(name);
+            relink(name, System.currentTimeMillis());
+        }
+        return true;
+    }
+
+    /**
+     * Calcula el estado de un PCAP:
+     * - "true"    → existe un CSV cuyo nombre empieza con el nombre base del PCAP
+     *               (el primero en orden lexicográfico)
+     * - "pending" → aún dentro del tiempo esperado (3 veces la duración de la captura)
+     * - "false"   → tiempo excedido sin CSV
+     * * Los pendientes con plazo se registran para que el rastreador los venza,
+     * reemplazando el plazo anterior del mismo PCAP. Los que pasan a "false" aquí mismo
+     * se anotan para la re-paración automática.
+     * @param previous Entrada anterior del PCAP (null si es nuevo).
+     */
+    private FileEntry track(FileEntry pcap, FileEntry previous, long now) {
+        String base = baseOf(pcap.name());
+        String csv = csvNames.ceiling(base);
+        if (csv != null && csv.startsWith(base)) {
+            reschedule(pcap.name(), NO_DEADLINE);
+            return pcap.withStatus(csv, DONE, NO_DEADLINE);
+        }
+
+        long deadline = deadlineOf(pcap);
+        if (deadline <= now) {
+            reschedule(pcap.name(), NO_DEADLINE);
+            // Sin el primer escaneo: el histórico de capturas fallidas no se encola en cada arranque
+            if (autoRepair && scanned && (previous == null || previous.status() != FAILED)) {
+                failedOnTrack.add(pcap.name());
+            }
+            return pcap.withStatus(null, FAILED, deadline);
+        }
+
+        reschedule(pcap.name(), deadline);
+        return pcap.withStatus(null, PENDING, deadline);
+    }
+
+    /** Reemplaza el plazo en cola de un PCAP; con NO_DEADLINE solo lo retira. */
+    private void reschedule(String pcap, long at) {
+        Deadline queued = queuedDeadlines.remove(pcap);
+        if (queued != null) deadlines.remove(queued);
+        if (at == NO_DEADLINE) return;
+
+        Deadline deadline = new Deadline(at, pcap);
+        queuedDeadlines.put(pcap, deadline);
+        deadlines.add(deadline);
+    }
+
+    /**
+     * Recalcula los PCAP cuyo nombre base es prefijo del CSV agregado o eliminado.
+     * * Los nombres base que son prefijo del CSV y menores que una clave k ≤ csv también
+     * son prefijo de k, así que basta con recorrer hacia atrás desde el CSV acotando por
+     * el prefijo común: unas pocas búsquedas en el árbol, no una por PCAP.
+     */
+    private void relink(String csv, long now) {
+        String base = pcapsByBase.floorKey(csv);
+        while (base != null) {
+            int common = commonPrefix(base, csv);
+            if (common == base.length()) {
+                FileEntry pcap = files.get(pcapsByBase.get(base));
+                if (pcap != null) files.put(pcap.name(), track(pcap, pcap, now));
+                base = pcapsByBase.lowerKey(base);
+            } else {
+                base = pcapsByBase.floorKey(csv.substring(0, common));
+            }
+        }
+    }
+
+    /**
+     * Ejecutado por el rastreador: marca como "false" los PCAP cuyo plazo venció sin
+     * CSV y, si está habilitado, encola su re-procesamiento junto con el de los que
+     * pasaron a "false" al recalcular su estado.
+     */
+    private void expireDeadlines() {
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            boolean changed = false;
+            while (!deadlines.isEmpty() && deadlines.first().at() <= now) {
+                Deadline d = deadlines.pollFirst();
+                queuedDeadlines.remove(d.pcap());
+                FileEntry pcap = files.get(d.pcap());
+                if (pcap == null || pcap.status() != PENDING) continue;
+
+                files.put(pcap.name(), pcap.withStatus(null, FAILED, pcap.deadline()));
+                expired.add(pcap.name());
+                changed = true;
+            }
+            expired.addAll(failedOnTrack);
+            failedOnTrack.clear();
+            if (changed) view = null;
+        }
+
+        if (!autoRepair) return;
+        for (String name : expired) {
+            try {
+                reprocess.submit(name);
+            } catch (RejectedExecutionException e) {
+                log.warn("Cola de re-procesamiento llena; {} queda sin encolar", name);
+            }
+        }
+    }
+
+    /** Plazo para que aparezca el CSV: modificación del PCAP + 3 veces la duración del nombre. */
+    private static long deadlineOf(FileEntry pcap) {
+        Matcher m = MINUTES_PATTERN.matcher(pcap.name());
+        double minutes = m.find() ? Double.parseDouble(m.group(1)) : -1;
+        if (minutes <= 0) return NO_DEADLINE;
+
+        return pcap.lastModified().toEpochMilli() + (long) (minutes * 3 * 60_000);
+    }
+
+    private static String baseOf(String pcapName) {
+        return pcapName.substring(0, pcapName.length() - ".pcap".length());
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    private static boolean isPcap(String name) {
+        return name.endsWith(".pcap");
+    }
+
+    private static boolean isTracked(String name) {
+        return name.endsWith(".pcap") || name.endsWith(".csv");
+    }
+
+    /**
+     * Lee los atributos del archivo en disco (original o comprimido) bajo su nombre
+     * lógico; el tamaño es el que ocupa en disco.
+     */
+    private static FileEntry read(String name, Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) return null;
+            return new FileEntry(name, attrs.size(), attrs.lastModifiedTime().toInstant());
+        } catch (IOException e) {
+            return null; // eliminado entre el listado y la lectura
+        }
+    }
+
+    private long dirMtime() {
+        try {
+            return layout.fingerprint();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
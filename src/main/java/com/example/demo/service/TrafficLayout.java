@@ -0,0 +1,448 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Servicio TrafficLayout
+ * * Define dónde viven los PCAP y CSV dentro de {@code traffic.dir}:
+ * - flat  → todos los archivos en la raíz (comportamiento original).
+ * - daily → particiones {@code YYYY/MM/DD/} según la fecha embebida en el nombre.
+ * * La partición se deriva del nombre, por lo que el nombre sigue siendo la clave
+ * única en el índice y el inventario: un archivo fechado está en su partición o, si
+ * aún no se migró (los scripts de captura escriben en la raíz), en la raíz. Los
+ * archivos sin fecha en el nombre permanecen siempre en la raíz.
+ * * Los recorridos listan las particiones en paralelo y descartan las que quedan
+ * fuera del rango de fechas solicitado sin abrirlas.
+ * * Un archivo comprimido por {@link TrafficCompactionService} ("nombre.csv.gz") se
+ * sigue exponiendo con su nombre lógico ("nombre.csv"); si ambos existen (durante la
+ * compresión) prevalece el original.
+ */
+@Service
+public class TrafficLayout {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficLayout.class);
+
+    /** Primera fecha ISO (yyyy-MM-dd) presente en el nombre del archivo */
+    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})");
+
+    /** Sufijo de los archivos comprimidos */
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
+    /** Sufijo de los archivos temporales (compresión o descompresión en curso) */
+    public static final String PARTIAL_SUFFIX = ".part";
+
+    private final Path root;
+    private final boolean partitioned;
+
+    /** Migrar los archivos de la raíz a sus particiones al arrancar (antes de indexar) */
+    @Value("${traffic.layout.migrate-on-start:false}")
+    private boolean migrateOnStart;
+
+    /** Antigüedad mínima, en minutos, de un archivo para migrarlo */
+    @Value("${traffic.layout.migrate-min-age-minutes:60}")
+    private long migrateMinAgeMinutes = 60;
+
+    /** Hilo de las migraciones pedidas por la API (se crea con la primera) */
+    private ExecutorService migrator;
+
+    private final AtomicBoolean migrating = new AtomicBoolean();
+
+    private volatile Instant migrationStartedAt;
+    private volatile Instant migrationFinishedAt;
+    private volatile long migrationMoved;
+    private volatile String migrationError;
+
+    /** Estado de la última migración. */
+    public record MigrationStatus(boolean running, Instant startedAt, Instant finishedAt, long moved, String error) {}
+
+    public TrafficLayout(@Value("${traffic.dir}") String trafficDir,
+                         @Value("${traffic.layout:flat}") String layout) {
+        this.root = Paths.get(trafficDir);
+        this.partitioned = "daily".equalsIgnoreCase(layout);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!partitioned || !migrateOnStart) return;
+        try {
+            migrate(Duration.ofMinutes(migrateMinAgeMinutes));
+        } catch (IOException e) {
+            log.warn("Error migrando {} al layout particionado: {}", root, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (migrator != null) migrator.shutdownNow();
+    }
+
+    /** Directorio raíz de tráfico. */
+    public Path root() {
+        return root;
+    }
+
+    /** Indica si se usan particiones diarias. */
+    public boolean partitioned() {
+        return partitioned;
+    }
+
+    // --- RESOLUCIÓN DE NOMBRES ---
+
+    /**
+     * Fecha embebida en el nombre de un archivo.
+     * @return La fecha, o null si el nombre no contiene una fecha válida.
+     */
+    public static LocalDate dateOf(String name) {
+        Matcher m = DATE_PATTERN.matcher(name);
+        if (!m.find()) return null;
+        try {
+            return LocalDate.parse(m.group());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Directorio que corresponde al archivo en el layout configurado. */
+    public Path partitionOf(String name) {
+        LocalDate date = partitioned ? dateOf(name) : null;
+        return date == null ? root : partition(date);
+    }
+
+    /**
+     * Ubicación actual de un archivo: su partición si ya está ahí, si no la raíz. En
+     * cada directorio se busca el original y después su versión comprimida.
+     * * El nombre (lógico) debe venir validado (sin separadores de ruta).
+     * @return Ruta existente, o la ruta del original en la raíz si no se encontró.
+     */
+    public Path resolve(String name) {
+        Path partition = partitionOf(name);
+        if (partition != root) {
+            Path candidate = existing(partition, name);
+            if (candidate != null) return candidate;
+        }
+        Path candidate = existing(root, name);
+        return candidate != null ? candidate : root.resolve(name);
+    }
+
+    private static Path existing(Path dir, String name) {
+        Path plain = dir.resolve(name);
+        if (Files.exists(plain)) return plain;
+        Path compressed = dir.resolve(name + COMPRESSED_SUFFIX);
+        return Files.exists(compressed) ? compressed : null;
+    }
+
+    /** Nombre lógico de un archivo: sin el sufijo de compresión. */
+    public static String logicalName(String fileName) {
+        return isCompressed(fileName)
+                ? fileName.substring(0, fileName.length() - COMPRESSED_SUFFIX.length())
+                : fileName;
+    }
+
+    /** Indica si el nombre en disco corresponde a un archivo comprimido. */
+    public static boolean isCompressed(String fileName) {
+        return fileName.endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /** Indica si la ruta corresponde a un archivo comprimido. */
+    public static boolean isCompressed(Path path) {
+        return isCompressed(path.getFileName().toString());
+    }
+
+    /**
+     * Indica si un listado acotado a [from, to] cubre el archivo: los fechados en el
+     * rango (estén en la raíz o en su partición) y los que no tienen fecha.
+     */
+    public static boolean covers(String name, LocalDate from, LocalDate to) {
+        if (from == null && to == null) return true;
+        LocalDate date = dateOf(name);
+        return date == null
+                || ((from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to)));
+    }
+
+    private Path partition(LocalDate date) {
+        return root.resolve(String.format("%04d", date.getYear()))
+                .resolve(String.format("%02d", date.getMonthValue()))
+                .resolve(String.format("%02d", date.getDayOfMonth()));
+    }
+
+    // --- RECORRIDOS ---
+
+    /**
+     * Nombres lógicos de los archivos regulares cubiertos por el rango [from, to].
+     * @param from Fecha inicial (inclusive), o null sin límite.
+     * @param to Fecha final (inclusive), o null sin límite.
+     * @return Conjunto mutable de nombres (vacío si la raíz no existe).
+     */
+    public Set<String> list(LocalDate from, LocalDate to) throws IOException {
+        return new HashSet<>(locate(from, to).keySet());
+    }
+
+    /**
+     * Ubicación de los archivos regulares cubiertos por el rango [from, to].
+     * * La raíz se lista siempre; las particiones fuera del rango se descartan sin
+     * abrirlas y el resto se listan en paralelo. Si un nombre aparece en la raíz y en
+     * su partición prevalece la partición, igual que en {@link #resolve(String)}.
+     * @param from Fecha inicial (inclusive), o null sin límite.
+     * @param to Fecha final (inclusive), o null sin límite.
+     * @return Mapa nombre lógico → ruta (vacío si la raíz no existe).
+     */
+    public Map<String, Path> locate(LocalDate from, LocalDate to) throws IOException {
+        Map<String, Path> files = new HashMap<>();
+        if (!Files.isDirectory(root)) return files;
+
+        for (Path file : listFiles(root)) {
+            String name = logicalName(file.getFileName().toString());
+            if (covers(name, from, to)) putPreferringPlain(files, name, file);
+        }
+        if (!partitioned) return files;
+
+        try {
+            partitions(from, to).parallelStream()
+                    .map(dir -> {
+                        try {
+                            return listFiles(dir);
+                        } catch (NoSuchFileException e) {
+                            return List.<Path>of(); // partición eliminada durante el recorrido
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .map(paths -> {
+                        Map<String, Path> partition = new HashMap<>();
+                        paths.forEach(p -> putPreferringPlain(partition, logicalName(p.getFileName().toString()), p));
+                        return partition;
+                    })
+                    .forEachOrdered(files::putAll);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files;
+    }
+
+    /**
+     * Marca de agua del árbol: la fecha de modificación más reciente entre la raíz y
+     * las particiones. Crear, borrar o renombrar un archivo en cualquiera de ellas la
+     * incrementa, así que sirve para validar un checkpoint sin listar archivos.
+     * @return Milisegundos de la marca, o -1 si la raíz no existe.
+     */
+    public long fingerprint() throws IOException {
+        if (!Files.isDirectory(root)) return -1;
+
+        long max = Files.getLastModifiedTime(root).toMillis();
+        if (!partitioned) return max;
+
+        for (Path dir : directories()) {
+            try {
+                max = Math.max(max, Files.getLastModifiedTime(dir).toMillis());
+            } catch (NoSuchFileException ignored) {
+                // partición eliminada: el mtime de su directorio padre ya cambió
+            }
+        }
+        return max;
+    }
+
+    /** Dentro de un mismo directorio el original prevalece sobre su versión comprimida. */
+    private static void putPreferringPlain(Map<String, Path> files, String name, Path file) {
+        if (!isCompressed(file)) files.put(name, file);
+        else files.putIfAbsent(name, file);
+    }
+
+    /** Directorios de partición existentes (año, mes y día), sin la raíz. */
+    public List<Path> directories() throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!partitioned) return result;
+
+        for (Path year : subdirectories(root, 4)) {
+            result.add(year);
+            for (Path month : subdirectories(year, 2)) {
+                result.add(month);
+                result.addAll(subdirectories(month, 2));
+            }
+        }
+        return result;
+    }
+
+    /** Particiones diarias existentes que intersectan el rango [from, to]. */
+    private List<Path> partitions(LocalDate from, LocalDate to) throws IOException {
+        List<Path> result = new ArrayList<>();
+        for (Path year : subdirectories(root, 4)) {
+            int y = Integer.parseInt(year.getFileName().toString());
+            if ((from != null && y < from.getYear()) || (to != null && y > to.getYear())) continue;
+
+            for (Path month : subdirectories(year, 2)) {
+                int m = Integer.parseInt(month.getFileName().toString());
+                if (m < 1 || m > 12) continue;
+                LocalDate first = LocalDate.of(y, m, 1);
+                if ((from != null && first.plusMonths(1).isBefore(from.plusDays(1)))
+                        || (to != null && first.isAfter(to))) continue;
+
+                for (Path day : subdirectories(month, 2)) {
+                    int d = Integer.parseInt(day.getFileName().toString());
+                    if (d < 1 || d > first.lengthOfMonth()) continue;
+                    LocalDate date = first.withDayOfMonth(d);
+                    if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) continue;
+                    result.add(day);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Subdirectorios cuyo nombre son exactamente {@code digits} dígitos. */
+    private static List<Path> subdirectories(Path dir, int digits) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+                p -> p.getFileName().toString().matches("\\d{" + digits + "}") && Files.isDirectory(p))) {
+            stream.forEach(result::add);
+        } catch (NoSuchFileException e) {
+            return result;
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                if (Files.isRegularFile(p)) files.add(p);
+            }
+        }
+        return files;
+    }
+
+    // --- MIGRACIÓN ---
+
+    /**
+     * Mueve a su partición los archivos fechados de la raíz que no se han modificado
+     * en al menos {@code minAge}, para no tocar capturas en curso ni CSV que el script
+     * de procesamiento aún está escribiendo. Cada archivo se mueve de forma atómica
+     * dentro del mismo sistema de archivos; es seguro repetir la migración.
+     * @param minAge Antigüedad mínima de la última modificación.
+     * @return Número de archivos movidos.
+     * @throws IllegalStateException Si el layout configurado no es particionado o ya hay
+     *         una migración en curso.
+     */
+    public int migrate(Duration minAge) throws IOException {
+        claimMigration();
+        try {
+            return runMigration(minAge);
+        } catch (IOException | RuntimeException e) {
+            migrationError = e.getMessage();
+            throw e;
+        } finally {
+            finishMigration();
+        }
+    }
+
+    /**
+     * Lanza la migración en segundo plano, sin esperar a que termine. Su progreso y
+     * resultado se consultan con {@link #migration()}.
+     * @param minAge Antigüedad mínima de la última modificación.
+     * @throws IllegalStateException Si el layout configurado no es particionado o ya hay
+     *         una migración en curso.
+     */
+    public synchronized void submitMigration(Duration minAge) {
+        claimMigration();
+        if (migrator == null) {
+            migrator = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "traffic-layout-migrator");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        try {
+            migrator.execute(() -> {
+                try {
+                    runMigration(minAge);
+                } catch (Exception e) {
+                    migrationError = e.getMessage();
+                    log.warn("Error migrando {} al layout particionado: {}", root, e.getMessage());
+                } finally {
+                    finishMigration();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finishMigration();
+            throw new IllegalStateException("La migración se está deteniendo");
+        }
+    }
+
+    /** Estado de la migración en curso o de la última terminada. */
+    public MigrationStatus migration() {
+        return new MigrationStatus(migrating.get(), migrationStartedAt, migrationFinishedAt,
+                migrationMoved, migrationError);
+    }
+
+    private void claimMigration() {
+        if (!partitioned) throw new IllegalStateException("El layout configurado es 'flat'");
+        if (!migrating.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una migración en curso");
+        }
+        migrationStartedAt = Instant.now();
+        migrationFinishedAt = null;
+        migrationMoved = 0;
+        migrationError = null;
+    }
+
+    private void finishMigration() {
+        migrationFinishedAt = Instant.now();
+        migrating.set(false);
+    }
+
+    private int runMigration(Duration minAge) throws IOException {
+        if (!Files.isDirectory(root)) return 0;
+
+        Instant cutoff = Instant.now().minus(minAge);
+        int moved = 0;
+        try (Stream<Path> stream = Files.list(root)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                String name = file.getFileName().toString();
+                if (dateOf(name) == null || name.endsWith(PARTIAL_SUFFIX)) continue;
+
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attrs.isRegularFile() || attrs.lastModifiedTime().toInstant().isAfter(cutoff)) continue;
+
+                Path target = partitionOf(name).resolve(name);
+                if (Files.exists(target)) {
+                    // rename(2) reemplazaría el archivo existente sin avisar
+                    log.warn("No se migró {}: ya existe en {}", name, target.getParent());
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                migrationMoved = ++moved;
+                if (Thread.currentThread().isInterrupted()) break;
+            }
+        }
+        log.info("Migración de layout: {} archivos movidos a particiones diarias", moved);
+        return moved;
+    }
+}
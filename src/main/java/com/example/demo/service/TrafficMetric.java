@@ -0,0 +1,19 @@
+package com.example.demo.service;
+
+/**
+ * Métricas por las que se pueden ordenar los intervalos de tráfico (rankings Top-N).
+ */
+public enum TrafficMetric {
+
+    /** Tráfico de entrada (Download) */
+    INPUT,
+
+    /** Tráfico de salida (Upload) */
+    OUTPUT,
+
+    /** Tráfico total (Input + Output) */
+    TOTAL,
+
+    /** Número de capturas */
+    CAPTURES
+}
@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Resoluciones temporales en las que se agrega el tráfico.
+ * * Cada resolución traduce un instante a un "slot" entero contiguo (horas, días,
+ * semanas ISO o meses desde la época Unix) que sirve de posición en los arreglos de
+ * {@link TrafficColumnStore}. Están declaradas de la más fina a la más gruesa.
+ */
+public enum TrafficResolution {
+
+    /** Horas desde 1970-01-01T00:00 */
+    HOUR {
+        @Override
+        public int slotOf(LocalDateTime t) {
+            return (int) (t.toLocalDate().toEpochDay() * 24 + t.getHour());
+        }
+
+        @Override
+        public LocalDateTime startOf(int slot) {
+            return LocalDate.ofEpochDay(Math.floorDiv(slot, 24)).atTime(Math.floorMod(slot, 24), 0);
+        }
+    },
+
+    /** Días desde 1970-01-01 (epoch-day) */
+    DAY {
+        @Override
+        public int slotOf(LocalDateTime t) {
+            return (int) t.toLocalDate().toEpochDay();
+        }
+
+        @Override
+        public LocalDateTime startOf(int slot) {
+            return LocalDate.ofEpochDay(slot).atStartOfDay();
+        }
+    },
+
+    /** Semanas ISO (lunes a domingo); el slot 0 empieza el lunes 1969-12-29 */
+    WEEK {
+        @Override
+        public int slotOf(LocalDateTime t) {
+            return (int) Math.floorDiv(t.toLocalDate().toEpochDay() + 3, 7);
+        }
+
+        @Override
+        public LocalDateTime startOf(int slot) {
+            return LocalDate.ofEpochDay(slot * 7L - 3).atStartOfDay();
+        }
+    },
+
+    /** Meses calendario desde enero de 1970 */
+    MONTH {
+        @Override
+        public int slotOf(LocalDateTime t) {
+            return (t.getYear() - 1970) * 12 + t.getMonthValue() - 1;
+        }
+
+        @Override
+        public LocalDateTime startOf(int slot) {
+            return LocalDate.of(1970 + Math.floorDiv(slot, 12), Math.floorMod(slot, 12) + 1, 1).atStartOfDay();
+        }
+    };
+
+    /** Slot que contiene el instante dado. */
+    public abstract int slotOf(LocalDateTime t);
+
+    /** Instante en que comienza el slot dado. */
+    public abstract LocalDateTime startOf(int slot);
+
+    /**
+     * Elige la resolución más fina cuya cantidad de puntos entre ambos instantes no
+     * supera el presupuesto; si ninguna cabe se usa la más gruesa (MONTH).
+     * @param from Inicio del periodo.
+     * @param to Fin del periodo.
+     * @param maxPoints Número máximo de puntos deseado.
+     */
+    public static TrafficResolution fitting(LocalDateTime from, LocalDateTime to, int maxPoints) {
+        for (TrafficResolution r : values()) {
+            if ((long) r.slotOf(to) - r.slotOf(from) + 1 <= maxPoints) return r;
+        }
+        return MONTH;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Servicio TrafficResponseCache
+ * * Conserva el JSON ya serializado de las consultas de gráficas, asociado al arranque y
+ * a la versión del índice con los que se generó. Mientras el índice no cambie, un dashboard que
+ * consulta periódicamente los mismos endpoints recibe los mismos bytes sin recalcular
+ * ni volver a serializar la respuesta.
+ * * Es un LRU acotado: al publicarse una versión nueva las entradas antiguas dejan de
+ * coincidir y se reemplazan conforme se vuelven a pedir.
+ */
+@Service
+public class TrafficResponseCache {
+
+    /** Cuerpos mayores a este tamaño se sirven sin guardarse (ej. listados de capturas grandes) */
+    private static final int MAX_BODY_BYTES = 256 * 1024;
+
+    private final ObjectMapper mapper;
+    private final Map<String, Entry> entries;
+
+    private record Entry(long epoch, long version, byte[] body) {
+
+        boolean newerThan(Entry other) {
+            return epoch != other.epoch ? epoch > other.epoch : version > other.version;
+        }
+    }
+
+    public TrafficResponseCache(ObjectMapper mapper,
+                                @Value("${traffic.cache.max-entries:256}") int maxEntries) {
+        this.mapper = mapper;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el JSON de una consulta para la versión indicada del índice.
+     * * La versión debe leerse antes de ejecutar la consulta: así el cuerpo guardado
+     * nunca es más antiguo que la versión con la que se etiqueta.
+     * @param key Identificador de la consulta (endpoint y parámetros).
+     * @param epoch Arranque al que pertenece la versión (ver {@code TrafficIndexStatus}).
+     * @param version Versión del índice vigente al recibir la petición.
+     * @param query Consulta a ejecutar si no hay una respuesta guardada.
+     * @return Cuerpo JSON serializado.
+     */
+    public byte[] get(String key, long epoch, long version, Supplier<?> query) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.epoch() == epoch && entry.version() == version) return entry.body();
+        }
+
+        byte[] body = mapper.writeValueAsBytes(query.get());
+        if (body.length > MAX_BODY_BYTES) return body;
+
+        synchronized (entries) {
+            // Una petición rezagada no debe pisar la respuesta de una versión más nueva
+            entries.merge(key, new Entry(epoch, version, body),
+                    (old, fresh) -> old.newerThan(fresh) ? old : fresh);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demo.service;
+
+import java.util.*;
+
+/**
+ * Bosquejos (sketches) inmutables de la distribución de volúmenes por captura, uno por día.
+ * * Cada bosquejo es un histograma logarítmico disperso al estilo DDSketch: el volumen
+ * {@code v > 0} cae en el bucket {@code ceil(log_γ v)} y se reconstruye con un error
+ * relativo máximo de {@link #RELATIVE_ACCURACY}; los volúmenes en cero van a un bucket
+ * propio. A diferencia de un t-digest, los conteos se pueden restar (el índice también
+ * procesa bajas de archivos) y dos bosquejos se combinan sumando sus buckets, por lo que
+ * los percentiles de un rango se obtienen fusionando los días que lo componen sin
+ * conservar los valores originales.
+ */
+final class TrafficVolumeSketches {
+
+    /** Error relativo máximo de los percentiles reportados (1 %) */
+    static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /** Bucket reservado para volúmenes menores o iguales a cero */
+    private static final int ZERO_BUCKET = Integer.MIN_VALUE;
+
+    static final TrafficVolumeSketches EMPTY = new TrafficVolumeSketches(new int[0], new Sketch[0]);
+
+    /** Días (epoch-day) con al menos una captura, ordenados */
+    private final int[] days;
+
+    /** Bosquejo de cada día, paralelo a {@code days} */
+    private final Sketch[] sketches;
+
+    private TrafficVolumeSketches(int[] days, Sketch[] sketches) {
+        this.days = days;
+        this.sketches = sketches;
+    }
+
+    /** Histograma disperso de un día: buckets ordenados y su conteo. */
+    private record Sketch(int[] buckets, long[] counts) {}
+
+    // --- CONSULTAS ---
+
+    /**
+     * Combina los bosquejos de los días en [fromDay, toDay].
+     * @return Histograma fusionado (vacío si no hay capturas en el rango).
+     */
+    Histogram merge(int fromDay, int toDay) {
+        int lo = lowerBound(fromDay);
+        int hi = lowerBound(toDay + 1);
+        if (lo >= hi) return Histogram.EMPTY;
+
+        // Los buckets de cada día están ordenados: basta con los extremos para dimensionar
+        long zeros = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = lo; i < hi; i++) {
+            int[] buckets = sketches[i].buckets();
+            int first = buckets[0] == ZERO_BUCKET ? 1 : 0;
+            if (first < buckets.length) {
+                min = Math.min(min, buckets[first]);
+                max = Math.max(max, buckets[buckets.length - 1]);
+            }
+        }
+
+        long[] dense = new long[min <= max ? max - min + 1 : 0];
+        for (int i = lo; i < hi; i++) {
+            int[] buckets = sketches[i].buckets();
+            long[] counts = sketches[i].counts();
+            for (int j = 0; j < buckets.length; j++) {
+                if (buckets[j] == ZERO_BUCKET) zeros += counts[j];
+                else dense[buckets[j] - min] += counts[j];
+            }
+        }
+        return new Histogram(zeros, min, dense);
+    }
+
+    /** Días con capturas dentro de [fromDay, toDay], en orden. */
+    int[] daysBetween(int fromDay, int toDay) {
+        return Arrays.copyOfRange(days, lowerBound(fromDay), lowerBound(toDay + 1));
+    }
+
+    private int lowerBound(int day) {
+        int lo = 0;
+        int hi = days.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int bucketOf(double volume) {
+        return volume > 0 ? (int) Math.ceil(Math.log(volume) / LOG_GAMMA) : ZERO_BUCKET;
+    }
+
+    /** Valor representativo del bucket (punto medio relativo de su intervalo). */
+    private static double valueOf(int bucket) {
+        return 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+    }
+
+    // --- HISTOGRAMA FUSIONADO ---
+
+    /**
+     * Histograma denso resultado de combinar varios días.
+     * * Los buckets se indexan desde {@code offset}; los ceros se cuentan aparte.
+     */
+    static final class Histogram {
+
+        static final Histogram EMPTY = new Histogram(0, 0, new long[0]);
+
+        private final long zeros;
+        private final int offset;
+        private final long[] counts;
+        private final long total;
+
+        private Histogram(long zeros, int offset, long[] counts) {
+            this.zeros = zeros;
+            this.offset = offset;
+            this.counts = counts;
+            long sum = zeros;
+            for (long c : counts) sum += c;
+            this.total = sum;
+        }
+
+        /** Número de capturas representadas. */
+        long count() {
+            return total;
+        }
+
+        /**
+         * Percentil aproximado del volumen por captura.
+         * @param q Cuantil en [0, 1] (ej. 0.9 para p90).
+         * @return Volumen estimado, o 0 si el histograma está vacío.
+         */
+        double quantile(double q) {
+            if (total == 0) return 0;
+
+            long rank = (long) Math.floor(q * (total - 1));
+            long seen = zeros;
+            if (rank < seen) return 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (rank < seen) return valueOf(offset + i);
+            }
+            return valueOf(offset + counts.length - 1);
+        }
+
+        /** Volumen máximo aproximado (bucket no vacío más alto). */
+        double max() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) return valueOf(offset + i);
+            }
+            return 0;
+        }
+    }
+
+    // --- CONSTRUCTOR INCREMENTAL ---
+
+    /**
+     * Mantiene los conteos por día y bucket y reconstruye en cada publicación solo los
+     * bosquejos de los días modificados desde la anterior.
+     */
+    static final class Builder {
+
+        private final Map<Integer, TreeMap<Integer, Long>> counts = new HashMap<>();
+        private final TreeMap<Integer, Sketch> built = new TreeMap<>();
+        private final Set<Integer> dirty = new HashSet<>();
+        private TrafficVolumeSketches last = EMPTY;
+
+        /**
+         * Suma (sign = 1) o resta (sign = -1) una captura del día indicado.
+         * @param day Día de la captura (epoch-day).
+         * @param volume Volumen de la captura (input + output).
+         */
+        void add(int day, double volume, int sign) {
+            TreeMap<Integer, Long> buckets = counts.computeIfAbsent(day, d -> new TreeMap<>());
+            buckets.merge(bucketOf(volume), (long) sign, (a, b) -> a + b == 0 ? null : a + b);
+            if (buckets.isEmpty()) counts.remove(day);
+            dirty.add(day);
+        }
+
+        TrafficVolumeSketches build() {
+            if (dirty.isEmpty()) return last;
+
+            for (int day : dirty) {
+                TreeMap<Integer, Long> buckets = counts.get(day);
+                if (buckets == null) {
+                    built.remove(day);
+                    continue;
+                }
+                int[] keys = new int[buckets.size()];
+                long[] values = new long[buckets.size()];
+                int i = 0;
+                for (Map.Entry<Integer, Long> e : buckets.entrySet()) {
+                    keys[i] = e.getKey();
+                    values[i++] = e.getValue();
+                }
+                built.put(day, new Sketch(keys, values));
+            }
+            dirty.clear();
+
+            int[] days = new int[built.size()];
+            Sketch[] sketches = new Sketch[built.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Sketch> e : built.entrySet()) {
+                days[i] = e.getKey();
+                sketches[i++] = e.getValue();
+            }
+            last = new TrafficVolumeSketches(days, sketches);
+            return last;
+        }
+    }
+}
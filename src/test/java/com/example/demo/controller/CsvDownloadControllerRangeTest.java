@@ -0,0 +1,139 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.DownloadSidecarCache;
+import com.example.demo.service.TrafficCompactionService;
+import com.example.demo.service.TrafficCsvScanner;
+import com.example.demo.service.TrafficExportService;
+import com.example.demo.service.TrafficLayout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Descargas con Range sobre un reporte de 100 bytes: rango simple, sufijo, abierto,
+ * rangos superpuestos o contiguos unidos en una sola parte, varios rangos disjuntos en
+ * multipart/byteranges, 416 cuando ninguno es satisfacible e If-Range.
+ */
+class CsvDownloadControllerRangeTest {
+
+	private static final String NAME = "traffic_2026-01-10_10-00-00_(1_input)_(2_output).csv";
+	private static final int LENGTH = 100;
+
+	@TempDir
+	Path dir;
+
+	private byte[] content;
+	private MockMvc mvc;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		Path traffic = Files.createDirectory(dir.resolve("traffic"));
+		content = new byte[LENGTH];
+		for (int i = 0; i < LENGTH; i++) content[i] = (byte) ('a' + i % 26);
+		Files.write(traffic.resolve(NAME), content);
+
+		TrafficLayout layout = new TrafficLayout(traffic.toString(), "flat");
+		TrafficCompactionService compaction = new TrafficCompactionService(layout);
+		DownloadSidecarCache sidecars = new DownloadSidecarCache(dir.resolve("sidecars").toString(), 1);
+		mvc = MockMvcBuilders.standaloneSetup(new CsvDownloadController(layout, compaction, sidecars,
+				new TrafficExportService(layout, 1), new TrafficCsvScanner(compaction))).build();
+	}
+
+	@Test
+	void servesSingleRange() throws Exception {
+		MockHttpServletResponse response = download("bytes=10-19", null);
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-19/100");
+		assertThat(response.getContentAsByteArray()).isEqualTo(slice(10, 19));
+	}
+
+	@Test
+	void servesSuffixRange() throws Exception {
+		MockHttpServletResponse response = download("bytes=-5", null);
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 95-99/100");
+		assertThat(response.getContentAsByteArray()).isEqualTo(slice(95, 99));
+	}
+
+	@Test
+	void servesOpenEndedRange() throws Exception {
+		MockHttpServletResponse response = download("bytes=90-", null);
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 90-99/100");
+		assertThat(response.getContentAsByteArray()).isEqualTo(slice(90, 99));
+	}
+
+	@Test
+	void mergesOverlappingAndAdjacentRangesIntoOnePart() throws Exception {
+		// 15-29 se superpone con 10-19 y 30-39 es contiguo: un único tramo 10-39
+		MockHttpServletResponse response = download("bytes=30-39,10-19,15-29", null);
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentType()).startsWith("text/csv");
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-39/100");
+		assertThat(response.getContentAsByteArray()).isEqualTo(slice(10, 39));
+	}
+
+	@Test
+	void servesDisjointRangesAsMultipartByteranges() throws Exception {
+		MockHttpServletResponse response = download("bytes=50-51,0-1,500-600", null);
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+		assertThat(response.getContentLengthLong()).isEqualTo(response.getContentAsByteArray().length);
+
+		// El rango fuera del archivo se omite y las partes salen ordenadas
+		String body = response.getContentAsString(StandardCharsets.US_ASCII);
+		int first = body.indexOf("Content-Range: bytes 0-1/100\r\n\r\nab");
+		int second = body.indexOf("Content-Range: bytes 50-51/100\r\n\r\n" + new String(slice(50, 51), StandardCharsets.US_ASCII));
+		assertThat(first).isNotNegative();
+		assertThat(second).isGreaterThan(first);
+		assertThat(body).doesNotContain("500-");
+	}
+
+	@Test
+	void answers416WhenNoRangeIsSatisfiable() throws Exception {
+		MockHttpServletResponse response = download("bytes=100-,200-300", null);
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */100");
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	void ifRangeDecidesBetweenRangeAndFullFile() throws Exception {
+		String etag = download(null, null).getHeader(HttpHeaders.ETAG);
+		assertThat(etag).isNotNull();
+
+		MockHttpServletResponse matching = download("bytes=0-9", etag);
+		assertThat(matching.getStatus()).isEqualTo(206);
+		assertThat(matching.getContentAsByteArray()).isEqualTo(slice(0, 9));
+
+		for (String stale : new String[]{"\"0-0\"", "W/" + etag, "Thu, 01 Jan 2015 00:00:00 GMT"}) {
+			MockHttpServletResponse full = download("bytes=0-9", stale);
+			assertThat(full.getStatus()).as(stale).isEqualTo(200);
+			assertThat(full.getHeader(HttpHeaders.CONTENT_RANGE)).as(stale).isNull();
+			assertThat(full.getContentAsByteArray()).as(stale).isEqualTo(content);
+		}
+	}
+
+	private MockHttpServletResponse download(String range, String ifRange) throws Exception {
+		var request = get("/api/csv_files/download/{filename}", NAME);
+		if (range != null) request.header(HttpHeaders.RANGE, range);
+		if (ifRange != null) request.header(HttpHeaders.IF_RANGE, ifRange);
+		return mvc.perform(request).andReturn().getResponse();
+	}
+
+	private byte[] slice(int from, int toInclusive) {
+		return Arrays.copyOfRange(content, from, toInclusive + 1);
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.demo.pcap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Agregación de paquetes en flujos bidireccionales: ambos sentidos en un mismo flujo,
+ * cierres por inactividad, RST y FIN, volumen de entrada/salida del servidor, una
+ * tabla que crece y borra muchas veces (borrado por desplazamiento) y el desalojo de los
+ * flujos más inactivos al alcanzar el límite.
+ */
+class FlowAggregatorTest {
+
+	private static final long T0 = PcapFiles.BASE_SECONDS * 1_000_000_000L;
+	private static final long SECOND = 1_000_000_000L;
+
+	private static final int CLIENT = 0x0A080006;
+	private static final int SERVER = 0x0A000008;
+	private static final int REMOTE = 0x5DB8D822;
+
+	@TempDir
+	Path dir;
+
+	private final List<byte[]> frames = new ArrayList<>();
+	private final List<Long> times = new ArrayList<>();
+
+	@Test
+	void groupsBothDirectionsAndSplitsOnTimeouts() throws IOException {
+		// Flujo TCP cliente → servidor: SYN, SYN/ACK, datos y cierre con FIN de ambos lados + ACK final
+		packet(0, PcapFiles.ipv4Frame(6, CLIENT, SERVER, 40000, 443, 0x02, 0));
+		packet(1, PcapFiles.ipv4Frame(6, SERVER, CLIENT, 443, 40000, 0x12, 0));
+		packet(2, PcapFiles.ipv4Frame(6, CLIENT, SERVER, 40000, 443, 0x18, 100));
+		packet(3, PcapFiles.ipv4Frame(6, SERVER, CLIENT, 443, 40000, 0x18, 1000));
+		packet(4, PcapFiles.ipv4Frame(6, CLIENT, SERVER, 40000, 443, 0x11, 0));
+		packet(5, PcapFiles.ipv4Frame(6, SERVER, CLIENT, 443, 40000, 0x11, 0));
+		packet(6, PcapFiles.ipv4Frame(6, CLIENT, SERVER, 40000, 443, 0x10, 0));
+
+		// Flujo UDP servidor → remoto con un hueco mayor que el plazo de inactividad (15 s)
+		packet(0, PcapFiles.ipv4Frame(17, SERVER, REMOTE, 5353, 53, 0, 10));
+		packet(30, PcapFiles.ipv4Frame(17, REMOTE, SERVER, 53, 5353, 0, 10));
+
+		// RST cierra al instante
+		packet(31, PcapFiles.ipv4Frame(6, REMOTE, SERVER, 50000, 22, 0x04, 0));
+
+		String csv = aggregate(2);
+		List<String> rows = csv.lines().toList();
+		assertThat(rows.get(0)).isEqualTo(FlowCsvWriter.HEADER);
+		assertThat(rows).hasSize(5);
+
+		assertThat(rows).anySatisfy(r -> assertThat(r).contains(",4,10.8.0.6,10.0.0.8,6,40000,443,4,3,")
+				.endsWith(",fin"));
+		assertThat(rows).anySatisfy(r -> assertThat(r).contains(",10.0.0.8,93.184.216.34,17,5353,53,1,0,").endsWith(",idle"));
+		assertThat(rows).anySatisfy(r -> assertThat(r).contains(",93.184.216.34,10.0.0.8,17,53,5353,1,0,").endsWith(",eof"));
+		assertThat(rows).anySatisfy(r -> assertThat(r).contains(",93.184.216.34,10.0.0.8,6,50000,22,1,0,").endsWith(",rst"));
+	}
+
+	@Test
+	void countsServerInputAndOutput() throws IOException {
+		packet(0, PcapFiles.ipv4Frame(17, CLIENT, SERVER, 1194, 1194, 0, 958));
+		packet(0, PcapFiles.ipv4Frame(17, SERVER, CLIENT, 1194, 1194, 0, 458));
+		packet(0, PcapFiles.ipv4Frame(17, SERVER, REMOTE, 1000, 53, 0, 58));
+		packet(0, PcapFiles.ipv4Frame(17, CLIENT, REMOTE, 1000, 53, 0, 58));
+
+		Path pcap = write();
+		try (FlowCsvWriter writer = new FlowCsvWriter(new ByteArrayOutputStream(), InetAddress.getByName("10.0.0.8"))) {
+			new FlowAggregator(15, 1800, 2, 1000).aggregate(pcap, writer, () -> false);
+			assertThat(writer.flows()).isEqualTo(3);
+			assertThat(writer.inputBytes()).isEqualTo(1000);
+			assertThat(writer.outputBytes()).isEqualTo(500 + 100);
+		}
+	}
+
+	@Test
+	void keepsEveryFlowThroughGrowthAndRemovals() throws IOException {
+		Path pcap = dir.resolve("many.pcap");
+		PcapFiles.writePcap(pcap, 200_000, ByteOrder.LITTLE_ENDIAN);
+
+		// 1000 puertos de origen x 3 tipos de paquete = 3000 flujos distintos; la tabla empieza
+		// con 16 y crece varias veces mientras los plazos de 1 s borran flujos sin parar
+		String csv = aggregate(pcap, new FlowAggregator(1, 1, 0, 1_000_000, 16), 200_000);
+		assertThat(csv.lines().skip(1).count()).isGreaterThanOrEqualTo(3000);
+	}
+
+	@Test
+	void evictsTheOldestFlowsAtTheLimit() throws IOException {
+		Path pcap = dir.resolve("many.pcap");
+		PcapFiles.writePcap(pcap, 20_000, ByteOrder.LITTLE_ENDIAN);
+
+		// Sin plazos que venzan, solo el límite de 64 flujos simultáneos los cierra (como inactivos)
+		String csv = aggregate(pcap, new FlowAggregator(3600, 3600, 3600, 64, 16), 20_000);
+		List<String> rows = csv.lines().skip(1).toList();
+		assertThat(rows.stream().filter(r -> r.endsWith(",idle")).count()).isGreaterThan(3000);
+		assertThat(rows.stream().filter(r -> r.endsWith(",eof")).count()).isBetween(1L, 64L);
+	}
+
+	/** Agrega la captura y comprueba que cada paquete acaba en exactamente un flujo. */
+	private static String aggregate(Path pcap, FlowAggregator aggregator, long packets) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FlowCsvWriter writer = new FlowCsvWriter(out, null)) {
+			FlowAggregator.Result result = aggregator.aggregate(pcap, writer, () -> false);
+			assertThat(result.packets()).isEqualTo(packets);
+			assertThat(result.flows()).isEqualTo(writer.flows());
+		}
+		String csv = out.toString(StandardCharsets.US_ASCII);
+		long counted = csv.lines().skip(1)
+				.mapToLong(r -> Long.parseLong(r.split(",")[9]) + Long.parseLong(r.split(",")[10]))
+				.sum();
+		assertThat(counted).isEqualTo(packets);
+		return csv;
+	}
+
+	private void packet(long seconds, byte[] frame) {
+		frames.add(frame);
+		times.add(T0 + seconds * SECOND + frames.size());
+	}
+
+	private Path write() throws IOException {
+		Path pcap = dir.resolve("flows.pcap");
+		long[] nanos = times.stream().mapToLong(Long::longValue).toArray();
+		// El archivo se ordena por instante, como una captura real
+		Integer[] order = new Integer[nanos.length];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> Long.compare(nanos[a], nanos[b]));
+		List<byte[]> sorted = new ArrayList<>();
+		long[] sortedNanos = new long[nanos.length];
+		for (int i = 0; i < order.length; i++) {
+			sorted.add(frames.get(order[i]));
+			sortedNanos[i] = nanos[order[i]];
+		}
+		PcapFiles.writePcap(pcap, sorted, sortedNanos);
+		return pcap;
+	}
+
+	private String aggregate(long finTimeoutSeconds) throws IOException {
+		Path pcap = write();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FlowCsvWriter writer = new FlowCsvWriter(out, null)) {
+			new FlowAggregator(15, 1800, finTimeoutSeconds, 1000).aggregate(pcap, writer, () -> false);
+		}
+		return out.toString(StandardCharsets.US_ASCII);
+	}
+}
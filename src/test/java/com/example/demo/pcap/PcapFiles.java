@@ -0,0 +1,149 @@
+package com.example.demo.pcap;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Genera capturas sintéticas (pcap y pcapng) para las pruebas y el benchmark del lector.
+ * * Los paquetes rotan entre Ethernet/IPv4/TCP, Ethernet/VLAN/IPv4/UDP y
+ * Ethernet/IPv6/TCP; el paquete i usa los puertos 1000 + i % 1000 → 443 y el
+ * instante BASE_SECONDS + i milisegundos.
+ */
+final class PcapFiles {
+
+	static final long BASE_SECONDS = 1_767_225_600L;
+
+	private PcapFiles() {
+	}
+
+	/** Paquete Ethernet número {@code i}. */
+	static byte[] frame(int i) {
+		int srcPort = 1000 + i % 1000;
+		switch (i % 3) {
+			case 0: {
+				ByteBuffer b = ethernet(14 + 20 + 20 + 32, 0x0800, false);
+				ipv4(b, 6, 20 + 32, 0x0A000001, 0xC0A80002);
+				tcp(b, srcPort, 443, 0x18);
+				return b.array();
+			}
+			case 1: {
+				ByteBuffer b = ethernet(18 + 20 + 8 + 16, 0x0800, true);
+				ipv4(b, 17, 8 + 16, 0x0A000002, 0x08080808);
+				b.putShort((short) srcPort).putShort((short) 53).putShort((short) 24).putShort((short) 0);
+				return b.array();
+			}
+			default: {
+				ByteBuffer b = ethernet(14 + 40 + 20 + 8, 0x86DD, false);
+				b.putInt(0x60000000).putShort((short) 28).put((byte) 6).put((byte) 64);
+				b.putLong(0x20010DB800000000L).putLong(1L);
+				b.putLong(0x20010DB800000000L).putLong(2L);
+				tcp(b, srcPort, 443, 0x02);
+				return b.array();
+			}
+		}
+	}
+
+	private static ByteBuffer ethernet(int length, int type, boolean vlan) {
+		ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+		b.put(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+		if (vlan) b.putShort((short) 0x8100).putShort((short) 42);
+		b.putShort((short) type);
+		return b;
+	}
+
+	private static void ipv4(ByteBuffer b, int protocol, int payload, int src, int dst) {
+		b.put((byte) 0x45).put((byte) 0).putShort((short) (20 + payload)).putInt(0);
+		b.put((byte) 64).put((byte) protocol).putShort((short) 0).putInt(src).putInt(dst);
+	}
+
+	private static void tcp(ByteBuffer b, int srcPort, int dstPort, int flags) {
+		b.putShort((short) srcPort).putShort((short) dstPort).putInt(1).putInt(0);
+		b.put((byte) 0x50).put((byte) flags).putShort((short) 1024).putInt(0);
+	}
+
+	/** Paquete Ethernet/IPv4/TCP (protocol = 6) o UDP (17) con {@code payload} bytes de carga. */
+	static byte[] ipv4Frame(int protocol, int src, int dst, int srcPort, int dstPort, int tcpFlags, int payload) {
+		int transport = protocol == 6 ? 20 : 8;
+		ByteBuffer b = ethernet(14 + 20 + transport + payload, 0x0800, false);
+		ipv4(b, protocol, transport + payload, src, dst);
+		if (protocol == 6) tcp(b, srcPort, dstPort, tcpFlags);
+		else b.putShort((short) srcPort).putShort((short) dstPort).putShort((short) (8 + payload)).putShort((short) 0);
+		return b.array();
+	}
+
+	/** Escribe paquetes arbitrarios en formato pcap clásico; {@code nanos[i]} es el instante del paquete i. */
+	static void writePcap(Path path, List<byte[]> frames, long[] nanos) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+			ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(0xA1B23C4D).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0)
+					.putInt(65535).putInt(PcapPacket.LINKTYPE_ETHERNET);
+			out.write(header.array());
+
+			ByteBuffer record = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < frames.size(); i++) {
+				byte[] frame = frames.get(i);
+				record.clear();
+				record.putInt((int) (nanos[i] / 1_000_000_000L)).putInt((int) (nanos[i] % 1_000_000_000L))
+						.putInt(frame.length).putInt(frame.length);
+				out.write(record.array());
+				out.write(frame);
+			}
+		}
+	}
+
+	/** Escribe {@code count} paquetes en formato pcap clásico (microsegundos). */
+	static void writePcap(Path path, int count, ByteOrder order) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+			ByteBuffer header = ByteBuffer.allocate(24).order(order);
+			header.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0)
+					.putInt(65535).putInt(PcapPacket.LINKTYPE_ETHERNET);
+			out.write(header.array());
+
+			ByteBuffer record = ByteBuffer.allocate(16).order(order);
+			for (int i = 0; i < count; i++) {
+				byte[] frame = frame(i);
+				record.clear();
+				record.putInt((int) (BASE_SECONDS + i / 1000)).putInt((i % 1000) * 1000)
+						.putInt(frame.length).putInt(frame.length);
+				out.write(record.array());
+				out.write(frame);
+			}
+		}
+	}
+
+	/** Escribe {@code count} paquetes como bloques EPB de pcapng (resolución de nanosegundos). */
+	static void writePcapng(Path path, int count, ByteOrder order) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+			ByteBuffer shb = ByteBuffer.allocate(28).order(order);
+			shb.putInt(0x0A0D0D0A).putInt(28).putInt(0x1A2B3C4D).putShort((short) 1).putShort((short) 0)
+					.putLong(-1L).putInt(28);
+			out.write(shb.array());
+
+			// IDB con if_tsresol = 9 (nanosegundos)
+			ByteBuffer idb = ByteBuffer.allocate(32).order(order);
+			idb.putInt(1).putInt(32).putShort((short) PcapPacket.LINKTYPE_ETHERNET).putShort((short) 0).putInt(0)
+					.putShort((short) 9).putShort((short) 1).put((byte) 9).put(new byte[3])
+					.putInt(0).putInt(32);
+			out.write(idb.array());
+
+			for (int i = 0; i < count; i++) {
+				byte[] frame = frame(i);
+				int padded = (frame.length + 3) & ~3;
+				int length = 32 + padded;
+				long units = (BASE_SECONDS + i / 1000) * 1_000_000_000L + (i % 1000) * 1_000_000L;
+				ByteBuffer epb = ByteBuffer.allocate(length).order(order);
+				epb.putInt(6).putInt(length).putInt(0).putInt((int) (units >>> 32)).putInt((int) units)
+						.putInt(frame.length).putInt(frame.length).put(frame);
+				epb.position(28 + padded);
+				epb.putInt(length);
+				out.write(epb.array());
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.example.demo.pcap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH del lector: paquetes por segundo decodificados desde una captura en
+ * caché de páginas, por formato y tamaño de ventana.
+ * * La puntuación ("ops/s") equivale a paquetes/s gracias a @OperationsPerInvocation.
+ * * Ejecutar: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PcapReaderBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PcapReaderBenchmark {
+
+	private static final int PACKETS = 1_000_000;
+
+	@Param({"pcap", "pcapng"})
+	public String format;
+
+	/** Ventana mapeada en MB; la pequeña obliga a volver a mapear unas 20 veces por pasada */
+	@Param({"4", "256"})
+	public int windowMb;
+
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void createCapture() throws IOException {
+		file = Files.createTempFile("pcap-bench", "." + format);
+		if (format.equals("pcap")) PcapFiles.writePcap(file, PACKETS, ByteOrder.LITTLE_ENDIAN);
+		else PcapFiles.writePcapng(file, PACKETS, ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteCapture() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/** Recorre la captura leyendo la 5-tupla y la longitud de cada paquete. */
+	@Benchmark
+	@OperationsPerInvocation(PACKETS)
+	public void decode(Blackhole blackhole) throws IOException {
+		try (PcapReader reader = PcapReader.open(file, windowMb * 1024L * 1024L)) {
+			while (reader.next()) {
+				PcapPacket p = reader.packet();
+				blackhole.consume(p.srcIpv4() ^ p.dstIpv4());
+				blackhole.consume(p.srcPort() << 16 | p.dstPort());
+				blackhole.consume(p.protocol());
+				blackhole.consume(p.originalLength());
+			}
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PcapReaderBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,125 @@
+package com.example.demo.pcap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Decodificación de capturas pcap y pcapng sintéticas, incluido el recorrido con una
+ * ventana mapeada mucho menor que el archivo y una captura cortada a mitad de registro.
+ */
+class PcapReaderTest {
+
+	private static final int PACKETS = 3000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsClassicPcapInBothByteOrders() throws IOException {
+		for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+			Path file = dir.resolve("capture_" + order + ".pcap");
+			PcapFiles.writePcap(file, PACKETS, order);
+			assertDecodes(file, PcapReader.DEFAULT_WINDOW_BYTES, 1000L);
+		}
+	}
+
+	@Test
+	void readsPcapngInBothByteOrders() throws IOException {
+		for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+			Path file = dir.resolve("capture_" + order + ".pcapng");
+			PcapFiles.writePcapng(file, PACKETS, order);
+			assertDecodes(file, PcapReader.DEFAULT_WINDOW_BYTES, 1L);
+		}
+	}
+
+	@Test
+	void remapsWindowsSmallerThanTheFile() throws IOException {
+		Path pcap = dir.resolve("small-window.pcap");
+		Path pcapng = dir.resolve("small-window.pcapng");
+		PcapFiles.writePcap(pcap, PACKETS * 10, ByteOrder.LITTLE_ENDIAN);
+		PcapFiles.writePcapng(pcapng, PACKETS * 10, ByteOrder.LITTLE_ENDIAN);
+		assertThat(Files.size(pcap)).isGreaterThan(64 * 1024 * 10);
+
+		assertDecodes(pcap, 64 * 1024, 1000L);
+		assertDecodes(pcapng, 64 * 1024, 1L);
+	}
+
+	@Test
+	void stopsCleanlyOnATruncatedRecord() throws IOException {
+		Path file = dir.resolve("truncated.pcap");
+		PcapFiles.writePcap(file, 10, ByteOrder.LITTLE_ENDIAN);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+
+		try (PcapReader reader = PcapReader.open(file)) {
+			while (reader.next()) {
+				// recorrer
+			}
+			assertThat(reader.packetsRead()).isEqualTo(9);
+			assertThat(reader.truncated()).isTrue();
+		}
+	}
+
+	@Test
+	void rejectsFilesThatAreNotCaptures() throws IOException {
+		Path file = dir.resolve("traffic.csv");
+		Files.writeString(file, "frame.time,ip.src,ip.dst\n");
+		assertThatThrownBy(() -> PcapReader.open(file)).isInstanceOf(IOException.class);
+	}
+
+	private static void assertDecodes(Path file, long window, long unitNanos) throws IOException {
+		try (PcapReader reader = PcapReader.open(file, window)) {
+			int i = 0;
+			while (reader.next()) {
+				PcapPacket p = reader.packet();
+				assertThat(p.linkType()).isEqualTo(PcapPacket.LINKTYPE_ETHERNET);
+				assertThat(p.capturedLength()).isEqualTo(PcapFiles.frame(i).length);
+				assertThat(p.timestampNanos())
+						.isEqualTo((PcapFiles.BASE_SECONDS + i / 1000) * 1_000_000_000L + (i % 1000) * 1_000_000L);
+				assertThat(p.srcPort()).isEqualTo(1000 + i % 1000);
+
+				switch (i % 3) {
+					case 0 -> {
+						assertThat(p.ipVersion()).isEqualTo(4);
+						assertThat(p.protocol()).isEqualTo(PcapPacket.PROTO_TCP);
+						assertThat(p.srcAddress()).isEqualTo("10.0.0.1");
+						assertThat(p.dstIpv4()).isEqualTo(0xC0A80002);
+						assertThat(p.dstPort()).isEqualTo(443);
+						assertThat(p.tcpFlags()).isEqualTo(0x18);
+						assertThat(p.ipLength()).isEqualTo(72);
+						assertThat(p.payloadLength()).isEqualTo(32);
+					}
+					case 1 -> {
+						assertThat(p.ipVersion()).isEqualTo(4);
+						assertThat(p.protocol()).isEqualTo(PcapPacket.PROTO_UDP);
+						assertThat(p.dstAddress()).isEqualTo("8.8.8.8");
+						assertThat(p.dstPort()).isEqualTo(53);
+						assertThat(p.payloadLength()).isEqualTo(16);
+					}
+					default -> {
+						assertThat(p.ipVersion()).isEqualTo(6);
+						assertThat(p.protocol()).isEqualTo(PcapPacket.PROTO_TCP);
+						assertThat(p.srcAddress()).isEqualTo("2001:db8:0:0:0:0:0:1");
+						assertThat(p.tcpFlags()).isEqualTo(0x02);
+						assertThat(p.payloadLength()).isEqualTo(8);
+					}
+				}
+				i++;
+			}
+			assertThat(reader.packetsRead()).isEqualTo(i);
+			assertThat(i).isGreaterThanOrEqualTo(PACKETS);
+			assertThat(reader.truncated()).isFalse();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.TrafficDayStats;
+import com.example.demo.domain.TrafficRangeSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Prueba de estrés: muchas consultas concurrentes mientras un escritor publica lotes.
+ * Cada lote agrega o quita una captura en DOS días a la vez, por lo que cualquier
+ * lectura que mezcle versiones ("torn read") vería esos días desbalanceados.
+ */
+class CsvTrafficIndexServiceConcurrencyTest {
+
+	private static final LocalDate DAY_A = LocalDate.of(2026, 1, 10);
+	private static final LocalDate DAY_B = LocalDate.of(2026, 1, 11);
+
+	/** Lotes publicados por el escritor: miles de versiones en pocos segundos de prueba */
+	private static final int BATCHES = 2_000;
+
+	@TempDir
+	Path trafficDir;
+
+	@Test
+	void readersNeverObserveTornSnapshots() throws Exception {
+		CsvTrafficIndexService service = new CsvTrafficIndexService(new TrafficLayout(trafficDir.toString(), "flat"));
+		service.buildIndex();
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(9);
+		List<Future<Long>> readers = new ArrayList<>();
+
+		for (int r = 0; r < 8; r++) {
+			readers.add(pool.submit(() -> {
+				long reads = 0;
+				long lastVersion = 0;
+				while (running.get()) {
+					long version = service.version();
+					assertThat(version).isGreaterThanOrEqualTo(lastVersion);
+					lastVersion = version;
+
+					List<TrafficDayStats> days = service.between(DAY_A, DAY_B);
+					if (!days.isEmpty()) {
+						assertThat(days).hasSize(2);
+						assertThat(days.get(0).getCaptures()).isEqualTo(days.get(1).getCaptures());
+						assertThat(days.get(0).getTotalInput()).isEqualTo(days.get(1).getTotalInput());
+					}
+
+					TrafficRangeSummary summary = service.summary(DAY_A, DAY_B);
+					assertThat(summary.getCaptures() % 2).isZero();
+					assertThat(summary.getTotalInput()).isEqualTo((double) summary.getCaptures());
+					assertThat(summary.getActiveDays()).isEqualTo(summary.getCaptures() == 0 ? 0 : 2);
+					reads++;
+				}
+				return reads;
+			}));
+		}
+
+		Future<?> writer = pool.submit(() -> {
+			List<String> live = new ArrayList<>();
+			for (int i = 0; i < BATCHES; i++) {
+				if (live.size() >= 2 && i % 3 == 0) {
+					service.applyChanges(List.of(), List.of(live.remove(live.size() - 1), live.remove(live.size() - 1)));
+				} else {
+					String a = name(DAY_A, i);
+					String b = name(DAY_B, i);
+					service.applyChanges(List.of(a, b), List.of());
+					live.add(a);
+					live.add(b);
+				}
+			}
+		});
+
+		writer.get(30, TimeUnit.SECONDS);
+		running.set(false);
+
+		long totalReads = 0;
+		for (Future<Long> reader : readers) {
+			totalReads += reader.get(10, TimeUnit.SECONDS);
+		}
+		pool.shutdown();
+
+		assertThat(totalReads).isPositive();
+		// Cada lote publica exactamente una versión nueva
+		assertThat(service.version()).isEqualTo(BATCHES);
+	}
+
+	private static String name(LocalDate day, int i) {
+		return String.format("traffic_%s_%02d-%02d-%02d_(1_input)_(2_output).csv",
+				day, i / 3600, (i / 60) % 60, i % 60);
+	}
+}
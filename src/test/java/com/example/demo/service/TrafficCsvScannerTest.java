@@ -0,0 +1,147 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Proyección y filtrado de reportes: campos entre comillas con comas, saltos de línea y
+ * comillas escapadas, orden de la proyección, cada operador de las condiciones, reportes
+ * comprimidos y filas que cruzan el límite de una ventana mapeada.
+ */
+class TrafficCsvScannerTest {
+
+	private static final String CSV = "frame.number,ip.src,frame.len,note\r\n"
+			+ "1,10.8.0.6,5,plain\r\n"
+			+ "2,10.8.0.7,10,\"a, b\"\r\n"
+			+ "3,10.8.0.6,20,\"line\nbreak\"\r\n"
+			+ "4,10.8.0.9,100,\"say \"\"hi\"\"\"\r\n"
+			+ "5,10.8.0.6,abc,\"\"\n";
+
+	@TempDir
+	Path dir;
+
+	private TrafficCsvScanner scanner;
+
+	@BeforeEach
+	void setUp() {
+		scanner = new TrafficCsvScanner(new TrafficCompactionService(new TrafficLayout(dir.toString(), "flat")));
+	}
+
+	@Test
+	void keepsQuotedCommasAndNewlinesInsideTheirField() throws IOException {
+		Path file = write("report.csv", CSV);
+		assertThat(scan(file, List.of(), List.of("note:eq:a, b"))).isEqualTo(
+				"frame.number,ip.src,frame.len,note\n2,10.8.0.7,10,\"a, b\"\n");
+		assertThat(scan(file, List.of("frame.number", "note"), List.of("note:eq:line\nbreak"))).isEqualTo(
+				"frame.number,note\n3,\"line\nbreak\"\n");
+		// El salto de línea entre comillas no parte la fila: la 3 sigue teniendo su ip.src
+		assertThat(scan(file, List.of("frame.number"), List.of("ip.src:eq:10.8.0.6"))).isEqualTo(
+				"frame.number\n1\n3\n5\n");
+	}
+
+	@Test
+	void comparesQuotedFieldsByTheirUnescapedValue() throws IOException {
+		Path file = write("report.csv", CSV);
+		assertThat(scan(file, List.of("frame.number"), List.of("note:eq:say \"hi\""))).isEqualTo("frame.number\n4\n");
+		assertThat(scan(file, List.of("frame.number"), List.of("note:in:x|say \"hi\""))).isEqualTo("frame.number\n4\n");
+		assertThat(scan(file, List.of("frame.number"), List.of("note:eq:say \"\"hi\"\""))).isEqualTo("frame.number\n");
+		// "" es un campo vacío
+		assertThat(scan(file, List.of("frame.number"), List.of("note:eq:"))).isEqualTo("frame.number\n5\n");
+		// La fila se copia con sus bytes originales, sin reescapar
+		assertThat(scan(file, List.of("note"), List.of("frame.number:eq:4"))).isEqualTo("note\n\"say \"\"hi\"\"\"\n");
+	}
+
+	@Test
+	void projectsColumnsInTheRequestedOrder() throws IOException {
+		Path file = write("report.csv", CSV);
+		assertThat(scan(file, List.of("frame.len", "frame.number", "frame.len"), List.of("frame.number:le:2")))
+				.isEqualTo("frame.len,frame.number,frame.len\n5,1,5\n10,2,10\n");
+		assertThatThrownBy(() -> scan(file, List.of("ip.dst"), List.of()))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("ip.dst");
+		assertThatThrownBy(() -> scan(file, List.of(), List.of("ip.dst:eq:1")))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("ip.dst");
+	}
+
+	@Test
+	void evaluatesEveryOperator() throws IOException {
+		Path file = write("report.csv", CSV);
+		assertThat(numbers(file, "frame.len:eq:10")).isEqualTo("2");
+		assertThat(numbers(file, "frame.len:ne:10")).isEqualTo("1 3 4 5");
+		assertThat(numbers(file, "frame.len:in:5|100")).isEqualTo("1 4");
+		// Numérico: 100 > 20 aunque "100" < "20" byte a byte
+		assertThat(numbers(file, "frame.len:gt:20")).isEqualTo("4 5");
+		assertThat(numbers(file, "frame.len:ge:20")).isEqualTo("3 4 5");
+		assertThat(numbers(file, "frame.len:lt:20")).isEqualTo("1 2");
+		assertThat(numbers(file, "frame.len:le:20")).isEqualTo("1 2 3");
+		// Lexicográfico si alguno de los dos lados no es número ("abc" > "9")
+		assertThat(numbers(file, "ip.src:gt:10.8.0.6")).isEqualTo("2 4");
+		// Varias condiciones: deben cumplirse todas
+		assertThat(numbers(file, "ip.src:eq:10.8.0.6", "frame.len:ge:10")).isEqualTo("3 5");
+
+		assertThatThrownBy(() -> TrafficCsvScanner.Query.of(null, List.of("frame.len:like:1")))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("like");
+		assertThatThrownBy(() -> TrafficCsvScanner.Query.of(null, List.of("frame.len:eq")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void scansCompressedReportsLikePlainOnes() throws IOException {
+		Path plain = write("report.csv", CSV);
+		Path gz = dir.resolve("other.csv.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+			out.write(CSV.getBytes(StandardCharsets.UTF_8));
+		}
+		for (List<String> where : List.of(List.<String>of(), List.of("ip.src:eq:10.8.0.6"), List.of("note:eq:say \"hi\""))) {
+			assertThat(scan(gz, List.of("note", "frame.number"), where))
+					.isEqualTo(scan(plain, List.of("note", "frame.number"), where));
+		}
+	}
+
+	@Test
+	void rowsCrossingTheWindowBoundaryAreKeptWhole() throws IOException {
+		// Ventanas de 1 MB sobre un archivo de ~3 MB con filas que contienen comillas
+		ReflectionTestUtils.setField(scanner, "windowMb", 1);
+		StringBuilder csv = new StringBuilder("n,note\n");
+		int rows = 60_000;
+		for (int i = 0; i < rows; i++) {
+			csv.append(i).append(",\"row, ").append(i).append(" with \"\"padding\"\" to cross windows\"\n");
+		}
+		Path file = write("big.csv", csv.toString());
+		assertThat(Files.size(file)).isGreaterThan(2L * 1024 * 1024);
+
+		String all = scan(file, List.of("n"), List.of("note:ne:"));
+		assertThat(all.lines().count()).isEqualTo(rows + 1);
+		assertThat(scan(file, List.of("n"), List.of("note:eq:row, 31337 with \"padding\" to cross windows")))
+				.isEqualTo("n\n31337\n");
+	}
+
+	private String numbers(Path file, String... where) throws IOException {
+		return String.join(" ", scan(file, List.of("frame.number"), List.of(where)).lines().skip(1).toList());
+	}
+
+	private String scan(Path file, List<String> columns, List<String> where) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (TrafficCsvScanner.Scan scan = scanner.open(file, TrafficCsvScanner.Query.of(columns, where))) {
+			scan.writeTo(out);
+		}
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	private Path write(String name, String content) throws IOException {
+		return Files.writeString(dir.resolve(name), content);
+	}
+}
@@ -0,0 +1,143 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checkpoint binario del índice: ida y vuelta por disco, rechazo de archivos corruptos,
+ * truncados o de otra versión, y el comportamiento del índice con ellos (reconstrucción
+ * completa) o con uno vigente (sin listar el directorio en la reconciliación inicial).
+ */
+class TrafficIndexCheckpointTest {
+
+	private static final LocalDate DAY = LocalDate.of(2026, 1, 10);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void roundTripsEveryRecord() throws IOException {
+		TrafficIndexCheckpoint written = checkpoint("/srv/traffic", 1234L, "a.csv", "b.csv");
+		Path file = dir.resolve("index.bin");
+		written.write(file);
+
+		TrafficIndexCheckpoint read = TrafficIndexCheckpoint.read(file);
+		assertThat(read.fingerprint).isEqualTo("/srv/traffic");
+		assertThat(read.dirMtime).isEqualTo(1234L);
+		assertThat(read.names).containsExactly("a.csv", "b.csv");
+		assertThat(read.epochSeconds).containsExactly(written.epochSeconds);
+		assertThat(read.inputs).containsExactly(written.inputs);
+		assertThat(read.outputs).containsExactly(written.outputs);
+		// Escritura atómica: no queda ningún temporal junto al checkpoint
+		try (var files = Files.list(dir)) {
+			assertThat(files).containsExactly(file);
+		}
+	}
+
+	@Test
+	void missingFileReadsAsNull() throws IOException {
+		assertThat(TrafficIndexCheckpoint.read(dir.resolve("missing.bin"))).isNull();
+	}
+
+	@Test
+	void rejectsCorruptTruncatedAndOtherVersionFiles() throws IOException {
+		Path file = dir.resolve("index.bin");
+		checkpoint("/srv/traffic", 1234L, "a.csv", "b.csv").write(file);
+		byte[] valid = Files.readAllBytes(file);
+
+		byte[] corrupt = valid.clone();
+		corrupt[corrupt.length - 20] ^= 0x01;
+		Files.write(file, corrupt);
+		assertThatThrownBy(() -> TrafficIndexCheckpoint.read(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("CRC");
+
+		Files.write(file, Arrays.copyOf(valid, valid.length - 12));
+		assertThatThrownBy(() -> TrafficIndexCheckpoint.read(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("truncado");
+
+		byte[] older = valid.clone();
+		older[5] = 2; // VERSION (short tras el MAGIC)
+		Files.write(file, older);
+		assertThatThrownBy(() -> TrafficIndexCheckpoint.read(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("Versión");
+	}
+
+	@Test
+	void indexRebuildsFromDiskWhenCheckpointIsCorruptOrFromAnotherDirectory() throws IOException {
+		Path traffic = Files.createDirectory(dir.resolve("traffic"));
+		Files.createFile(traffic.resolve(csv(1)));
+		Files.createFile(traffic.resolve(csv(2)));
+		Path file = dir.resolve("index.bin");
+
+		// Checkpoint de otro directorio con un registro que aquí no existe
+		checkpoint(dir.resolve("other").toAbsolutePath().toString(), 1L, csv(3)).write(file);
+		assertThat(build(traffic, file).summary(DAY, DAY).getCaptures()).isEqualTo(2);
+
+		// La reconstrucción lo reemplazó por uno válido; ahora se corrompe
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length - 1] ^= 0x01;
+		Files.write(file, bytes);
+		assertThat(build(traffic, file).summary(DAY, DAY).getCaptures()).isEqualTo(2);
+		assertThat(TrafficIndexCheckpoint.read(file).names).containsExactlyInAnyOrder(csv(1), csv(2));
+	}
+
+	@Test
+	void initialResyncIsSkippedOnlyWhileCheckpointIsCurrent() throws IOException {
+		Path traffic = Files.createDirectory(dir.resolve("traffic"));
+		Files.createFile(traffic.resolve(csv(1)));
+		Files.createFile(traffic.resolve(csv(3)));
+		Files.setLastModifiedTime(traffic, FileTime.fromMillis(1_700_000_000_000L));
+		Path file = dir.resolve("index.bin");
+
+		// El checkpoint solo tiene csv(2) y su marca de agua coincide con el directorio: si la
+		// reconciliación inicial listara el directorio, el índice pasaría a csv(1) y csv(3)
+		long fingerprint = new TrafficLayout(traffic.toString(), "flat").fingerprint();
+		checkpoint(traffic.toAbsolutePath().toString(), fingerprint, csv(2)).write(file);
+		CsvTrafficIndexService service = build(traffic, file);
+		service.initialResync();
+		assertThat(service.summary(DAY, DAY).getCaptures()).isEqualTo(1);
+
+		// El directorio cambió desde el checkpoint: la reconciliación inicial sí lista
+		Files.setLastModifiedTime(traffic, FileTime.fromMillis(1_700_000_060_000L));
+		service.initialResync();
+		assertThat(service.summary(DAY, DAY).getCaptures()).isEqualTo(2);
+		assertThat(TrafficIndexCheckpoint.read(file).names).containsExactlyInAnyOrder(csv(1), csv(3));
+	}
+
+	private static CsvTrafficIndexService build(Path traffic, Path checkpointFile) throws IOException {
+		CsvTrafficIndexService service = new CsvTrafficIndexService(new TrafficLayout(traffic.toString(), "flat"));
+		ReflectionTestUtils.setField(service, "checkpointFile", checkpointFile.toString());
+		service.buildIndex();
+		return service;
+	}
+
+	private static TrafficIndexCheckpoint checkpoint(String fingerprint, long dirMtime, String... names) {
+		long[] seconds = new long[names.length];
+		double[] inputs = new double[names.length];
+		double[] outputs = new double[names.length];
+		for (int i = 0; i < names.length; i++) {
+			seconds[i] = LocalDateTime.of(DAY.getYear(), DAY.getMonth(), DAY.getDayOfMonth(), 10, i)
+					.toEpochSecond(ZoneOffset.UTC);
+			inputs[i] = i + 1;
+			outputs[i] = 2 * (i + 1);
+		}
+		return new TrafficIndexCheckpoint(fingerprint, dirMtime, names, seconds, inputs, outputs);
+	}
+
+	private static String csv(int i) {
+		return String.format("traffic_%s_10-%02d-00_(%d_input)_(%d_output).csv", DAY, i, i, 2 * i);
+	}
+}